@@ -0,0 +1,110 @@
+package com.cub1z.pwmanager.bench;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cub1z.pwmanager.model.VaultHeader;
+import com.cub1z.pwmanager.service.AESCryptoService;
+import com.cub1z.pwmanager.service.PasswordGenerator;
+import com.cub1z.pwmanager.service.PasswordPolicy;
+import com.cub1z.pwmanager.service.VaultKey;
+
+/**
+ * Key derivation, encryption and password generation of AESCryptoService.
+ * The PBKDF2 benchmarks go through the public entry points that wrap deriveKey.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CryptoBenchmark {
+    private static final char[] MASTER_PASSWORD = "correct horse battery staple".toCharArray();
+    private static final char[] PASSWORD = "Xk3#pL9!qR2$vN7@".toCharArray();
+    private static final int BULK_COUNT = 1000;
+
+    private AESCryptoService cryptoService;
+    private VaultHeader header;
+    private VaultKey vaultKey;
+    private byte[] keyEncrypted;
+    private byte[] passwordEncrypted;
+    private PasswordGenerator generator;
+    private char[] bulkPasswords;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        this.cryptoService = new AESCryptoService();
+        this.header = this.cryptoService.generateVaultHeader();
+        this.vaultKey = this.cryptoService.deriveVaultKey(MASTER_PASSWORD.clone(), this.header);
+        this.keyEncrypted = this.cryptoService.encrypt(PASSWORD, this.vaultKey);
+        // The password-based methods wipe the password they are given
+        this.passwordEncrypted = this.cryptoService.encrypt(PASSWORD, MASTER_PASSWORD.clone());
+        this.generator = this.cryptoService.passwordGenerator(PasswordPolicy.defaults());
+        this.bulkPasswords = new char[BULK_COUNT * this.generator.getPolicy().length()];
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.vaultKey.destroy();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public VaultKey deriveVaultKey() throws GeneralSecurityException {
+        VaultKey key = this.cryptoService.deriveVaultKey(MASTER_PASSWORD.clone(), this.header);
+        key.destroy();
+        return key;
+    }
+
+    @Benchmark
+    public byte[] encryptWithVaultKey() throws GeneralSecurityException {
+        return this.cryptoService.encrypt(PASSWORD, this.vaultKey);
+    }
+
+    @Benchmark
+    public char[] decryptWithVaultKey() throws GeneralSecurityException {
+        return this.cryptoService.decrypt(this.keyEncrypted, this.vaultKey);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public byte[] encryptWithPassword() throws GeneralSecurityException {
+        return this.cryptoService.encrypt(PASSWORD, MASTER_PASSWORD.clone());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public char[] decryptWithPassword() throws GeneralSecurityException {
+        return this.cryptoService.decrypt(this.passwordEncrypted, MASTER_PASSWORD.clone());
+    }
+
+    @Benchmark
+    public char[] generateSecurePassword() throws GeneralSecurityException {
+        return this.cryptoService.generateSecurePassword(16, true);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public char[] generateSecurePasswordsBulk() {
+        this.generator.generate(this.bulkPasswords, 0, BULK_COUNT);
+        return this.bulkPasswords;
+    }
+
+    @Benchmark
+    public String hashPassword() throws GeneralSecurityException {
+        return this.cryptoService.hashPassword(MASTER_PASSWORD);
+    }
+}
@@ -0,0 +1,66 @@
+package com.cub1z.pwmanager.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.utils.FileUtils;
+
+/**
+ * Object stream serialization through FileUtils, as used by headers and legacy checkpoints.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileUtilsBenchmark {
+    @Param({ "100", "10000", "100000" })
+    public int vaultSize;
+
+    private Path directory;
+    private Path writeFile;
+    private Path readFile;
+    private HashMap<String, PasswordEntry> entries;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("pwmanager-bench");
+        this.writeFile = this.directory.resolve("write.pwd");
+        this.readFile = this.directory.resolve("read.pwd");
+        this.entries = VaultFixtures.entryMap(this.vaultSize);
+        FileUtils.writeObjectToFile(this.readFile, this.entries);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        VaultFixtures.delete(this.directory);
+    }
+
+    @Benchmark
+    public void writeObjectToFile() throws IOException {
+        FileUtils.writeObjectToFile(this.writeFile, this.entries);
+    }
+
+    @Benchmark
+    public Object readObjectFromFile() throws IOException {
+        return FileUtils.readObjectFromFile(this.readFile, HashMap.class).orElseThrow();
+    }
+}
@@ -0,0 +1,72 @@
+package com.cub1z.pwmanager.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.repository.PasswordEntryRepository;
+
+/**
+ * Single entry writes and full loads of PasswordEntryRepository over vaults of several sizes.
+ * Each benchmark gets its own fixture, so the log written by saveEntry never skews load.
+ * The vault is a single file or spread over shards, which load decodes in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RepositoryBenchmark {
+    @Param({ "100", "10000", "100000" })
+    public int vaultSize;
+
+    @Param({ "1", "16" })
+    public int shards;
+
+    private Path directory;
+    private PasswordEntryRepository repository;
+    private byte[] encryptedPassword;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("pwmanager-bench");
+        this.repository = new PasswordEntryRepository(VaultFixtures.createVault(this.directory, this.vaultSize, this.shards));
+        this.encryptedPassword = VaultFixtures.entries(1).get(0).getEncryptedPassword();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.repository.close();
+        VaultFixtures.delete(this.directory);
+    }
+
+    @Benchmark
+    public void saveEntry() throws IOException {
+        // Overwrite existing entries, so the vault keeps its size
+        String serviceName = VaultFixtures.serviceName(this.next++ % this.vaultSize);
+        this.repository.saveEntry(new PasswordEntry(serviceName, this.encryptedPassword), true);
+    }
+
+    @Benchmark
+    public int load() throws Exception {
+        this.repository.load();
+        return this.repository.count();
+    }
+}
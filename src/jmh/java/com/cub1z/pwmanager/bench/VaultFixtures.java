@@ -0,0 +1,75 @@
+package com.cub1z.pwmanager.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.repository.PasswordEntryRepository;
+
+/**
+ * Builds deterministic synthetic vaults for the benchmarks.
+ */
+public final class VaultFixtures {
+    // Size of a keyed ciphertext of a 16 character password
+    private static final int ENCRYPTED_PASSWORD_LENGTH = 4 + 16 + 12 + 32 + 16;
+
+    private VaultFixtures() {}
+
+    public static List<PasswordEntry> entries(int count) {
+        Random random = new Random(count);
+        List<PasswordEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] encrypted = new byte[ENCRYPTED_PASSWORD_LENGTH];
+            random.nextBytes(encrypted);
+            entries.add(new PasswordEntry(serviceName(i), encrypted));
+        }
+        return entries;
+    }
+
+    public static HashMap<String, PasswordEntry> entryMap(int count) {
+        HashMap<String, PasswordEntry> map = new HashMap<>();
+        for (PasswordEntry entry : entries(count)) map.put(entry.getServiceName(), entry);
+        return map;
+    }
+
+    public static String serviceName(int index) {
+        return "service-" + index + ".example.com";
+    }
+
+    /**
+     * Writes a vault of the given size as a fresh checkpoint with an empty log.
+     */
+    public static Path createVault(Path directory, int count) throws IOException {
+        return createVault(directory, count, 1);
+    }
+
+    /**
+     * Writes a vault of the given size spread over shards, with an empty log.
+     */
+    public static Path createVault(Path directory, int count, int shards) throws IOException {
+        Path file = directory.resolve("passwords.pwd");
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            repository.saveEntries(entries(count), true);
+            repository.save();
+            repository.reshard(shards);
+        }
+        return file;
+    }
+
+    public static void delete(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) return;
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.cub1z.pwmanager.bench.workload;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.cub1z.pwmanager.PasswordManager;
+import com.cub1z.pwmanager.service.AESCryptoService;
+import com.cub1z.pwmanager.service.AttachmentService;
+import com.cub1z.pwmanager.service.CsvImportService;
+import com.cub1z.pwmanager.service.MasterPasswordService;
+import com.cub1z.pwmanager.service.PasswordEntryService;
+
+/**
+ * Builds synthetic vaults on disk and opens them through a real PasswordManager.
+ * Passwords are encrypted with the vault key, exactly as entries added by users are.
+ */
+public final class SyntheticVault {
+    private static final String[] WORDS = {
+        "mail", "bank", "cloud", "shop", "news", "social", "photo", "music", "video", "travel",
+        "code", "docs", "chat", "pay", "health", "games", "learn", "market", "drive", "home"
+    };
+    private static final String[] DOMAINS = { ".com", ".org", ".net", ".io", ".dev" };
+    private static final String[] USERS = { "", "", "alice", "bob", "work", "personal" };
+
+    /**
+     * How service names are generated.
+     */
+    public enum NameDistribution {
+        // service-0, service-1, ...
+        SEQUENTIAL,
+        // Domain-like names with heavily shared prefixes and occasional usernames, as browser exports have
+        DOMAINS
+    }
+
+    private SyntheticVault() {}
+
+    public static List<String> names(int size, NameDistribution distribution, long seed) {
+        Random random = new Random(seed);
+        List<String> names = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            if (distribution == NameDistribution.SEQUENTIAL) {
+                names.add("service-" + i);
+                continue;
+            }
+
+            String word = WORDS[random.nextInt(WORDS.length)] + WORDS[random.nextInt(WORDS.length)];
+            String user = USERS[random.nextInt(USERS.length)];
+            String name = word + i + DOMAINS[random.nextInt(DOMAINS.length)];
+            names.add(user.isEmpty() ? name : name + " (" + user + ")");
+        }
+        return names;
+    }
+
+    /**
+     * Creates a vault in a directory, or reopens the one already there.
+     *
+     * @param directory The directory holding the vault files.
+     * @param names The service names to store when the vault is created.
+     * @param masterPassword The master password of the vault.
+     * @return An authenticated manager over the vault.
+     * @throws IOException If the vault cannot be written or the password does not match an existing vault.
+     */
+    public static PasswordManager open(Path directory, List<String> names, String masterPassword) throws IOException {
+        Files.createDirectories(directory);
+        AESCryptoService cryptoService = new AESCryptoService();
+        PasswordManager manager = new PasswordManager(
+            cryptoService,
+            new PasswordEntryService(directory.resolve("passwords.pwd")),
+            new MasterPasswordService(directory.resolve("master.pwd")),
+            new AttachmentService(cryptoService, directory.resolve("attachments"))
+        );
+
+        boolean created = !manager.doesMasterPasswordExist();
+        if (created) manager.saveMasterPassword(masterPassword);
+        if (!manager.authenticate(masterPassword)) {
+            manager.close();
+            throw new IOException("Master password does not match the vault in " + directory);
+        }
+
+        if (created && !names.isEmpty()) {
+            // The bulk import encrypts in parallel and stores everything with a single write
+            StringBuilder csv = new StringBuilder(names.size() * 48).append("name,password\n");
+            Random random = new Random(names.size());
+            for (String name : names) {
+                StringBuilder password = new StringBuilder(16);
+                for (int i = 0; i < 16; i++) password.append((char) ('!' + random.nextInt(94)));
+                csv.append(quote(name)).append(',').append(quote(password.toString())).append('\n');
+            }
+
+            CsvImportService.Report report = manager.importCsv(new StringReader(csv.toString()), false, null);
+            if (!report.errors().isEmpty()) {
+                throw new IOException("Could not build the vault: " + report.errors().get(0).message());
+            }
+        }
+
+        return manager;
+    }
+
+    private static String quote(String field) {
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,307 @@
+package com.cub1z.pwmanager.bench.workload;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+
+import com.cub1z.pwmanager.PasswordManager;
+import com.cub1z.pwmanager.bench.VaultFixtures;
+
+/**
+ * Drives a PasswordManager with a mix of get/add/update/delete operations against a synthetic
+ * vault and reports throughput and latency percentiles per operation type.
+ *
+ * <pre>
+ * --size=10000              entries in the generated vault
+ * --names=domains           name distribution: sequential or domains
+ * --keys=zipf               key popularity for get/update: uniform or zipf
+ * --mix=get:80,add:10,update:5,delete:5
+ * --threads=4               concurrent workers
+ * --rate=2000               target ops/s across workers, 0 for closed loop
+ * --warmup=5 --duration=30  seconds
+ * --dir=path                vault directory, reused if it exists (default: a temporary one)
+ * --hgrm=path               also write full percentile distributions per operation
+ * </pre>
+ *
+ * Latencies are coordinated-omission safe. With a target rate, every operation is timed from
+ * its scheduled start, so a stall is charged to all the operations it delayed. In closed loop,
+ * each operation type is recorded with its own expected interval, the mean time between two
+ * operations of that type on a worker during warmup, so HdrHistogram backfills the operations of
+ * that type a stall prevented. Counts and ops/s only include completed operations, not the
+ * backfilled samples.
+ */
+public final class Workload {
+    private static final String MASTER_PASSWORD = "workload-master-password";
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    enum Operation { GET, ADD, UPDATE, DELETE }
+
+    private record Config(
+        int size, SyntheticVault.NameDistribution names, boolean zipf, EnumMap<Operation, Integer> mix,
+        int threads, double rate, int warmupSeconds, int durationSeconds, Path dir, Path hgrm
+    ) {}
+
+    private record WorkerResult(EnumMap<Operation, Histogram> histograms, EnumMap<Operation, Long> completed, long errors) {}
+
+    private Workload() {}
+
+    public static void main(String[] args) throws Exception {
+        Config config = parse(args);
+        boolean temporary = config.dir() == null;
+        Path dir = temporary ? Files.createTempDirectory("pwmanager-workload") : config.dir();
+
+        System.out.printf("Building a %d entry vault (%s names) in %s%n", config.size(), config.names(), dir);
+        long buildStart = System.nanoTime();
+        List<String> names = SyntheticVault.names(config.size(), config.names(), 42);
+
+        try (PasswordManager manager = SyntheticVault.open(dir, names, MASTER_PASSWORD)) {
+            System.out.printf("Vault ready in %.1f s%n", (System.nanoTime() - buildStart) / 1e9);
+
+            // Only existing entries are read or updated, and only entries added by the run are deleted
+            List<String> keys = manager.getAllEntries().stream().map(entry -> entry.getServiceName()).sorted().toList();
+            if (keys.isEmpty()) throw new IllegalStateException("The vault is empty");
+
+            EnumMap<Operation, Long> expectedIntervals = new EnumMap<>(Operation.class);
+            if (config.warmupSeconds() > 0) {
+                System.out.printf("Warming up for %d s%n", config.warmupSeconds());
+                WorkerResult warmup = merge(run(manager, keys, config, config.warmupSeconds(), expectedIntervals));
+
+                // A worker starts one operation of a type every (warmup time / its count of that type)
+                long workerNanos = TimeUnit.SECONDS.toNanos(config.warmupSeconds()) * config.threads();
+                warmup.completed().forEach((operation, count) -> {
+                    if (count > 0) expectedIntervals.put(operation, workerNanos / count);
+                });
+            }
+
+            System.out.printf("Running for %d s%n", config.durationSeconds());
+            WorkerResult result = merge(run(manager, keys, config, config.durationSeconds(), expectedIntervals));
+            report(result, config);
+        } finally {
+            if (temporary) VaultFixtures.delete(dir);
+        }
+    }
+
+    // Auxiliary methods
+
+    private static List<WorkerResult> run(
+        PasswordManager manager, List<String> keys, Config config, int seconds, EnumMap<Operation, Long> expectedIntervals
+    ) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(config.threads());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long intervalNanos = config.rate() > 0 ? (long) (1e9 * config.threads() / config.rate()) : 0;
+        KeyChooser chooser = new KeyChooser(keys.size(), config.zipf());
+
+        try {
+            List<Future<WorkerResult>> futures = new ArrayList<>();
+            for (int t = 0; t < config.threads(); t++) {
+                int worker = t;
+                futures.add(workers.submit(() -> work(
+                    manager, keys, chooser, config.mix(), worker, deadline, intervalNanos, expectedIntervals
+                )));
+            }
+
+            List<WorkerResult> results = new ArrayList<>();
+            for (Future<WorkerResult> future : futures) results.add(future.get());
+            return results;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static WorkerResult work(
+        PasswordManager manager, List<String> keys, KeyChooser chooser, EnumMap<Operation, Integer> mix,
+        int worker, long deadline, long intervalNanos, EnumMap<Operation, Long> expectedIntervals
+    ) {
+        SplittableRandom random = new SplittableRandom(worker * 31L + System.nanoTime());
+        EnumMap<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+        EnumMap<Operation, Long> completed = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new Histogram(3));
+            completed.put(operation, 0L);
+        }
+
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        ArrayDeque<String> added = new ArrayDeque<>();
+        long sequence = 0;
+        long errors = 0;
+        long scheduled = System.nanoTime();
+
+        while (true) {
+            long start;
+            if (intervalNanos > 0) {
+                // Open loop: wait for the scheduled start, but never skip a missed one
+                scheduled += intervalNanos;
+                long now;
+                while ((now = System.nanoTime()) < scheduled) LockSupport.parkNanos(scheduled - now);
+                start = scheduled;
+            } else {
+                start = System.nanoTime();
+            }
+            if (start >= deadline) break;
+
+            Operation operation = pick(mix, totalWeight, random);
+            if (operation == Operation.DELETE && added.isEmpty()) operation = Operation.ADD;
+
+            try {
+                switch (operation) {
+                    case GET -> manager.get(keys.get(chooser.next(random)), MASTER_PASSWORD);
+                    case UPDATE -> manager.update(keys.get(chooser.next(random)), MASTER_PASSWORD);
+                    case ADD -> {
+                        String name = "workload-" + worker + "-" + (sequence++) + "-" + start;
+                        manager.add(name, MASTER_PASSWORD);
+                        added.add(name);
+                    }
+                    case DELETE -> manager.delete(added.poll(), MASTER_PASSWORD);
+                }
+            } catch (Exception e) {
+                errors++;
+            }
+
+            long latency = System.nanoTime() - start;
+            Long expectedIntervalNanos = expectedIntervals.get(operation);
+            if (intervalNanos == 0 && expectedIntervalNanos != null) {
+                histograms.get(operation).recordValueWithExpectedInterval(latency, expectedIntervalNanos);
+            } else {
+                histograms.get(operation).recordValue(latency);
+            }
+            completed.merge(operation, 1L, Long::sum);
+        }
+
+        return new WorkerResult(histograms, completed, errors);
+    }
+
+    private static Operation pick(EnumMap<Operation, Integer> mix, int totalWeight, SplittableRandom random) {
+        int roll = random.nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) return entry.getKey();
+        }
+        return Operation.GET;
+    }
+
+    private static WorkerResult merge(List<WorkerResult> results) {
+        EnumMap<Operation, Histogram> merged = new EnumMap<>(Operation.class);
+        EnumMap<Operation, Long> completed = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            merged.put(operation, new Histogram(3));
+            completed.put(operation, 0L);
+        }
+
+        long errors = 0;
+        for (WorkerResult result : results) {
+            result.histograms().forEach((operation, histogram) -> merged.get(operation).add(histogram));
+            result.completed().forEach((operation, count) -> completed.merge(operation, count, Long::sum));
+            errors += result.errors();
+        }
+        return new WorkerResult(merged, completed, errors);
+    }
+
+    private static void report(WorkerResult result, Config config) throws IOException {
+        System.out.println();
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %10s%n", "op", "count", "ops/s", "p50 us", "p99 us", "p999 us", "max us");
+
+        long total = 0;
+        for (Map.Entry<Operation, Histogram> entry : result.histograms().entrySet()) {
+            Histogram histogram = entry.getValue();
+            // The histogram also holds the samples backfilled for coordinated omission
+            long count = result.completed().get(entry.getKey());
+            total += count;
+            if (count == 0) continue;
+
+            System.out.printf(Locale.ROOT, "%-8s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                entry.getKey().name().toLowerCase(Locale.ROOT),
+                count,
+                (double) count / config.durationSeconds(),
+                histogram.getValueAtPercentile(50) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3,
+                histogram.getValueAtPercentile(99.9) / 1e3,
+                histogram.getMaxValue() / 1e3);
+
+            if (config.hgrm() != null) {
+                Files.createDirectories(config.hgrm());
+                Path file = config.hgrm().resolve(entry.getKey().name().toLowerCase(Locale.ROOT) + ".hgrm");
+                try (PrintStream out = new PrintStream(new FileOutputStream(file.toFile()))) {
+                    histogram.outputPercentileDistribution(out, 1e3);
+                }
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%ntotal    %10d %10.1f   errors: %d%n",
+            total, (double) total / config.durationSeconds(), result.errors());
+    }
+
+    private static Config parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) throw new IllegalArgumentException("Expected --name=value: " + arg);
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        EnumMap<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : options.getOrDefault("mix", "get:80,add:10,update:5,delete:5").split(",")) {
+            String[] weight = part.split(":");
+            mix.put(Operation.valueOf(weight[0].strip().toUpperCase(Locale.ROOT)), Integer.parseInt(weight[1].strip()));
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) throw new IllegalArgumentException("Empty operation mix");
+
+        return new Config(
+            Integer.parseInt(options.getOrDefault("size", "10000")),
+            SyntheticVault.NameDistribution.valueOf(options.getOrDefault("names", "domains").toUpperCase(Locale.ROOT)),
+            options.getOrDefault("keys", "zipf").equalsIgnoreCase("zipf"),
+            mix,
+            Integer.parseInt(options.getOrDefault("threads", "4")),
+            Double.parseDouble(options.getOrDefault("rate", "0")),
+            Integer.parseInt(options.getOrDefault("warmup", "5")),
+            Integer.parseInt(options.getOrDefault("duration", "30")),
+            options.containsKey("dir") ? Path.of(options.get("dir")) : null,
+            options.containsKey("hgrm") ? Path.of(options.get("hgrm")) : null
+        );
+    }
+
+    /**
+     * Picks key indexes uniformly, or with a Zipf distribution so a few entries stay hot.
+     */
+    private static final class KeyChooser {
+        private final int size;
+        private final double[] cumulative;
+
+        KeyChooser(int size, boolean zipf) {
+            this.size = size;
+            this.cumulative = zipf ? new double[size] : null;
+
+            if (zipf) {
+                double sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+                    this.cumulative[i] = sum;
+                }
+                for (int i = 0; i < size; i++) this.cumulative[i] /= sum;
+            }
+        }
+
+        int next(SplittableRandom random) {
+            if (this.cumulative == null) return random.nextInt(this.size);
+
+            int index = Arrays.binarySearch(this.cumulative, random.nextDouble());
+            return Math.min(index < 0 ? -index - 1 : index, this.size - 1);
+        }
+    }
+}
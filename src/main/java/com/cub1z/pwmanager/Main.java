@@ -1,19 +1,377 @@
 package com.cub1z.pwmanager;
 
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import com.cub1z.pwmanager.agent.AgentClient;
+import com.cub1z.pwmanager.agent.AgentServer;
+import com.cub1z.pwmanager.batch.BatchRunner;
+import com.cub1z.pwmanager.config.Constants;
+import com.cub1z.pwmanager.config.FilePath;
+import com.cub1z.pwmanager.events.FlightRecording;
+import com.cub1z.pwmanager.model.Attachment;
 import com.cub1z.pwmanager.service.AESCryptoService;
+import com.cub1z.pwmanager.service.AttachmentService;
+import com.cub1z.pwmanager.service.CsvImportService;
 import com.cub1z.pwmanager.service.MasterPasswordService;
 import com.cub1z.pwmanager.service.PasswordEntryService;
+import com.cub1z.pwmanager.ui.UIService;
 
 public class Main {
     public static void main(String[] args) {
-        PasswordManagerUI passwordManagerUI = new PasswordManagerUI(
-            new PasswordManager(
-                new AESCryptoService(),
-                new PasswordEntryService(),
-                new MasterPasswordService()
-            )
+        String mode = args.length > 0 ? args[0] : "";
+        FlightRecording.startIfRequested();
+
+        switch (mode) {
+            case "agent" -> runAgent(Arrays.copyOfRange(args, 1, args.length));
+            case "client" -> System.exit(AgentClient.run(Arrays.copyOfRange(args, 1, args.length)));
+            case "batch" -> System.exit(runBatch(Arrays.copyOfRange(args, 1, args.length)));
+            case "export" -> System.exit(runExport(Arrays.copyOfRange(args, 1, args.length)));
+            case "import" -> System.exit(runImport(Arrays.copyOfRange(args, 1, args.length)));
+            case "import-csv" -> System.exit(runImportCsv(Arrays.copyOfRange(args, 1, args.length)));
+            case "calibrate-kdf" -> System.exit(runCalibrateKdf(Arrays.copyOfRange(args, 1, args.length)));
+            case "attachment" -> System.exit(runAttachment(Arrays.copyOfRange(args, 1, args.length)));
+            case "snapshot" -> System.exit(runSnapshot(Arrays.copyOfRange(args, 1, args.length)));
+            case "reshard" -> System.exit(runReshard(Arrays.copyOfRange(args, 1, args.length)));
+            default -> {
+                PasswordManagerUI passwordManagerUI = new PasswordManagerUI(createPasswordManager());
+                passwordManagerUI.run();
+            }
+        }
+    }
+
+    private static PasswordManager createPasswordManager() {
+        AESCryptoService cryptoService = new AESCryptoService();
+        return new PasswordManager(
+            cryptoService,
+            new PasswordEntryService(),
+            new MasterPasswordService(),
+            new AttachmentService(cryptoService)
         );
+    }
+
+    /**
+     * Unlocks the vault once and keeps it resident, serving lookups over the agent socket.
+     * An optional argument sets the idle auto-lock timeout in seconds.
+     */
+    private static void runAgent(String[] args) {
+        PasswordManager manager = createPasswordManager();
+        if (!manager.doesMasterPasswordExist()) {
+            UIService.showError("No master password set. Run pwmanager once to set it up.");
+            System.exit(1);
+        }
+
+        Duration idleTimeout = args.length > 0
+            ? Duration.ofSeconds(Long.parseLong(args[0]))
+            : Duration.ofSeconds(Constants.DEFAULT_AGENT_IDLE_TIMEOUT_SECONDS);
+
+        // Every exit path ends the JVM, so the shutdown hook is the one place the agent is closed
+        AgentServer agent = new AgentServer(manager, FilePath.getAgentSocketDefault(), idleTimeout);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                agent.close();
+                manager.close();
+            } catch (Exception ignored) {
+                // Shutting down anyway
+            }
+        }));
+
+        try {
+            if (!agent.unlock(UIService.readInput("Enter your master password", true))) {
+                UIService.showError("Authentication failed.");
+                System.exit(1);
+            }
+
+            UIService.showSuccess("Agent listening on " + FilePath.getAgentSocketDefault());
+            agent.serve();
+        } catch (Exception e) {
+            UIService.showError("Agent stopped: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Authenticates once and runs the commands of a file, or of stdin when no file is given.
+     * The master password is taken from the environment when set, so stdin stays free for commands.
+     */
+    private static int runBatch(String[] args) {
+        try (PasswordManager manager = createPasswordManager()) {
+            String masterPassword = authenticate(manager);
+            if (masterPassword == null) return 1;
+
+            Reader input = args.length > 0
+                ? Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)
+                : new InputStreamReader(System.in, StandardCharsets.UTF_8);
+            OutputStreamWriter output = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+
+            BatchRunner.Summary summary = new BatchRunner(manager, masterPassword).run(input, output);
+            return summary.failed() == 0 ? 0 : 1;
+        } catch (Exception e) {
+            UIService.showError("Batch failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Streams the whole vault into an encrypted archive file.
+     */
+    private static int runExport(String[] args) {
+        if (args.length != 1) {
+            UIService.showError("Usage: pwmanager export <archive>");
+            return 1;
+        }
+
+        try (PasswordManager manager = createPasswordManager()) {
+            if (authenticate(manager) == null) return 1;
+
+            long exported = manager.exportVault(Path.of(args[0]));
+            UIService.showSuccess(String.format("Exported %d entries to '%s'.", exported, args[0]));
+            return 0;
+        } catch (Exception e) {
+            UIService.showError("Export failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Streams the entries of an encrypted archive file into the vault.
+     */
+    private static int runImport(String[] args) {
+        boolean overwrite = args.length == 2 && args[1].equals("--overwrite");
+        if (args.length < 1 || (args.length == 2 && !overwrite) || args.length > 2) {
+            UIService.showError("Usage: pwmanager import <archive> [--overwrite]");
+            return 1;
+        }
+
+        try (PasswordManager manager = createPasswordManager()) {
+            if (authenticate(manager) == null) return 1;
+
+            String archivePassword = UIService.readInput("Archive master password (empty if exported from this vault)", true);
+            long imported = manager.importVault(
+                Path.of(args[0]), archivePassword.isEmpty() ? null : archivePassword, overwrite
+            );
+            UIService.showSuccess(String.format("Imported %d entries from '%s'.", imported, args[0]));
+            return 0;
+        } catch (Exception e) {
+            UIService.showError("Import failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Imports the credentials of a CSV dump from a browser or another password manager,
+     * printing the progress and one line per rejected row.
+     */
+    private static int runImportCsv(String[] args) {
+        boolean overwrite = args.length == 2 && args[1].equals("--overwrite");
+        if (args.length < 1 || (args.length == 2 && !overwrite) || args.length > 2) {
+            UIService.showError("Usage: pwmanager import-csv <file> [--overwrite]");
+            return 1;
+        }
+
+        try (
+            PasswordManager manager = createPasswordManager();
+            Reader input = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)
+        ) {
+            if (authenticate(manager) == null) return 1;
+
+            CsvImportService.Report report = manager.importCsv(input, overwrite, (rowsRead, failed) ->
+                System.err.printf("\r%d rows read, %d rejected", rowsRead, failed)
+            );
+            System.err.println();
+
+            for (CsvImportService.RowError error : report.errors()) {
+                String service = error.serviceName() != null ? " (" + error.serviceName() + ")" : "";
+                UIService.showWarning(String.format("Line %d%s: %s", error.line(), service, error.message()));
+            }
+
+            UIService.showSuccess(String.format(
+                "Imported %d entries from '%s', %d rows rejected.", report.imported(), args[0], report.errors().size()
+            ));
+            return report.errors().isEmpty() ? 0 : 1;
+        } catch (Exception e) {
+            UIService.showError("CSV import failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Measures the key derivation on this machine and re-keys the vault when the iteration count
+     * recorded in its header is off the target unlock time by more than the tolerance.
+     */
+    private static int runCalibrateKdf(String[] args) {
+        boolean force = args.length > 0 && args[args.length - 1].equals("--force");
+        int targetArgs = force ? args.length - 1 : args.length;
+        if (targetArgs > 1) {
+            UIService.showError("Usage: pwmanager calibrate-kdf [target-ms] [--force]");
+            return 1;
+        }
+
+        try (PasswordManager manager = createPasswordManager()) {
+            String masterPassword = authenticate(manager);
+            if (masterPassword == null) return 1;
+
+            int current = manager.getKdfIterations();
+            int calibrated = targetArgs == 1 ? manager.calibrateKdf(Long.parseLong(args[0])) : manager.calibrateKdf();
+            System.out.printf("Recorded iterations: %d, calibrated for this machine: %d%n", current, calibrated);
+
+            if (!force && Math.abs(calibrated - current) <= current * Constants.KDF_RECALIBRATION_TOLERANCE) {
+                UIService.showSuccess("Key derivation is already calibrated, nothing to re-key.");
+                return 0;
+            }
+
+            int rekeyed = manager.rekeyVault(masterPassword, calibrated);
+            UIService.showSuccess(String.format("Re-keyed %d entries with %d iterations.", rekeyed, calibrated));
+            return 0;
+        } catch (NumberFormatException e) {
+            UIService.showError("Invalid target time: " + args[0]);
+            return 1;
+        } catch (Exception e) {
+            UIService.showError("Calibration failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Adds, lists, extracts and removes the files attached to entries.
+     */
+    private static int runAttachment(String[] args) {
+        String command = args.length > 0 ? args[0] : "";
+        boolean valid = switch (command) {
+            case "add", "get" -> args.length == 4;
+            case "remove" -> args.length == 3;
+            case "list" -> args.length == 2;
+            case "gc" -> args.length == 1;
+            default -> false;
+        };
+        if (!valid) {
+            UIService.showError("Usage: pwmanager attachment add <service> <name> <file> | get <service> <name> <file>"
+                + " | list <service> | remove <service> <name> | gc");
+            return 1;
+        }
+
+        try (PasswordManager manager = createPasswordManager()) {
+            if (authenticate(manager) == null) return 1;
+
+            switch (command) {
+                case "add" -> {
+                    Attachment attachment = manager.attach(args[1], args[2], Path.of(args[3]));
+                    UIService.showSuccess(String.format("Attached '%s' (%d bytes) to '%s'.", attachment.name(), attachment.size(), args[1]));
+                }
+                case "get" -> {
+                    long size = manager.exportAttachment(args[1], args[2], Path.of(args[3]));
+                    UIService.showSuccess(String.format("Wrote %d bytes to '%s'.", size, args[3]));
+                }
+                case "list" -> manager.getAttachments(args[1]).forEach(attachment ->
+                    System.out.printf("%s\t%d%n", attachment.name(), attachment.size())
+                );
+                case "remove" -> {
+                    if (!manager.detach(args[1], args[2])) {
+                        UIService.showError(String.format("No attachment '%s' on '%s'.", args[2], args[1]));
+                        return 1;
+                    }
+                    UIService.showSuccess(String.format("Removed '%s' from '%s'.", args[2], args[1]));
+                }
+                default -> UIService.showSuccess(String.format("Deleted %d unreferenced blobs.", manager.collectAttachmentGarbage()));
+            }
+            return 0;
+        } catch (Exception e) {
+            UIService.showError("Attachment command failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Takes, lists and restores the incremental snapshots of the vault.
+     */
+    private static int runSnapshot(String[] args) {
+        String command = args.length > 0 ? args[0] : "";
+        boolean valid = switch (command) {
+            case "take", "list" -> args.length == 1;
+            case "restore" -> args.length == 2;
+            default -> false;
+        };
+        if (!valid) {
+            UIService.showError("Usage: pwmanager snapshot take | list | restore <id>");
+            return 1;
+        }
+
+        try (PasswordManager manager = createPasswordManager()) {
+            String masterPassword = authenticate(manager);
+            if (masterPassword == null) return 1;
+
+            switch (command) {
+                case "take" -> manager.takeSnapshot().ifPresentOrElse(
+                    snapshot -> UIService.showSuccess(String.format(
+                        "Snapshot %d: %d entries, %d changed, %d removed, %d bytes.",
+                        snapshot.id(), snapshot.entries(), snapshot.changed(), snapshot.removed(), snapshot.bytes()
+                    )),
+                    () -> UIService.showSuccess("Nothing changed since the last snapshot.")
+                );
+                case "list" -> manager.listSnapshots().forEach(snapshot -> System.out.printf(
+                    "%d\t%tF %<tT\t%d entries\t+%d -%d\t%d bytes%n",
+                    snapshot.id(), snapshot.createdAt(), snapshot.entries(), snapshot.changed(), snapshot.removed(), snapshot.bytes()
+                ));
+                default -> {
+                    int restored = manager.restoreSnapshot(Long.parseLong(args[1]), masterPassword);
+                    UIService.showSuccess(String.format("Restored snapshot %s with %d entries.", args[1], restored));
+                }
+            }
+            return 0;
+        } catch (NumberFormatException e) {
+            UIService.showError("Invalid snapshot: " + args[1]);
+            return 1;
+        } catch (Exception e) {
+            UIService.showError("Snapshot command failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Spreads the vault file over a new number of shards, or back into a single file.
+     */
+    private static int runReshard(String[] args) {
+        if (args.length != 1) {
+            UIService.showError("Usage: pwmanager reshard <shards>");
+            return 1;
+        }
+
+        try (PasswordManager manager = createPasswordManager()) {
+            if (authenticate(manager) == null) return 1;
+
+            int current = manager.getShardCount();
+            manager.reshardVault(Integer.parseInt(args[0]));
+            UIService.showSuccess(String.format("Resharded the vault from %d to %d shards.", current, manager.getShardCount()));
+            return 0;
+        } catch (NumberFormatException e) {
+            UIService.showError("Invalid shard count: " + args[0]);
+            return 1;
+        } catch (Exception e) {
+            UIService.showError("Reshard failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Authenticates with the master password from the environment, or prompts for it.
+     *
+     * @return The master password, or null if authentication failed.
+     */
+    private static String authenticate(PasswordManager manager) {
+        String masterPassword = System.getenv(Constants.MASTER_PASSWORD_ENV);
+        if (masterPassword == null) masterPassword = UIService.readInput("Enter your master password", true);
+
+        if (!manager.doesMasterPasswordExist() || !manager.authenticate(masterPassword)) {
+            UIService.showError("Authentication failed.");
+            return null;
+        }
 
-        passwordManagerUI.run();
+        return masterPassword;
     }
-}
\ No newline at end of file
+}
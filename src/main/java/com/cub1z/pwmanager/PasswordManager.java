@@ -1,28 +1,71 @@
 package com.cub1z.pwmanager;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
 import com.cub1z.pwmanager.config.Constants;
+import com.cub1z.pwmanager.model.Attachment;
 import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.model.VaultHeader;
+import com.cub1z.pwmanager.repository.EntrySort;
+import com.cub1z.pwmanager.repository.EntryTimestamp;
+import com.cub1z.pwmanager.repository.PageCursor;
+import com.cub1z.pwmanager.repository.SnapshotStore;
+import com.cub1z.pwmanager.service.AttachmentService;
 import com.cub1z.pwmanager.service.CryptoService;
+import com.cub1z.pwmanager.service.CsvImportService;
 import com.cub1z.pwmanager.service.MasterPasswordService;
 import com.cub1z.pwmanager.service.PasswordEntryService;
+import com.cub1z.pwmanager.service.PasswordPolicy;
+import com.cub1z.pwmanager.service.SecretBuffer;
+import com.cub1z.pwmanager.service.VaultArchiveService;
+import com.cub1z.pwmanager.service.VaultKey;
 
-public class PasswordManager {
+public class PasswordManager implements AutoCloseable {
     private final CryptoService cryptoService;
     private final PasswordEntryService passwordEntryService;
     private final MasterPasswordService masterPasswordService;
+    private final AttachmentService attachmentService;
+    // Held for reading while the session key is in use, and for writing while it is replaced
+    private final ReadWriteLock keyLock;
+    private volatile VaultKey sessionKey;
 
     public PasswordManager(
         CryptoService cryptoService,
         PasswordEntryService passwordEntryService,
-        MasterPasswordService masterPasswordService
+        MasterPasswordService masterPasswordService,
+        AttachmentService attachmentService
     ) {
         this.cryptoService = cryptoService;
         this.passwordEntryService = passwordEntryService;
         this.masterPasswordService = masterPasswordService;
+        this.attachmentService = attachmentService;
+        this.keyLock = new ReentrantReadWriteLock();
+    }
+
+    public PasswordManager(
+        CryptoService cryptoService,
+        PasswordEntryService passwordEntryService,
+        MasterPasswordService masterPasswordService
+    ) {
+        this(cryptoService, passwordEntryService, masterPasswordService, new AttachmentService(cryptoService));
     }
 
     /**
@@ -48,13 +91,45 @@ public class PasswordManager {
      * 
      * @param masterPassword The master password to authenticate.
      * @return true if authentication is successful, false otherwise.
+     * @throws IllegalStateException If the vault header is missing while the vault holds entries encrypted under it.
      */
-    public boolean authenticate(String masterPassword) {
+    public boolean authenticate(String masterPassword) throws IllegalStateException {
         try {
             String hashedPassword = this.cryptoService.hashPassword(masterPassword.toCharArray());
-            return this.masterPasswordService.authenticate(hashedPassword);
+            boolean authenticated = this.masterPasswordService.authenticate(hashedPassword);
+
+            // Derive the vault key once per session
+            if (authenticated) this.unlock(masterPassword);
+            return authenticated;
         } catch (GeneralSecurityException e) {
             throw new RuntimeException("Error hashing master password", e);
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving vault header", e);
+        }
+    }
+
+    /**
+     * Checks if the vault key for the current session is available.
+     * 
+     * @return true if the vault is unlocked, false otherwise.
+     */
+    public boolean isUnlocked() {
+        return this.sessionKey != null && !this.sessionKey.isDestroyed();
+    }
+
+    /**
+     * Locks the vault by wiping the session vault key, once the operations using it are done.
+     */
+    public void lock() {
+        this.keyLock.writeLock().lock();
+        try {
+            if (this.sessionKey != null) {
+                this.sessionKey.destroy();
+                this.sessionKey = null;
+            }
+            this.attachmentService.lock();
+        } finally {
+            this.keyLock.writeLock().unlock();
         }
     }
 
@@ -79,11 +154,22 @@ public class PasswordManager {
         return this.passwordEntryService.getStoredPasswordCount();
     }
 
+    /**
+     * Locks the vault and releases the resources held by the underlying services.
+     * 
+     * @throws IOException If there is an error closing the password storage.
+     */
+    @Override
+    public void close() throws IOException {
+        this.lock();
+        this.passwordEntryService.close();
+    }
+
     /**
      * Adds a new password entry for the specified service.
      * 
      * @param serviceName The name of the service for which the password is being added.
-     * @param masterPwd The master password used for encryption.
+     * @param masterPwd The master password, verified even if the vault is unlocked, or null to use the unlocked session.
      * @return The generated secure password as a string.
      * @throws IllegalArgumentException If the service name is null or empty, or if the master password is null.
      * @throws RuntimeException If there is an error during the encryption or saving process.
@@ -91,17 +177,36 @@ public class PasswordManager {
     public String add(
         String serviceName, String masterPwd, boolean overwrite
     ) throws IllegalArgumentException, RuntimeException, GeneralSecurityException {
-        char[] securePassword = cryptoService.generateSecurePassword(
-            Constants.DEFAULT_PASSWORD_LENGTH,
-            Constants.DEFAULT_INCLUDE_SPECIAL_CHARS
-        );
+        return add(serviceName, masterPwd, overwrite, PasswordPolicy.defaults());
+    }
+
+    /**
+     * Adds a new password entry for the specified service, generating the password with the given policy.
+     * 
+     * @param serviceName The name of the service for which the password is being added.
+     * @param masterPwd The master password, verified even if the vault is unlocked, or null to use the unlocked session.
+     * @param overwrite If true, replaces an existing entry with the same service name.
+     * @param policy The length, character classes and exclusions of the generated password.
+     * @return The generated secure password as a string.
+     * @throws IllegalArgumentException If the service name is null or empty, or if the master password is null.
+     * @throws RuntimeException If there is an error during the encryption or saving process.
+     */
+    public String add(
+        String serviceName, String masterPwd, boolean overwrite, PasswordPolicy policy
+    ) throws IllegalArgumentException, RuntimeException, GeneralSecurityException {
+        char[] securePassword = this.cryptoService.passwordGenerator(policy).generate();
 
         try {
-            this.passwordEntryService.saveEntry(
-                serviceName,
-                this.cryptoService.encrypt(securePassword, masterPwd.toCharArray()),
-                overwrite
-            );
+            VaultKey key = this.acquireSessionKey(masterPwd);
+            try {
+                boolean created = this.passwordEntryService.getEntry(serviceName) == null;
+                this.passwordEntryService.saveEntry(serviceName, this.cryptoService.encrypt(securePassword, key), overwrite);
+
+                // Attachments left behind by a deleted entry with the same name are not inherited
+                if (created) this.attachmentService.detachAll(serviceName, key);
+            } finally {
+                this.keyLock.readLock().unlock();
+            }
 
             return new String(securePassword);
         } catch (IllegalArgumentException e) {
@@ -110,6 +215,8 @@ public class PasswordManager {
             throw new RuntimeException("Error during encryption", e);
         } catch (Exception e) {
             throw new RuntimeException("Error saving password entry", e);
+        } finally {
+            Arrays.fill(securePassword, '\0');
         }
     }
 
@@ -123,7 +230,7 @@ public class PasswordManager {
      * Retrieves the password for the specified service.
      * 
      * @param serviceName The name of the service for which the password is being retrieved.
-     * @param masterPwd The master password used for decryption.
+     * @param masterPwd The master password, verified even if the vault is unlocked, or null to use the unlocked session.
      * @return The decrypted password as a string.
      * @throws IllegalArgumentException If the service name is null or empty, or if the master password is null.
      * @throws RuntimeException If there is an error during the decryption or retrieval process.
@@ -132,19 +239,37 @@ public class PasswordManager {
     public String get(
         String serviceName, String masterPwd
     ) throws IllegalArgumentException, RuntimeException, GeneralSecurityException {
-        try {
-            PasswordEntry passwordEntry = this.passwordEntryService.getEntry(serviceName);
-            if (passwordEntry == null) {
-                throw new IllegalArgumentException("No password entry found for service: " + serviceName);
+        try (SecretBuffer secret = this.getSecret(serviceName, masterPwd)) {
+            char[] password = secret.toChars();
+            try {
+                return new String(password);
+            } finally {
+                Arrays.fill(password, '\0');
             }
+        }
+    }
 
-            byte[] entry = passwordEntry.getEncryptedPassword();
-            char[] masterPassword = masterPwd.toCharArray();
-
-            char[] decryptedPassword = this.cryptoService.decrypt(entry, masterPassword);
-            this.passwordEntryService.updateLastAccessedAt(serviceName);
-
-            return new String(decryptedPassword);
+    /**
+     * Retrieves the password for the specified service into off-heap memory, without
+     * creating a String of it. The caller must close the buffer once done with it.
+     * 
+     * @param serviceName The name of the service for which the password is being retrieved.
+     * @param masterPwd The master password, verified even if the vault is unlocked, or null to use the unlocked session.
+     * @return The decrypted password, wiped when closed.
+     * @throws IllegalArgumentException If the service name is null or empty, or if the master password is null.
+     * @throws RuntimeException If there is an error during the decryption or retrieval process.
+     * @throws GeneralSecurityException If there is an error during decryption.
+     */
+    public SecretBuffer getSecret(
+        String serviceName, String masterPwd
+    ) throws IllegalArgumentException, RuntimeException, GeneralSecurityException {
+        try {
+            VaultKey key = this.acquireSessionKey(masterPwd);
+            try {
+                return this.readSecret(serviceName, key, masterPwd);
+            } finally {
+                this.keyLock.readLock().unlock();
+            }
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException(e.getMessage());
         } catch (GeneralSecurityException e) {
@@ -160,7 +285,7 @@ public class PasswordManager {
      * Updates the password for the specified service.
      * 
      * @param serviceName The name of the service for which the password is being updated.
-     * @param masterPwd The master password used for encryption.
+     * @param masterPwd The master password, verified even if the vault is unlocked, or null to use the unlocked session.
      * @return The new secure password as a string.
      * @throws IllegalArgumentException If the service name is null or empty, or if the master password is null.
      * @throws RuntimeException If there is an error during the encryption or saving process.
@@ -176,6 +301,7 @@ public class PasswordManager {
      * Deletes the password entry for the specified service.
      * 
      * @param serviceName The name of the service for which the password entry is being deleted.
+     * @param masterPwd The master password, verified even if the vault is unlocked, or null to use the unlocked session.
      * @throws IllegalArgumentException If the service name is null or empty.
      * @throws RuntimeException If there is an error during the deletion process.
      */
@@ -183,12 +309,17 @@ public class PasswordManager {
         String serviceName, String masterPwd
     ) throws IllegalArgumentException, RuntimeException {
         try {
-            // Verify the master password before deletion
-            this.get(serviceName, masterPwd);
+            VaultKey key = this.acquireSessionKey(masterPwd);
+            try {
+                // Verify the master password before deletion
+                this.readSecret(serviceName, key, masterPwd).destroy();
 
-            // If the retrieval is successful, proceed to delete the entry
-            this.passwordEntryService.deleteEntry(serviceName);
-        
+                // If the retrieval is successful, proceed to delete the entry and its attachments
+                this.passwordEntryService.deleteEntry(serviceName);
+                this.attachmentService.detachAll(serviceName, key);
+            } finally {
+                this.keyLock.readLock().unlock();
+            }
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException(e.getMessage());
         } catch (RuntimeException e) {
@@ -200,6 +331,185 @@ public class PasswordManager {
         }
     }
 
+    /**
+     * Attaches a file to an entry, replacing the attachment with the same name. The file is
+     * streamed into the encrypted blob store, and stored once however many entries attach it.
+     * 
+     * @param serviceName The name of the entry.
+     * @param name The name of the attachment.
+     * @param file The file to attach.
+     * @return The new attachment.
+     * @throws IllegalStateException If the vault is locked.
+     * @throws IllegalArgumentException If there is no entry for the service, or the name is empty.
+     * @throws IOException If the file cannot be read or the blob store cannot be written.
+     * @throws GeneralSecurityException If the blob store cannot be opened with the vault key.
+     */
+    public Attachment attach(
+        String serviceName, String name, Path file
+    ) throws IllegalStateException, IllegalArgumentException, IOException, GeneralSecurityException {
+        VaultKey key = this.acquireSessionKey(null);
+        try {
+            if (this.passwordEntryService.getEntry(serviceName) == null) {
+                throw new IllegalArgumentException("No password entry found for service: " + serviceName);
+            }
+
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                return this.attachmentService.attach(serviceName, name, in, key);
+            }
+        } finally {
+            this.keyLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lists the attachments of an entry, without reading their content.
+     * 
+     * @param serviceName The name of the entry.
+     * @return The attachments, in the order they were added.
+     * @throws IllegalStateException If the vault is locked.
+     * @throws IOException If the blob store manifest cannot be read.
+     * @throws GeneralSecurityException If the blob store cannot be opened with the vault key.
+     */
+    public List<Attachment> getAttachments(String serviceName) throws IllegalStateException, IOException, GeneralSecurityException {
+        VaultKey key = this.acquireSessionKey(null);
+        try {
+            return this.attachmentService.list(serviceName, key);
+        } finally {
+            this.keyLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Decrypts an attachment into a file. The file is removed again if decryption fails.
+     * 
+     * @param serviceName The name of the entry.
+     * @param name The name of the attachment.
+     * @param target The file to write, replaced if it exists.
+     * @return The number of bytes written.
+     * @throws IllegalStateException If the vault is locked.
+     * @throws IllegalArgumentException If the entry has no attachment with that name.
+     * @throws IOException If the blob cannot be read or the file cannot be written.
+     * @throws GeneralSecurityException If the blob fails authentication.
+     */
+    public long exportAttachment(
+        String serviceName, String name, Path target
+    ) throws IllegalStateException, IllegalArgumentException, IOException, GeneralSecurityException {
+        VaultKey key = this.acquireSessionKey(null);
+
+        try (FileChannel out = FileChannel.open(
+            target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            return this.attachmentService.read(serviceName, name, out, key);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            // Never leave partial content behind
+            Files.deleteIfExists(target);
+            throw e;
+        } finally {
+            this.keyLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an attachment from an entry. Its blob is deleted once no entry references it.
+     * 
+     * @param serviceName The name of the entry.
+     * @param name The name of the attachment.
+     * @return true if the attachment was removed, false if there was none.
+     * @throws IllegalStateException If the vault is locked.
+     * @throws IOException If the blob store cannot be written.
+     * @throws GeneralSecurityException If the blob store cannot be opened with the vault key.
+     */
+    public boolean detach(String serviceName, String name) throws IllegalStateException, IOException, GeneralSecurityException {
+        VaultKey key = this.acquireSessionKey(null);
+        try {
+            return this.attachmentService.detach(serviceName, name, key);
+        } finally {
+            this.keyLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the attachments of entries that no longer exist, such as those of entries deleted
+     * while the blob store could not be written, and deletes the blobs no entry references.
+     * 
+     * @return The number of deleted files.
+     * @throws IllegalStateException If the vault is locked.
+     * @throws IOException If the blob store cannot be listed or cleaned.
+     * @throws GeneralSecurityException If the blob store cannot be opened with the vault key.
+     */
+    public int collectAttachmentGarbage() throws IllegalStateException, IOException, GeneralSecurityException {
+        VaultKey key = this.acquireSessionKey(null);
+        try {
+            return this.collectAttachmentGarbage(key);
+        } finally {
+            this.keyLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the stored service names, tolerating case differences, partial names and typos.
+     * 
+     * @param query The text to search for.
+     * @return The best matching service names, best first.
+     */
+    public List<String> search(String query) {
+        return this.passwordEntryService.search(query, Constants.DEFAULT_SEARCH_RESULTS);
+    }
+
+    /**
+     * Streams entries by one of their timestamps, such as the most recently used ones
+     * or those not accessed since a given date.
+     * 
+     * @param timestamp The timestamp to order and filter by.
+     * @param from The inclusive lower bound, or null for no lower bound.
+     * @param to The exclusive upper bound, or null for no upper bound.
+     * @param newestFirst If true, the most recent entries come first.
+     * @param limit The maximum number of entries.
+     * @return The matching entries, produced lazily.
+     * @throws IllegalArgumentException If the timestamp is null or the limit is negative.
+     */
+    public Stream<PasswordEntry> queryEntries(
+        EntryTimestamp timestamp, Date from, Date to, boolean newestFirst, long limit
+    ) throws IllegalArgumentException {
+        return this.passwordEntryService.query(timestamp, from, to, newestFirst, limit);
+    }
+
+    /**
+     * Retrieves one page of entries in the given order.
+     * 
+     * @param sort The order of the entries.
+     * @param page The zero-based page number.
+     * @param pageSize The number of entries per page.
+     * @return The entries of the page, empty past the last page.
+     * @throws IllegalArgumentException If the sort is null, or the page or page size is invalid.
+     */
+    public List<PasswordEntry> getEntriesPage(EntrySort sort, int page, int pageSize) throws IllegalArgumentException {
+        if (page < 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("Invalid page or page size");
+        }
+
+        return this.passwordEntryService.getPage(sort, (long) page * pageSize, pageSize);
+    }
+
+    /**
+     * Retrieves the page of entries that follows a cursor. Moving to the next page this way
+     * seeks the index instead of walking every previous page.
+     * 
+     * @param sort The order of the entries.
+     * @param after The position of the last entry of the previous page, or null for the first page.
+     * @param pageSize The number of entries per page.
+     * @return The entries of the page, empty past the last page.
+     * @throws IllegalArgumentException If the sort is null, the cursor belongs to another order,
+     *                                  or the page size is invalid.
+     */
+    public List<PasswordEntry> getEntriesPage(EntrySort sort, PageCursor after, int pageSize) throws IllegalArgumentException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Invalid page size");
+        }
+
+        return this.passwordEntryService.getPage(sort, after, pageSize);
+    }
+
     /**
      * Retrieves all password entries.
      * 
@@ -213,4 +523,557 @@ public class PasswordManager {
             throw new IOException("Error retrieving all password entries", e);
         }
     }
+
+    /**
+     * Streams every entry into an encrypted archive, without decrypting any of them.
+     * 
+     * @param archivePath The archive file to write.
+     * @return The number of exported entries.
+     * @throws IllegalStateException If the vault is locked.
+     * @throws IOException If there is an error writing the archive.
+     * @throws GeneralSecurityException If there is an error encrypting the archive.
+     */
+    public long exportVault(Path archivePath) throws IllegalStateException, IOException, GeneralSecurityException {
+        VaultKey key = this.acquireSessionKey(null);
+        VaultArchiveService archiveService = new VaultArchiveService(this.cryptoService);
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(archivePath))) {
+            return archiveService.exportEntries(
+                this.passwordEntryService.snapshot(), this.passwordEntryService.getVaultHeader(), key, out
+            );
+        } finally {
+            this.keyLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Imports the entries of an encrypted archive into the vault, once the whole archive has been
+     * authenticated. Entries are only re-encrypted when the archive comes from a vault with a
+     * different key. They are saved in atomic batches, so an import interrupted by a crash
+     * leaves whole batches behind, and importing the archive again completes it.
+     * 
+     * @param archivePath The archive file to read.
+     * @param archivePassword The master password of the vault the archive was exported from,
+     *                        or null if it was exported from this vault.
+     * @param overwrite If true, archived entries replace existing entries with the same service name,
+     *                  otherwise existing entries are kept.
+     * @return The number of imported entries.
+     * @throws IllegalStateException If the vault is locked.
+     * @throws IllegalArgumentException If the archive comes from another vault and no password was given.
+     * @throws IOException If the archive cannot be read or is malformed or truncated.
+     * @throws GeneralSecurityException If the archive fails authentication.
+     */
+    public long importVault(
+        Path archivePath, String archivePassword, boolean overwrite
+    ) throws IllegalStateException, IllegalArgumentException, IOException, GeneralSecurityException {
+        VaultKey key = this.acquireSessionKey(null);
+        VaultHeader header = this.passwordEntryService.getVaultHeader();
+        VaultArchiveService archiveService = new VaultArchiveService(this.cryptoService);
+        char[] sourcePassword = archivePassword != null ? archivePassword.toCharArray() : null;
+        long[] imported = { 0 };
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(archivePath))) {
+            archiveService.importEntries(in, archiveHeader -> {
+                if (sourcePassword != null) {
+                    return this.cryptoService.deriveVaultKey(sourcePassword, archiveHeader);
+                }
+
+                boolean sameVault = Arrays.equals(archiveHeader.getSalt(), header.getSalt())
+                    && archiveHeader.getIterations() == header.getIterations();
+                if (!sameVault) {
+                    throw new IllegalArgumentException("Archive comes from another vault, its master password is required");
+                }
+                return key;
+            }, sourcePassword, key, batch -> {
+                if (!overwrite) {
+                    batch.removeIf(entry -> this.passwordEntryService.getEntry(entry.getServiceName()) != null);
+                }
+
+                this.passwordEntryService.saveEntries(batch, overwrite);
+                this.detachImported(batch, key);
+                imported[0] += batch.size();
+            });
+        } finally {
+            this.keyLock.readLock().unlock();
+            if (sourcePassword != null) Arrays.fill(sourcePassword, '\0');
+        }
+
+        return imported[0];
+    }
+
+    /**
+     * Imports the credentials of a CSV dump exported by a browser or another password manager.
+     * Rows are encrypted in parallel and the valid ones are stored with a single write.
+     * 
+     * @param input The CSV stream, with a header row.
+     * @param overwrite If true, rows replace existing entries with the same service name,
+     *                  otherwise those rows are reported as errors.
+     * @param listener Receives the progress of the import, or null.
+     * @return The number of imported entries and the errors of the rejected rows.
+     * @throws IllegalStateException If the vault is locked.
+     * @throws IllegalArgumentException If the CSV header is not recognised.
+     * @throws IOException If there is an error reading the input or saving the entries.
+     */
+    public CsvImportService.Report importCsv(
+        Reader input, boolean overwrite, CsvImportService.ProgressListener listener
+    ) throws IllegalStateException, IllegalArgumentException, IOException {
+        VaultKey key = this.acquireSessionKey(null);
+        try {
+            return new CsvImportService(this.cryptoService).importCsv(
+                input,
+                key,
+                overwrite ? null : serviceName -> this.passwordEntryService.getEntry(serviceName) != null,
+                listener,
+                entries -> {
+                    this.passwordEntryService.saveEntries(entries, overwrite);
+                    this.detachImported(entries, key);
+                }
+            );
+        } finally {
+            this.keyLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the key derivation iterations recorded in the vault header.
+     * 
+     * @return The iteration count, or 0 if the vault has no header yet.
+     */
+    public int getKdfIterations() {
+        VaultHeader header = this.passwordEntryService.getVaultHeader();
+        return header != null ? header.getIterations() : 0;
+    }
+
+    /**
+     * Measures the key derivation on this machine for the configured target unlock time.
+     * 
+     * @return The iteration count that takes about the target time.
+     * @throws GeneralSecurityException If the key derivation is not available.
+     */
+    public int calibrateKdf() throws GeneralSecurityException {
+        return this.calibrateKdf(Long.getLong(Constants.KDF_TARGET_MILLIS_PROPERTY, Constants.DEFAULT_KDF_TARGET_MILLIS));
+    }
+
+    /**
+     * Measures the key derivation on this machine for a given target unlock time.
+     * 
+     * @param targetMillis The time one key derivation should take.
+     * @return The iteration count that takes about the target time.
+     * @throws IllegalArgumentException If the target time is not positive.
+     * @throws GeneralSecurityException If the key derivation is not available.
+     */
+    public int calibrateKdf(long targetMillis) throws IllegalArgumentException, GeneralSecurityException {
+        return this.cryptoService.calibrateIterations(targetMillis);
+    }
+
+    /**
+     * Re-encrypts every entry under a new vault key derived with another iteration count.
+     * Entries still encrypted with their own password-derived key are converted on the way,
+     * or left untouched if they cannot be decrypted with the master password.
+     * 
+     * The new header is saved first, marked as re-keying, and all the entries are then committed
+     * in one atomic batch, so a run interrupted at any point is settled on the next unlock.
+     * Operations using the session key wait until the re-key is over.
+     * 
+     * @param masterPassword The master password, needed to derive the new key.
+     * @param iterations The new key derivation iteration count.
+     * @return The number of re-encrypted entries.
+     * @throws IllegalStateException If the master password is wrong.
+     * @throws IllegalArgumentException If the iteration count is out of range.
+     * @throws IOException If there is an error saving the header or the entries.
+     * @throws GeneralSecurityException If an entry cannot be decrypted with the current vault key.
+     */
+    public int rekeyVault(
+        String masterPassword, int iterations
+    ) throws IllegalStateException, IllegalArgumentException, IOException, GeneralSecurityException {
+        this.keyLock.writeLock().lock();
+        try {
+            if (masterPassword == null || !this.authenticate(masterPassword)) {
+                throw new IllegalStateException("Vault is locked");
+            }
+
+            VaultKey currentKey = this.sessionKey;
+            VaultHeader currentHeader = this.passwordEntryService.getVaultHeader();
+            VaultHeader newHeader = this.cryptoService.generateVaultHeader(iterations);
+            VaultKey newKey = this.cryptoService.deriveVaultKey(masterPassword.toCharArray(), newHeader);
+            List<PasswordEntry> rekeyed = List.of();
+
+            try {
+                rekeyed = this.rekeyEntries(currentKey, newKey, masterPassword);
+
+                // The attachments open with either key until the re-key has settled
+                this.attachmentService.rewrap(currentKey, currentKey, newKey);
+                this.passwordEntryService.saveVaultHeader(new VaultHeader(newHeader.getSalt(), iterations, currentHeader));
+                if (!rekeyed.isEmpty()) this.passwordEntryService.saveEntries(rekeyed, true);
+                this.passwordEntryService.saveVaultHeader(newHeader);
+                this.attachmentService.rewrap(newKey, newKey);
+            } catch (IOException | GeneralSecurityException | RuntimeException e) {
+                // A saved re-keying header is settled on the next unlock, but the session must
+                // keep the key of the entries as they are now
+                boolean moved = !rekeyed.isEmpty()
+                    && this.passwordEntryService.getEntry(rekeyed.get(0).getServiceName()) == rekeyed.get(0);
+                this.replaceSessionKey(currentKey, newKey, moved);
+                throw e;
+            }
+
+            this.replaceSessionKey(currentKey, newKey, true);
+            return rekeyed.size();
+        } finally {
+            this.keyLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes an incremental snapshot of the vault. Snapshots hold the encrypted entries as they
+     * are stored, so nothing is decrypted.
+     *
+     * @return The new snapshot, or empty if nothing changed since the previous one.
+     * @throws IllegalStateException If the vault is locked or being re-keyed.
+     * @throws IOException If there is an error writing the snapshot.
+     */
+    public Optional<SnapshotStore.Snapshot> takeSnapshot() throws IllegalStateException, IOException {
+        this.acquireSessionKey(null);
+        try {
+            return this.passwordEntryService.takeSnapshot();
+        } finally {
+            this.keyLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lists the stored snapshots, oldest first.
+     *
+     * @return The snapshots.
+     * @throws IllegalStateException If the vault is locked.
+     * @throws IOException If there is an error reading the snapshots.
+     */
+    public List<SnapshotStore.Snapshot> listSnapshots() throws IllegalStateException, IOException {
+        this.requireSessionKey(null);
+        return this.passwordEntryService.listSnapshots();
+    }
+
+    /**
+     * Restores the vault to a snapshot. The current state is snapshotted first, so the restore
+     * can itself be undone. A snapshot taken before a re-key brings its own vault header back,
+     * switched in with the same crash-safe protocol as {@link #rekeyVault}.
+     *
+     * @param id The snapshot number.
+     * @param masterPassword The master password.
+     * @return The number of entries in the restored vault.
+     * @throws IllegalStateException If the master password is wrong.
+     * @throws IllegalArgumentException If there is no snapshot with that number.
+     * @throws IOException If there is an error reading the snapshot or writing the vault.
+     * @throws GeneralSecurityException If there is an error deriving the key or re-wrapping the attachments.
+     */
+    public int restoreSnapshot(
+        long id, String masterPassword
+    ) throws IllegalStateException, IllegalArgumentException, IOException, GeneralSecurityException {
+        this.keyLock.writeLock().lock();
+        try {
+            if (masterPassword == null || !this.authenticate(masterPassword)) {
+                throw new IllegalStateException("Vault is locked");
+            }
+
+            SnapshotStore.Contents contents = this.passwordEntryService.readSnapshot(id);
+            this.passwordEntryService.takeSnapshot();
+
+            VaultKey currentKey = this.sessionKey;
+            VaultHeader currentHeader = this.passwordEntryService.getVaultHeader();
+            VaultHeader restoredHeader = contents.header();
+            boolean sameHeader = restoredHeader == null || currentHeader == null
+                || (Arrays.equals(restoredHeader.getSalt(), currentHeader.getSalt())
+                    && restoredHeader.getIterations() == currentHeader.getIterations());
+            if (sameHeader) {
+                this.passwordEntryService.replaceAll(contents.entries().values());
+                this.collectAttachmentGarbage(currentKey);
+                return contents.entries().size();
+            }
+
+            VaultKey restoredKey = this.cryptoService.deriveVaultKey(masterPassword.toCharArray(), restoredHeader);
+            boolean replaced = false;
+            try {
+                this.attachmentService.rewrap(currentKey, currentKey, restoredKey);
+                this.passwordEntryService.saveVaultHeader(
+                    new VaultHeader(restoredHeader.getSalt(), restoredHeader.getIterations(), currentHeader)
+                );
+                this.passwordEntryService.replaceAll(contents.entries().values());
+                replaced = true;
+                this.passwordEntryService.saveVaultHeader(restoredHeader);
+                this.attachmentService.rewrap(restoredKey, restoredKey);
+                this.collectAttachmentGarbage(restoredKey);
+            } catch (IOException | GeneralSecurityException | RuntimeException e) {
+                // A saved re-keying header is settled on the next unlock
+                this.replaceSessionKey(currentKey, restoredKey, replaced);
+                throw e;
+            }
+
+            this.replaceSessionKey(currentKey, restoredKey, true);
+            return contents.entries().size();
+        } finally {
+            this.keyLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of shards of the vault file, 1 if it is not sharded.
+     */
+    public int getShardCount() {
+        return this.passwordEntryService.getShardCount();
+    }
+
+    /**
+     * Spreads the vault file over a new number of shards, without decrypting any entry.
+     * The vault stays readable and writable while the new shards are written.
+     *
+     * @param shardCount The number of shards, or 1 for a single vault file.
+     * @throws IllegalStateException If the vault is locked.
+     * @throws IllegalArgumentException If the shard count is out of range.
+     * @throws IOException If there is an error writing the vault.
+     */
+    public void reshardVault(int shardCount) throws IllegalStateException, IllegalArgumentException, IOException {
+        this.requireSessionKey(null);
+        this.passwordEntryService.reshard(shardCount);
+    }
+
+    // Auxiliary methods
+
+    /**
+     * Derives the session vault key from the master password and the vault header.
+     * The header, and with it the vault salt, is created on the first unlock with
+     * an iteration count calibrated for this machine. A vault that already holds entries
+     * encrypted with a vault key is never given a new header, as they would not open with it.
+     */
+    private void unlock(String masterPassword) throws IllegalStateException, GeneralSecurityException, IOException {
+        this.keyLock.writeLock().lock();
+        try {
+            VaultHeader header = this.passwordEntryService.getVaultHeader();
+            if (header == null) {
+                boolean keyed = this.passwordEntryService.snapshot().stream()
+                    .anyMatch(entry -> this.cryptoService.isKeyEncrypted(entry.getEncryptedPassword()));
+                if (keyed) {
+                    throw new IllegalStateException("The vault header is missing, restore it next to the vault file to unlock it");
+                }
+
+                header = this.cryptoService.generateVaultHeader(this.calibrateKdf());
+                this.passwordEntryService.saveVaultHeader(header);
+            } else if (header.isRekeying()) {
+                header = this.settleRekey(header, masterPassword);
+            }
+
+            this.lock();
+            this.sessionKey = this.cryptoService.deriveVaultKey(masterPassword.toCharArray(), header);
+        } finally {
+            this.keyLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Settles a re-key that was interrupted. Every entry encrypted with a vault key is checked:
+     * if they all open with the new key, or none does, the matching header is kept. Entries left
+     * under the previous key next to re-keyed ones are moved to the new key before settling.
+     */
+    private VaultHeader settleRekey(VaultHeader header, String masterPassword) throws GeneralSecurityException, IOException {
+        List<PasswordEntry> stale = new ArrayList<>();
+        boolean moved = false;
+
+        try (VaultKey newKey = this.cryptoService.deriveVaultKey(masterPassword.toCharArray(), header)) {
+            for (PasswordEntry entry : this.passwordEntryService.snapshot()) {
+                if (!this.cryptoService.isKeyEncrypted(entry.getEncryptedPassword())) continue;
+
+                if (this.opensWith(entry, newKey)) {
+                    moved = true;
+                } else {
+                    stale.add(entry);
+                }
+            }
+
+            if (moved && !stale.isEmpty()) {
+                try (VaultKey previousKey = this.cryptoService.deriveVaultKey(masterPassword.toCharArray(), header.getRekeyingFrom())) {
+                    List<PasswordEntry> rekeyed = new ArrayList<>(stale.size());
+                    for (PasswordEntry entry : stale) {
+                        char[] plain = this.cryptoService.decrypt(entry.getEncryptedPassword(), previousKey);
+                        try {
+                            rekeyed.add(new PasswordEntry(
+                                entry.getServiceName(), this.cryptoService.encrypt(plain, newKey),
+                                entry.getCreatedAt(), entry.getUpdatedAt(), entry.getLastAccessedAt()
+                            ));
+                        } finally {
+                            Arrays.fill(plain, '\0');
+                        }
+                    }
+                    this.passwordEntryService.saveEntries(rekeyed, true);
+                }
+            }
+        }
+
+        VaultHeader settled = moved || stale.isEmpty() ? header.withoutRekeying() : header.getRekeyingFrom();
+        this.passwordEntryService.saveVaultHeader(settled);
+        return settled;
+    }
+
+    /**
+     * Re-encrypts the entries under the new key in parallel, since converting password-encrypted
+     * entries costs one full key derivation each. Entries that cannot be converted are left out.
+     */
+    private List<PasswordEntry> rekeyEntries(
+        VaultKey currentKey, VaultKey newKey, String masterPassword
+    ) throws GeneralSecurityException {
+        try {
+            return this.passwordEntryService.snapshot().parallelStream().map(entry -> {
+                byte[] encryptedPassword = entry.getEncryptedPassword();
+                char[] plain = null;
+                try {
+                    if (this.cryptoService.isKeyEncrypted(encryptedPassword)) {
+                        plain = this.cryptoService.decrypt(encryptedPassword, currentKey);
+                    } else {
+                        try {
+                            plain = this.cryptoService.decrypt(encryptedPassword, masterPassword.toCharArray());
+                        } catch (GeneralSecurityException e) {
+                            return null;
+                        }
+                    }
+
+                    return new PasswordEntry(
+                        entry.getServiceName(), this.cryptoService.encrypt(plain, newKey),
+                        entry.getCreatedAt(), entry.getUpdatedAt(), entry.getLastAccessedAt()
+                    );
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(new GeneralSecurityException(
+                        "Cannot re-key entry: " + entry.getServiceName(), e
+                    ));
+                } finally {
+                    if (plain != null) Arrays.fill(plain, '\0');
+                }
+            }).filter(entry -> entry != null).toList();
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof GeneralSecurityException cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the session vault key, unlocking the vault with the master password if needed.
+     * A given master password is always verified, even when the vault is already unlocked.
+     */
+    private VaultKey requireSessionKey(String masterPwd) {
+        if (masterPwd != null) {
+            boolean verified = this.isUnlocked() ? this.verifyMasterPassword(masterPwd) : this.authenticate(masterPwd);
+            if (!verified) throw new IllegalStateException("Invalid master password");
+        } else if (!this.isUnlocked()) {
+            throw new IllegalStateException("Vault is locked");
+        }
+
+        return this.sessionKey;
+    }
+
+    /**
+     * Like {@link #requireSessionKey}, but keeps the key from being replaced until the caller
+     * releases the read lock, so what it encrypts is never left under a discarded key.
+     * The master password is verified before the lock is taken, since unlocking replaces the key.
+     */
+    private VaultKey acquireSessionKey(String masterPwd) {
+        if (masterPwd != null) this.requireSessionKey(masterPwd);
+
+        this.keyLock.readLock().lock();
+        VaultKey key = this.sessionKey;
+        if (key == null || key.isDestroyed()) {
+            this.keyLock.readLock().unlock();
+            throw new IllegalStateException("Vault is locked");
+        }
+        return key;
+    }
+
+    /**
+     * Switches the session to the new key and wipes the other one.
+     */
+    private void replaceSessionKey(VaultKey currentKey, VaultKey newKey, boolean useNewKey) {
+        (useNewKey ? currentKey : newKey).destroy();
+        this.sessionKey = useNewKey ? newKey : currentKey;
+    }
+
+    private boolean verifyMasterPassword(String masterPwd) {
+        try {
+            return this.masterPasswordService.authenticate(this.cryptoService.hashPassword(masterPwd.toCharArray()));
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Error hashing master password", e);
+        }
+    }
+
+    /**
+     * Decrypts a stored entry and records the access, with the session key held by the caller.
+     */
+    private SecretBuffer readSecret(
+        String serviceName, VaultKey key, String masterPwd
+    ) throws IllegalArgumentException, GeneralSecurityException, IOException {
+        PasswordEntry passwordEntry = this.passwordEntryService.getEntry(serviceName);
+        if (passwordEntry == null) {
+            throw new IllegalArgumentException("No password entry found for service: " + serviceName);
+        }
+
+        SecretBuffer decryptedPassword = this.decryptEntry(passwordEntry.getEncryptedPassword(), key, masterPwd);
+        try {
+            this.passwordEntryService.updateLastAccessedAt(serviceName);
+        } catch (IOException e) {
+            decryptedPassword.destroy();
+            throw e;
+        }
+
+        return decryptedPassword;
+    }
+
+    /**
+     * Decrypts an entry with the session vault key, falling back to the master password
+     * for entries that were encrypted with their own per-entry salt.
+     */
+    private SecretBuffer decryptEntry(byte[] entry, VaultKey key, String masterPwd) throws GeneralSecurityException {
+        if (this.cryptoService.isKeyEncrypted(entry)) {
+            try {
+                return this.cryptoService.decryptToBuffer(entry, key);
+            } catch (GeneralSecurityException e) {
+                if (masterPwd == null) throw e;
+            }
+        }
+
+        if (masterPwd == null) {
+            throw new IllegalArgumentException("Master password is required for legacy entries");
+        }
+
+        char[] password = this.cryptoService.decrypt(entry, masterPwd.toCharArray());
+        try {
+            return SecretBuffer.encode(password);
+        } finally {
+            Arrays.fill(password, '\0');
+        }
+    }
+
+    private boolean opensWith(PasswordEntry entry, VaultKey key) {
+        try {
+            char[] plain = this.cryptoService.decrypt(entry.getEncryptedPassword(), key);
+            Arrays.fill(plain, '\0');
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private int collectAttachmentGarbage(VaultKey key) throws IOException, GeneralSecurityException {
+        return this.attachmentService.collectGarbage(
+            serviceName -> this.passwordEntryService.getEntry(serviceName) != null, key
+        );
+    }
+
+    /**
+     * Imported entries replace the ones they overwrite and carry no attachments, so neither they
+     * nor new entries reusing the name of a deleted one keep the attachments stored under it.
+     */
+    private void detachImported(List<PasswordEntry> entries, VaultKey key) throws IOException {
+        List<String> serviceNames = new ArrayList<>(entries.size());
+        entries.forEach(entry -> serviceNames.add(entry.getServiceName()));
+
+        try {
+            this.attachmentService.detachAll(serviceNames, key);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Attachment store cannot be opened with the vault key", e);
+        }
+    }
 }
@@ -2,7 +2,11 @@ package com.cub1z.pwmanager;
 
 import java.util.List;
 
+import com.cub1z.pwmanager.config.Constants;
 import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.repository.EntrySort;
+import com.cub1z.pwmanager.repository.PageCursor;
+import com.cub1z.pwmanager.service.SecretBuffer;
 import com.cub1z.pwmanager.ui.UIService;
 
 public class PasswordManagerUI {
@@ -63,18 +67,18 @@ public class PasswordManagerUI {
             UIService.showError(this.error);
             UIService.showWarning(this.warning);
 
-            String choice = UIService.readInput("Choose an option (1-5)", false);
+            String choice = UIService.readInput("Choose an option (1-6)", false);
             Integer option = null;
             
             try {
                 this.resetMessages();
                 option = Integer.parseInt(choice);
-                if (option < 1 || option > 5) {
-                    this.error = "Invalid option. Please choose a number between 1 and 5.";
+                if (option < 1 || option > 6) {
+                    this.error = "Invalid option. Please choose a number between 1 and 6.";
                     continue;
                 }
             } catch (Exception e) {
-                this.error = "Invalid input. Please enter a number between 1 and 5.";
+                this.error = "Invalid input. Please enter a number between 1 and 6.";
                 continue;
             }
 
@@ -83,7 +87,8 @@ public class PasswordManagerUI {
                 case 2 -> this.getPassword();
                 case 3 -> this.addPassword();
                 case 4 -> this.deletePassword();
-                case 5 -> this.exit();
+                case 5 -> this.searchPasswords();
+                case 6 -> this.exit();
             }
         }
     }
@@ -109,8 +114,9 @@ public class PasswordManagerUI {
         
         try {
             String serviceName = UIService.readInput("Enter the service name", false);
-            String password = this.manager.get(serviceName, this.masterPassword);
-            UIService.showPassword(serviceName, password);
+            try (SecretBuffer password = this.manager.getSecret(serviceName, this.masterPassword)) {
+                UIService.showPassword(serviceName, password);
+            }
         } catch (Exception e) {
             this.error = e.getMessage();
         }
@@ -118,15 +124,108 @@ public class PasswordManagerUI {
 
     private void listPasswords() {
         this.resetMessages();
-        
+
+        int pageSize = Constants.DEFAULT_PAGE_SIZE;
+        EntrySort[] sorts = EntrySort.values();
+        int sort = 0;
+        int page = 0;
+        // Position of the last displayed entry, to seek the next page instead of skipping to it
+        PageCursor next = null;
+        boolean seekNext = false;
+        String pageError = "";
+
         try {
-            List<PasswordEntry> entries = this.manager.getAllEntries();
-            UIService.showPasswordList(entries);
+            while (true) {
+                // Only the visible window is fetched, in the order of the matching index
+                int total = this.manager.getSavedPasswordCount();
+                int pageCount = Math.max(1, (total + pageSize - 1) / pageSize);
+                if (page > pageCount - 1) {
+                    page = pageCount - 1;
+                    seekNext = false;
+                }
+
+                List<PasswordEntry> entries = seekNext && next != null
+                    ? this.manager.getEntriesPage(sorts[sort], next, pageSize)
+                    : this.manager.getEntriesPage(sorts[sort], page, pageSize);
+                next = entries.isEmpty() ? null : PageCursor.after(sorts[sort], entries.get(entries.size() - 1));
+                seekNext = false;
+                UIService.showPasswordPage(
+                    entries, (long) page * pageSize + 1, pageSize, page, pageCount, total, sorts[sort].getLabel()
+                );
+                UIService.showError(pageError);
+                pageError = "";
+
+                String[] command = UIService.readInput("Navigate", false).strip().toLowerCase().split("\\s+");
+                switch (command[0]) {
+                    case "n", "" -> {
+                        seekNext = page < pageCount - 1;
+                        page = Math.min(page + 1, pageCount - 1);
+                    }
+                    case "p" -> page = Math.max(page - 1, 0);
+                    case "s" -> {
+                        sort = (sort + 1) % sorts.length;
+                        page = 0;
+                    }
+                    case "j" -> {
+                        try {
+                            int target = Integer.parseInt(command[command.length - 1]) - 1;
+                            if (command.length != 2 || target < 0 || target >= pageCount) {
+                                pageError = String.format("Choose a page between 1 and %d.", pageCount);
+                            } else {
+                                page = target;
+                            }
+                        } catch (NumberFormatException e) {
+                            pageError = "Usage: j <page>";
+                        }
+                    }
+                    case "q" -> {
+                        return;
+                    }
+                    default -> pageError = "Unknown command: " + command[0];
+                }
+            }
         } catch (Exception e) {
             this.error = "Error retrieving password entries: " + e.getMessage();
         }
     }
 
+    private void searchPasswords() {
+        this.resetMessages();
+
+        if (this.manager.getSavedPasswordCount() == 0) {
+            this.warning = "No passwords stored yet.";
+            return;
+        }
+
+        try {
+            String query = UIService.readInput("Search for a service", false);
+            List<String> results = this.manager.search(query);
+            UIService.showSearchResults(query, results);
+            if (results.isEmpty()) {
+                UIService.readInput("Press Enter to continue...", false);
+                return;
+            }
+
+            String choice = UIService.readInput("Enter a result number to show its password, or nothing to go back", false);
+            if (choice.isBlank()) return;
+
+            int index = Integer.parseInt(choice.strip()) - 1;
+            if (index < 0 || index >= results.size()) {
+                this.error = "Invalid result number.";
+                return;
+            }
+
+            String serviceName = results.get(index);
+            try (SecretBuffer password = this.manager.getSecret(serviceName, this.masterPassword)) {
+                UIService.showPassword(serviceName, password);
+            }
+        } catch (NumberFormatException e) {
+            this.error = "Invalid input. Please enter a result number.";
+        } catch (Exception e) {
+            this.error = e.getMessage();
+        }
+    }
+
     private void deletePassword() {
         this.resetMessages();
 
@@ -147,7 +246,14 @@ public class PasswordManagerUI {
     private void exit() {
         UIService.clearScreen();
         UIService.showLogo(false);
-        UIService.showSuccess("^^ Goodbye!");
+
+        try {
+            this.manager.close();
+            UIService.showSuccess("^^ Goodbye!");
+        } catch (Exception e) {
+            UIService.showError("Error closing password storage: " + e.getMessage());
+        }
+
         System.exit(0);
     }
 
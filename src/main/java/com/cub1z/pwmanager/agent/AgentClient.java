@@ -0,0 +1,107 @@
+package com.cub1z.pwmanager.agent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cub1z.pwmanager.agent.AgentProtocol.Message;
+import com.cub1z.pwmanager.config.FilePath;
+import com.cub1z.pwmanager.ui.UIService;
+
+/**
+ * Thin client for a running AgentServer. It never loads the vault or derives keys itself.
+ */
+public class AgentClient implements Closeable {
+    private static final String USAGE = "Usage: pwmanager client <get|add> <service> | list | unlock | lock";
+
+    private final SocketChannel channel;
+
+    public AgentClient(Path socketPath) throws IOException {
+        this.channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        this.channel.connect(UnixDomainSocketAddress.of(socketPath));
+    }
+
+    /**
+     * Sends a request and waits for the agent's response. A response split over several frames
+     * is joined back into one message carrying the status of its last frame.
+     *
+     * @param request The request to send.
+     * @return The response of the agent.
+     * @throws IOException If there is an error talking to the agent.
+     */
+    public Message send(Message request) throws IOException {
+        AgentProtocol.write(this.channel, request);
+
+        List<String> fields = new ArrayList<>();
+        Message response;
+        while ((response = this.receive()).code() == AgentProtocol.STATUS_MORE) {
+            fields.addAll(response.fields());
+        }
+        if (fields.isEmpty()) return response;
+
+        fields.addAll(response.fields());
+        return new Message(response.code(), fields);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Runs a single client command and prints its result.
+     *
+     * @param args The command and its arguments.
+     * @return The process exit code: 0 on success, 1 on error, 2 if the agent is locked.
+     */
+    public static int run(String[] args) {
+        Message request = parse(args);
+        if (request == null) {
+            System.err.println(USAGE);
+            return 1;
+        }
+
+        try (AgentClient client = new AgentClient(FilePath.getAgentSocketDefault())) {
+            Message response = client.send(request);
+
+            if (response.code() != AgentProtocol.STATUS_OK) {
+                System.err.println(response.field(0));
+                return response.code() == AgentProtocol.STATUS_LOCKED ? 2 : 1;
+            }
+
+            response.fields().forEach(System.out::println);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Cannot reach the agent: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // Auxiliary methods
+
+    private Message receive() throws IOException {
+        Message response = AgentProtocol.read(this.channel);
+        if (response == null) throw new IOException("Agent closed the connection");
+        return response;
+    }
+
+    private static Message parse(String[] args) {
+        if (args.length == 0) return null;
+
+        return switch (args[0]) {
+            case "get" -> args.length == 2 ? new Message(AgentProtocol.OP_GET, args[1]) : null;
+            case "add" -> args.length == 2 ? new Message(AgentProtocol.OP_ADD, args[1]) : null;
+            case "list" -> new Message(AgentProtocol.OP_LIST);
+            case "lock" -> new Message(AgentProtocol.OP_LOCK);
+            case "unlock" -> new Message(
+                AgentProtocol.OP_UNLOCK, UIService.readInput("Enter your master password", true)
+            );
+            default -> null;
+        };
+    }
+}
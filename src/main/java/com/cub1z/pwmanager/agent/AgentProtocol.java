@@ -0,0 +1,141 @@
+package com.cub1z.pwmanager.agent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format shared by the agent and its client.
+ * Every message is framed as [int length][byte code][u16 fieldCount][UTF field]*,
+ * where the code is an operation for requests and a status for responses.
+ * A response too large for one frame is split into STATUS_MORE frames ended by a final status.
+ */
+public class AgentProtocol {
+    public static final byte OP_GET = 1;
+    public static final byte OP_ADD = 2;
+    public static final byte OP_LIST = 3;
+    public static final byte OP_UNLOCK = 4;
+    public static final byte OP_LOCK = 5;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+    public static final byte STATUS_LOCKED = 2;
+    public static final byte STATUS_MORE = 3;
+
+    public static final int MAX_FRAME_LENGTH = 1024 * 1024;
+    public static final int MAX_FIELD_COUNT = 0xFFFF;
+    public static final int HEADER_LENGTH = Byte.BYTES + Short.BYTES;
+
+    public record Message(byte code, List<String> fields) {
+        public Message(byte code, String... fields) {
+            this(code, List.of(fields));
+        }
+
+        public String field(int index) {
+            return index < fields.size() ? fields.get(index) : null;
+        }
+    }
+
+    /**
+     * Writes a single framed message.
+     *
+     * @param channel The channel to write to.
+     * @param message The message to write.
+     * @throws IOException If there is an error writing to the channel, or the message has more
+     *                     fields or bytes than a frame can hold.
+     */
+    public static void write(WritableByteChannel channel, Message message) throws IOException {
+        if (message.fields().size() > MAX_FIELD_COUNT) {
+            throw new IOException("Too many fields for an agent frame: " + message.fields().size());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(0);
+        out.writeByte(message.code());
+        out.writeShort(message.fields().size());
+        for (String field : message.fields()) {
+            out.writeUTF(field);
+        }
+
+        int length = bytes.size() - Integer.BYTES;
+        if (length > MAX_FRAME_LENGTH) {
+            throw new IOException("Agent frame too large: " + length + " bytes");
+        }
+
+        ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+        frame.putInt(0, length);
+
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * Reads a single framed message.
+     *
+     * @param channel The channel to read from.
+     * @return The message read, or null if the peer closed the connection.
+     * @throws IOException If there is an error reading from the channel or the frame is malformed.
+     */
+    public static Message read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+        if (!readFully(channel, lengthBuffer)) return null;
+
+        int length = lengthBuffer.flip().getInt();
+        if (length < 3 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid agent frame length: " + length);
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (!readFully(channel, payload)) {
+            throw new IOException("Connection closed in the middle of a frame");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()));
+        byte code = in.readByte();
+        int fieldCount = in.readUnsignedShort();
+
+        List<String> fields = new ArrayList<>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            fields.add(in.readUTF());
+        }
+
+        return new Message(code, fields);
+    }
+
+    /**
+     * Computes the bytes a field takes in a frame, so a sender can split fields over several frames.
+     *
+     * @param field The field.
+     * @return The encoded length of the field, including its length prefix.
+     */
+    public static int fieldLength(String field) {
+        int length = Short.BYTES;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return length;
+    }
+
+    // Auxiliary methods
+
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (buffer.position() == 0) return false;
+                throw new IOException("Connection closed in the middle of a frame");
+            }
+        }
+        return true;
+    }
+}
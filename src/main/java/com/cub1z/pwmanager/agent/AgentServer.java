@@ -0,0 +1,268 @@
+package com.cub1z.pwmanager.agent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.cub1z.pwmanager.PasswordManager;
+import com.cub1z.pwmanager.agent.AgentProtocol.Message;
+import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.repository.EntrySort;
+import com.cub1z.pwmanager.repository.PageCursor;
+import com.cub1z.pwmanager.service.SecretBuffer;
+
+/**
+ * Keeps an unlocked PasswordManager resident and serves lookups over a Unix domain socket.
+ * The vault locks itself after a period without requests, and can be unlocked again by a client.
+ *
+ * The agent only keeps the session vault key of the manager, never the master password, so
+ * entries encrypted with their own per-entry salt cannot be read through it.
+ */
+public class AgentServer implements Closeable {
+    private static final int LIST_PAGE_SIZE = 1024;
+
+    private final PasswordManager manager;
+    private final Path socketPath;
+    private final long idleTimeoutMillis;
+    private final ScheduledExecutorService idleWatcher;
+
+    private volatile long lastActivity;
+    private ServerSocketChannel server;
+
+    public AgentServer(PasswordManager manager, Path socketPath, Duration idleTimeout) {
+        if (manager == null) throw new IllegalArgumentException("Password manager cannot be null");
+        if (socketPath == null) throw new IllegalArgumentException("Socket path cannot be null");
+        if (idleTimeout == null || idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("Idle timeout must be positive");
+        }
+
+        this.manager = manager;
+        this.socketPath = socketPath;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.lastActivity = System.currentTimeMillis();
+
+        this.idleWatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "agent-idle-lock");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Unlocks the vault with the master password.
+     *
+     * @param masterPassword The master password.
+     * @return true if authentication is successful, false otherwise.
+     */
+    public boolean unlock(String masterPassword) {
+        if (masterPassword == null || !this.manager.authenticate(masterPassword)) return false;
+
+        this.lastActivity = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Locks the vault, wiping the session key.
+     */
+    public void lock() {
+        this.manager.lock();
+    }
+
+    public boolean isUnlocked() {
+        return this.manager.isUnlocked();
+    }
+
+    /**
+     * Binds the socket, readable and writable by the owner only. The socket is bound in a private
+     * directory and moved into place once restricted, so no other user can connect in between.
+     *
+     * @throws IOException If the socket cannot be bound.
+     */
+    public synchronized void bind() throws IOException {
+        if (this.server != null) return;
+
+        Files.deleteIfExists(this.socketPath);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Path staging = Files.createTempDirectory(
+                    this.socketPath.toAbsolutePath().getParent(), "agent",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"))
+                );
+                Path stagedSocket = staging.resolve(this.socketPath.getFileName());
+                try {
+                    server.bind(UnixDomainSocketAddress.of(stagedSocket));
+                    Files.setPosixFilePermissions(stagedSocket, PosixFilePermissions.fromString("rw-------"));
+                    Files.move(stagedSocket, this.socketPath, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(stagedSocket);
+                    Files.delete(staging);
+                }
+            } else {
+                server.bind(UnixDomainSocketAddress.of(this.socketPath));
+            }
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+
+        this.server = server;
+    }
+
+    /**
+     * Binds the socket if needed and serves clients until the agent is closed.
+     * Each connection is handled on its own virtual thread.
+     *
+     * @throws IOException If the socket cannot be bound.
+     */
+    public void serve() throws IOException {
+        this.bind();
+
+        long checkInterval = Math.max(1, Math.min(this.idleTimeoutMillis / 4, 10_000));
+        this.idleWatcher.scheduleWithFixedDelay(this::lockIfIdle, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+
+        try {
+            while (true) {
+                SocketChannel client = this.server.accept();
+                Thread.ofVirtual().name("agent-client").start(() -> this.handle(client));
+            }
+        } catch (ClosedChannelException e) {
+            // Agent closed
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.idleWatcher.shutdownNow();
+        this.lock();
+
+        if (this.server != null) this.server.close();
+        Files.deleteIfExists(this.socketPath);
+    }
+
+    // Auxiliary methods
+
+    private void handle(SocketChannel client) {
+        try (client) {
+            Message request;
+            while ((request = AgentProtocol.read(client)) != null) {
+                if (request.code() == AgentProtocol.OP_LIST && this.manager.isUnlocked()) {
+                    this.lastActivity = System.currentTimeMillis();
+                    this.list(client);
+                } else {
+                    AgentProtocol.write(client, this.dispatch(request));
+                }
+            }
+        } catch (IOException e) {
+            // The client went away, nothing to answer
+        }
+    }
+
+    private Message dispatch(Message request) {
+        this.lastActivity = System.currentTimeMillis();
+
+        if (request.code() == AgentProtocol.OP_UNLOCK) {
+            return this.unlock(request.field(0))
+                ? new Message(AgentProtocol.STATUS_OK)
+                : new Message(AgentProtocol.STATUS_ERROR, "Authentication failed");
+        }
+
+        if (request.code() == AgentProtocol.OP_LOCK) {
+            this.lock();
+            return new Message(AgentProtocol.STATUS_OK);
+        }
+
+        if (!this.manager.isUnlocked()) {
+            return new Message(AgentProtocol.STATUS_LOCKED, "Agent is locked");
+        }
+
+        try {
+            return switch (request.code()) {
+                case AgentProtocol.OP_GET -> new Message(AgentProtocol.STATUS_OK, this.readSecret(request.field(0)));
+                case AgentProtocol.OP_ADD -> new Message(
+                    AgentProtocol.STATUS_OK, this.manager.add(request.field(0), null)
+                );
+                default -> new Message(AgentProtocol.STATUS_ERROR, "Unknown operation: " + request.code());
+            };
+        } catch (Exception e) {
+            return new Message(AgentProtocol.STATUS_ERROR, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Streams the service names in name order, a page of the name index at a time, so neither the
+     * vault nor the response is ever held whole. Names are packed into STATUS_MORE frames as large
+     * as the protocol allows, and the last frame carries STATUS_OK, or STATUS_ERROR if the
+     * listing fails part way.
+     */
+    private void list(SocketChannel client) throws IOException {
+        List<String> names = new ArrayList<>();
+        int frameLength = AgentProtocol.HEADER_LENGTH;
+
+        try {
+            PageCursor after = null;
+            List<PasswordEntry> page;
+            do {
+                page = this.manager.getEntriesPage(EntrySort.NAME, after, LIST_PAGE_SIZE);
+                for (PasswordEntry entry : page) {
+                    String name = entry.getServiceName();
+                    int length = AgentProtocol.fieldLength(name);
+
+                    if (names.size() == AgentProtocol.MAX_FIELD_COUNT
+                        || frameLength + length > AgentProtocol.MAX_FRAME_LENGTH) {
+                        AgentProtocol.write(client, new Message(AgentProtocol.STATUS_MORE, names));
+                        names = new ArrayList<>();
+                        frameLength = AgentProtocol.HEADER_LENGTH;
+                    }
+
+                    names.add(name);
+                    frameLength += length;
+                }
+                if (!page.isEmpty()) after = PageCursor.after(EntrySort.NAME, page.get(page.size() - 1));
+            } while (page.size() == LIST_PAGE_SIZE);
+        } catch (RuntimeException e) {
+            AgentProtocol.write(client, new Message(AgentProtocol.STATUS_ERROR, String.valueOf(e.getMessage())));
+            return;
+        }
+
+        AgentProtocol.write(client, new Message(AgentProtocol.STATUS_OK, names));
+    }
+
+    /**
+     * Decrypts an entry with the session key. The response field is the only copy of the
+     * password that is not wiped, and it lives for a single request.
+     */
+    private String readSecret(String serviceName) throws GeneralSecurityException {
+        try (SecretBuffer secret = this.manager.getSecret(serviceName, null)) {
+            char[] password = secret.toChars();
+            try {
+                return new String(password);
+            } finally {
+                Arrays.fill(password, '\0');
+            }
+        }
+    }
+
+    private void lockIfIdle() {
+        if (this.manager.isUnlocked() && System.currentTimeMillis() - this.lastActivity >= this.idleTimeoutMillis) {
+            this.lock();
+        }
+    }
+}
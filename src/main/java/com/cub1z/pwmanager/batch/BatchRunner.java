@@ -0,0 +1,209 @@
+package com.cub1z.pwmanager.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.cub1z.pwmanager.PasswordManager;
+
+/**
+ * Runs a stream of commands against an unlocked PasswordManager without going through the menu.
+ * Parsing, execution and output run as a three-stage pipeline connected by bounded queues,
+ * while commands are executed one at a time and in input order.
+ *
+ * <pre>
+ * get &lt;service&gt;       add &lt;service&gt;       update &lt;service&gt;       delete &lt;service&gt;
+ * </pre>
+ *
+ * Blank lines and lines starting with '#' are ignored. Each command produces one JSON object
+ * per output line.
+ */
+public class BatchRunner {
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final Command END_OF_INPUT = new Command(-1, null, null, null);
+    private static final Result END_OF_OUTPUT = new Result(END_OF_INPUT, null, null);
+
+    private final PasswordManager manager;
+    private final String masterPassword;
+
+    private record Command(int line, String operation, String serviceName, String error) {}
+
+    private record Result(Command command, String password, String error) {}
+
+    public record Summary(int succeeded, int failed) {}
+
+    public BatchRunner(PasswordManager manager, String masterPassword) {
+        if (manager == null) throw new IllegalArgumentException("Password manager cannot be null");
+        this.manager = manager;
+        this.masterPassword = masterPassword;
+    }
+
+    /**
+     * Runs every command of the input and writes one result line per command.
+     *
+     * @param input The command stream.
+     * @param output The destination of the JSON results.
+     * @return The number of succeeded and failed commands.
+     * @throws IOException If there is an error reading the commands or writing the results.
+     * @throws InterruptedException If the pipeline is interrupted.
+     */
+    public Summary run(Reader input, Writer output) throws IOException, InterruptedException {
+        BlockingQueue<Command> commands = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Result> results = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ExecutorService stages = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<?> parser = stages.submit(() -> {
+                this.parse(input, commands);
+                return null;
+            });
+            Future<?> writer = stages.submit(() -> {
+                this.write(results, output);
+                return null;
+            });
+
+            int succeeded = 0;
+            int failed = 0;
+            Command command;
+            while ((command = commands.take()) != END_OF_INPUT) {
+                Result result = this.execute(command);
+                if (result.error() == null) succeeded++;
+                else failed++;
+                publish(results, result, writer);
+            }
+            publish(results, END_OF_OUTPUT, writer);
+
+            await(parser);
+            await(writer);
+            return new Summary(succeeded, failed);
+        } finally {
+            stages.shutdownNow();
+        }
+    }
+
+    // Auxiliary methods
+
+    private void parse(Reader input, BlockingQueue<Command> commands) throws IOException, InterruptedException {
+        try (BufferedReader reader = new BufferedReader(input)) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] parts = line.split("\\s+", 2);
+                String operation = parts[0].toLowerCase();
+                String serviceName = parts.length > 1 ? parts[1] : null;
+
+                String error = null;
+                if (!operation.matches("get|add|update|delete")) error = "Unknown command: " + parts[0];
+                else if (serviceName == null) error = "Missing service name";
+
+                commands.put(new Command(lineNumber, operation, serviceName, error));
+            }
+        } finally {
+            commands.put(END_OF_INPUT);
+        }
+    }
+
+    private Result execute(Command command) {
+        if (command.error() != null) return new Result(command, null, command.error());
+
+        try {
+            String password = switch (command.operation()) {
+                case "get" -> this.manager.get(command.serviceName(), this.masterPassword);
+                case "add" -> this.manager.add(command.serviceName(), this.masterPassword);
+                case "update" -> this.manager.update(command.serviceName(), this.masterPassword);
+                default -> {
+                    this.manager.delete(command.serviceName(), this.masterPassword);
+                    yield null;
+                }
+            };
+            return new Result(command, password, null);
+        } catch (Exception e) {
+            return new Result(command, null, describe(e));
+        }
+    }
+
+    /**
+     * The manager wraps most failures in a generic exception, so the messages of the causes
+     * are appended to tell, for instance, a locked vault from a missing entry.
+     */
+    private static String describe(Throwable e) {
+        StringBuilder message = new StringBuilder(String.valueOf(e.getMessage()));
+        for (Throwable cause = e.getCause(); cause != null && cause != e; cause = cause.getCause()) {
+            String detail = cause.getMessage();
+            if (detail != null && message.indexOf(detail) < 0) message.append(": ").append(detail);
+        }
+        return message.toString();
+    }
+
+    private void write(BlockingQueue<Result> results, Writer output) throws IOException, InterruptedException {
+        Result result;
+        while ((result = results.take()) != END_OF_OUTPUT) {
+            Command command = result.command();
+            StringBuilder json = new StringBuilder(96)
+                .append("{\"line\":").append(command.line())
+                .append(",\"op\":").append(quote(command.operation()))
+                .append(",\"service\":").append(quote(command.serviceName()))
+                .append(",\"status\":").append(quote(result.error() == null ? "ok" : "error"));
+
+            if (result.password() != null) json.append(",\"password\":").append(quote(result.password()));
+            if (result.error() != null) json.append(",\"error\":").append(quote(result.error()));
+            output.write(json.append("}\n").toString());
+
+            // Flush whenever the pipeline has caught up with the executor
+            if (results.isEmpty()) output.flush();
+        }
+        output.flush();
+    }
+
+    private static void publish(BlockingQueue<Result> results, Result result, Future<?> writer) throws IOException, InterruptedException {
+        // Never block forever on a writer that has already failed
+        while (!results.offer(result, 100, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                await(writer);
+                throw new IOException("Batch output stage stopped");
+            }
+        }
+    }
+
+    private static void await(Future<?> stage) throws IOException, InterruptedException {
+        try {
+            stage.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("Batch pipeline failed", e.getCause());
+        }
+    }
+
+    private static String quote(String value) {
+        if (value == null) return "null";
+
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
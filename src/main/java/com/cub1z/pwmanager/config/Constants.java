@@ -5,4 +5,15 @@ public class Constants {
     public static final boolean DEFAULT_INCLUDE_SPECIAL_CHARS = true;
     public static final int MIN_SALT_LENGTH = 16;
     public static final int MAX_SALT_LENGTH = 32;
+    public static final long DEFAULT_AGENT_IDLE_TIMEOUT_SECONDS = 15 * 60;
+    public static final String MASTER_PASSWORD_ENV = "PWMANAGER_MASTER_PASSWORD";
+    public static final int DEFAULT_SEARCH_RESULTS = 20;
+    public static final int DEFAULT_PAGE_SIZE = 15;
+    public static final long DEFAULT_KDF_TARGET_MILLIS = 500;
+    public static final String KDF_TARGET_MILLIS_PROPERTY = "pwmanager.kdf.targetMillis";
+    public static final double KDF_RECALIBRATION_TOLERANCE = 0.2;
+    public static final int DEFAULT_SNAPSHOT_RETENTION = 30;
+    public static final String SNAPSHOT_RETENTION_PROPERTY = "pwmanager.snapshot.retention";
+    public static final int DEFAULT_VAULT_SHARDS = 1;
+    public static final String VAULT_SHARDS_PROPERTY = "pwmanager.vault.shards";
 }
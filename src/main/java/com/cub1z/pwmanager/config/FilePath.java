@@ -6,6 +6,8 @@ import java.nio.file.Paths;
 public class FilePath {
     private static final String PASSWORDS_FILE = "passwords.pwd";
     private static final String MASTER_PASSWORD_FILE = "master.pwd";
+    private static final String AGENT_SOCKET_FILE = "agent.sock";
+    private static final String ATTACHMENTS_DIRECTORY = "attachments";
 
     /**
      * Returns the default path for the passwords file.
@@ -27,6 +29,26 @@ public class FilePath {
         return getDefault(MASTER_PASSWORD_FILE);
     }
 
+    /**
+     * Returns the default path for the unlock agent socket.
+     * The path is determined based on the operating system.
+     *
+     * @return Path to the agent socket.
+     */
+    public static Path getAgentSocketDefault() {
+        return getDefault(AGENT_SOCKET_FILE);
+    }
+
+    /**
+     * Returns the default directory of the attachment blob store.
+     * The path is determined based on the operating system.
+     *
+     * @return Path to the attachments directory.
+     */
+    public static Path getAttachmentsDefault() {
+        return getDefault(ATTACHMENTS_DIRECTORY);
+    }
+
     private static Path getDefault(String fileName) {
         String os = System.getProperty("os.name").toLowerCase();
         Path baseDir;
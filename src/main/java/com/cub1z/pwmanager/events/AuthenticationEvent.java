@@ -0,0 +1,18 @@
+package com.cub1z.pwmanager.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.cub1z.pwmanager.Authentication")
+@Label("Authentication")
+@Description("Verification of the master password")
+@Category({ "PwManager", "Authentication" })
+@StackTrace(false)
+public class AuthenticationEvent extends Event {
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,39 @@
+package com.cub1z.pwmanager.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.cub1z.pwmanager.Crypto")
+@Label("Crypto Operation")
+@Description("Key derivation, encryption or decryption")
+@Category({ "PwManager", "Crypto" })
+@StackTrace(false)
+public class CryptoEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Payload Size")
+    @DataAmount
+    public int payloadBytes;
+
+    @Label("Iterations")
+    @Description("PBKDF2 iterations, 0 for operations without password-based key derivation")
+    public int iterations;
+
+    /**
+     * Fills in and commits the event, if its settings select it.
+     */
+    public void commit(String operation, int payloadBytes, int iterations) {
+        if (!this.shouldCommit()) return;
+
+        this.operation = operation;
+        this.payloadBytes = payloadBytes;
+        this.iterations = iterations;
+        this.commit();
+    }
+}
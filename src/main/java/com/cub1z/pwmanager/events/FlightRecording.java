@@ -0,0 +1,54 @@
+package com.cub1z.pwmanager.events;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Starts a flight recording with the bundled pwmanager.jfc settings, which enable the
+ * application events together with GC, allocation, file I/O and CPU sampling, so all of
+ * them land on one timeline.
+ *
+ * Run with -Dpwmanager.jfr=recording.jfr to record; the file is written when the JVM exits.
+ * The same settings can be passed to -XX:StartFlightRecording after extracting pwmanager.jfc.
+ */
+public final class FlightRecording {
+    public static final String RECORDING_PROPERTY = "pwmanager.jfr";
+    public static final String SETTINGS_RESOURCE = "/pwmanager.jfc";
+
+    private FlightRecording() {}
+
+    /**
+     * Starts the recording if {@value #RECORDING_PROPERTY} names a destination file.
+     *
+     * @return The started recording, or null if none was requested or it could not start.
+     */
+    public static Recording startIfRequested() {
+        String destination = System.getProperty(RECORDING_PROPERTY);
+        if (destination == null || destination.isBlank()) return null;
+
+        try (InputStream in = FlightRecording.class.getResourceAsStream(SETTINGS_RESOURCE)) {
+            if (in == null) throw new IllegalStateException("Missing " + SETTINGS_RESOURCE);
+
+            Configuration configuration;
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                configuration = Configuration.create(reader);
+            }
+
+            Recording recording = new Recording(configuration);
+            recording.setName("pwmanager");
+            recording.setDestination(Path.of(destination));
+            recording.setDumpOnExit(true);
+            recording.start();
+            return recording;
+        } catch (Exception e) {
+            System.err.println("Could not start flight recording: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.cub1z.pwmanager.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.cub1z.pwmanager.ScreenClear")
+@Label("Screen Clear")
+@Description("Clearing the terminal, which may spawn a process")
+@Category({ "PwManager", "UI" })
+@StackTrace(false)
+public class ScreenClearEvent extends Event {
+}
@@ -0,0 +1,39 @@
+package com.cub1z.pwmanager.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.cub1z.pwmanager.VaultStorage")
+@Label("Vault Storage")
+@Description("Load, save, delete or checkpoint of the password vault")
+@Category({ "PwManager", "Storage" })
+@StackTrace(false)
+public class VaultStorageEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Entries")
+    public int entryCount;
+
+    @Label("Vault File Size")
+    @Description("Size of the file written: the checkpoint, or the log for saves and deletes")
+    @DataAmount
+    public long bytes;
+
+    /**
+     * Fills in and commits the event, if its settings select it.
+     */
+    public void commit(String operation, int entryCount, long bytes) {
+        if (!this.shouldCommit()) return;
+
+        this.operation = operation;
+        this.entryCount = entryCount;
+        this.bytes = bytes;
+        this.commit();
+    }
+}
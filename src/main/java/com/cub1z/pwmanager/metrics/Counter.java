@@ -0,0 +1,28 @@
+package com.cub1z.pwmanager.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count, striped so concurrent updates do not contend.
+ */
+public final class Counter {
+    private final LongAdder value = new LongAdder();
+
+    Counter() {}
+
+    public void increment() {
+        this.value.increment();
+    }
+
+    public void add(long amount) {
+        this.value.add(amount);
+    }
+
+    public long get() {
+        return this.value.sum();
+    }
+
+    void reset() {
+        this.value.reset();
+    }
+}
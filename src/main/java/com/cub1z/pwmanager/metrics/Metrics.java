@@ -0,0 +1,105 @@
+package com.cub1z.pwmanager.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.ObjectName;
+
+/**
+ * Process-wide registry of counters and timers, exposed over JMX.
+ * Instruments are created once and kept in static fields by the code they measure,
+ * so recording never goes through the registry maps.
+ *
+ * Set the system property {@value #DUMP_ON_EXIT_PROPERTY} to print every metric on exit.
+ */
+public final class Metrics {
+    public static final String OBJECT_NAME = "com.cub1z.pwmanager:type=Metrics";
+    public static final String DUMP_ON_EXIT_PROPERTY = "pwmanager.metrics.dumpOnExit";
+
+    private static final ConcurrentHashMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+        } catch (Exception ignored) {
+            // Metrics keep working without JMX, e.g. when another class loader registered first
+        }
+
+        if (Boolean.getBoolean(DUMP_ON_EXIT_PROPERTY)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(dump()), "metrics-dump"));
+        }
+    }
+
+    private Metrics() {}
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, key -> new Timer());
+    }
+
+    /**
+     * Formats every metric as one line of text, sorted by name.
+     *
+     * @return The current values of all counters and timers.
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(COUNTERS).forEach((name, counter) ->
+            sb.append(String.format(Locale.ROOT, "%-32s %12d%n", name, counter.get()))
+        );
+        new TreeMap<>(TIMERS).forEach((name, timer) -> {
+            Timer.Snapshot s = timer.snapshot();
+            sb.append(String.format(Locale.ROOT,
+                "%-32s count=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus%n",
+                name, s.count(), s.meanNanos() / 1e3, s.p50Nanos() / 1e3, s.p99Nanos() / 1e3,
+                s.p999Nanos() / 1e3, s.maxNanos() / 1e3));
+        });
+        return sb.toString();
+    }
+
+    public static void reset() {
+        COUNTERS.values().forEach(Counter::reset);
+        TIMERS.values().forEach(Timer::reset);
+    }
+
+    private static final class Bean implements MetricsMXBean {
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> values = new TreeMap<>();
+            COUNTERS.forEach((name, counter) -> values.put(name, counter.get()));
+            return values;
+        }
+
+        @Override
+        public Map<String, Long> getTimers() {
+            Map<String, Long> values = new TreeMap<>();
+            TIMERS.forEach((name, timer) -> {
+                Timer.Snapshot s = timer.snapshot();
+                values.put(name + ".count", s.count());
+                values.put(name + ".meanMicros", Math.round(s.meanNanos() / 1e3));
+                values.put(name + ".p50Micros", s.p50Nanos() / 1_000);
+                values.put(name + ".p99Micros", s.p99Nanos() / 1_000);
+                values.put(name + ".p999Micros", s.p999Nanos() / 1_000);
+                values.put(name + ".maxMicros", s.maxNanos() / 1_000);
+            });
+            return values;
+        }
+
+        @Override
+        public String dump() {
+            return Metrics.dump();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
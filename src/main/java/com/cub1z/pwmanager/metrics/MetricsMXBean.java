@@ -0,0 +1,20 @@
+package com.cub1z.pwmanager.metrics;
+
+import java.util.Map;
+
+/**
+ * Management view of the metrics registry, registered as {@value Metrics#OBJECT_NAME}.
+ */
+public interface MetricsMXBean {
+    Map<String, Long> getCounters();
+
+    /**
+     * @return For every timer: count, meanMicros, p50Micros, p99Micros, p999Micros and maxMicros,
+     *         keyed as "timer.statistic".
+     */
+    Map<String, Long> getTimers();
+
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,91 @@
+package com.cub1z.pwmanager.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records durations into a fixed histogram of power-of-two nanosecond buckets.
+ * Recording is two striped additions and a max, with no allocation and no locking,
+ * and percentiles are reported as the upper bound of their bucket.
+ *
+ * <pre>
+ * long start = System.nanoTime();
+ * try {
+ *     ...
+ * } finally {
+ *     TIMER.recordSince(start);
+ * }
+ * </pre>
+ */
+public final class Timer {
+    // Bucket i holds durations whose bit length is i, that is [2^(i-1), 2^i) nanoseconds
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets;
+    private final LongAdder totalNanos;
+    private final LongAccumulator maxNanos;
+
+    public record Snapshot(long count, long totalNanos, long maxNanos, long p50Nanos, long p99Nanos, long p999Nanos) {
+        public double meanNanos() {
+            return this.count == 0 ? 0 : (double) this.totalNanos / this.count;
+        }
+    }
+
+    Timer() {
+        this.buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) this.buckets[i] = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value))].increment();
+        this.totalNanos.add(value);
+        this.maxNanos.accumulate(value);
+    }
+
+    /**
+     * Records the time elapsed since a System.nanoTime() reading.
+     *
+     * @param startNanos The reading taken when the operation started.
+     */
+    public void recordSince(long startNanos) {
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets[i].sum();
+            count += counts[i];
+        }
+
+        long max = this.maxNanos.get();
+        return new Snapshot(
+            count, this.totalNanos.sum(), max,
+            percentile(counts, count, 0.50, max), percentile(counts, count, 0.99, max), percentile(counts, count, 0.999, max)
+        );
+    }
+
+    void reset() {
+        for (LongAdder bucket : this.buckets) bucket.reset();
+        this.totalNanos.reset();
+        this.maxNanos.reset();
+    }
+
+    // Auxiliary methods
+
+    private static long percentile(long[] counts, long count, double quantile, long max) {
+        if (count == 0) return 0;
+
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(max, i == 0 ? 0 : (1L << i) - 1);
+        }
+        return max;
+    }
+}
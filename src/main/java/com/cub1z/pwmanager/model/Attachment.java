@@ -0,0 +1,17 @@
+package com.cub1z.pwmanager.model;
+
+/**
+ * A file attached to a password entry. The content is stored once per distinct content,
+ * in an encrypted blob named after a keyed hash of it.
+ *
+ * @param name The name of the attachment, unique within its entry.
+ * @param blobId The identifier of the blob holding the content.
+ * @param size The size of the content in bytes.
+ */
+public record Attachment(String name, String blobId, long size) {
+    public Attachment {
+        if (name == null || name.isEmpty()) throw new IllegalArgumentException("Attachment name cannot be null or empty");
+        if (blobId == null || blobId.isEmpty()) throw new IllegalArgumentException("Blob id cannot be null or empty");
+        if (size < 0) throw new IllegalArgumentException("Attachment size cannot be negative");
+    }
+}
@@ -1,6 +1,8 @@
 package com.cub1z.pwmanager.model;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Date;
 
@@ -9,13 +11,15 @@ public class PasswordEntry implements Serializable {
 
     private final String serviceName;
     private final byte[] encryptedPassword;
+    private final transient ByteBuffer encryptedRecord;
     private final Date createdAt;
-    private Date updatedAt;
-    private Date lastAccessedAt;
+    private volatile Date updatedAt;
+    private volatile Date lastAccessedAt;
 
     public PasswordEntry(String serviceName, byte[] encryptedPassword) {
         this.serviceName = serviceName;
         this.encryptedPassword = encryptedPassword;
+        this.encryptedRecord = null;
 
         // Initialize timestamps to the current date
         Date currentDate = new Date();
@@ -24,6 +28,44 @@ public class PasswordEntry implements Serializable {
         this.lastAccessedAt = currentDate;
     }
 
+    public PasswordEntry(
+        String serviceName, byte[] encryptedPassword, Date createdAt, Date updatedAt, Date lastAccessedAt
+    ) {
+        this.serviceName = serviceName;
+        this.encryptedPassword = encryptedPassword;
+        this.encryptedRecord = null;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.lastAccessedAt = lastAccessedAt;
+    }
+
+    /**
+     * Creates an entry whose encrypted password is decoded lazily from a length-prefixed record,
+     * typically a view into the records of a loaded vault file.
+     */
+    public PasswordEntry(
+        String serviceName, ByteBuffer encryptedRecord, Date createdAt, Date updatedAt, Date lastAccessedAt
+    ) {
+        this.serviceName = serviceName;
+        this.encryptedPassword = null;
+        this.encryptedRecord = encryptedRecord;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.lastAccessedAt = lastAccessedAt;
+    }
+
+    /**
+     * Serializes lazily decoded entries as regular ones, since the record view is not serializable.
+     *
+     * @return The entry to serialize in place of this one.
+     * @throws ObjectStreamException Never, declared for the serialization contract.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        if (encryptedPassword != null) return this;
+
+        return new PasswordEntry(serviceName, getEncryptedPassword(), createdAt, updatedAt, lastAccessedAt);
+    }
+
     /**
      * Updates the last accessed timestamp to the current date.
      */
@@ -38,6 +80,19 @@ public class PasswordEntry implements Serializable {
         this.updatedAt = new Date();
     }
 
+    /**
+     * Copies the entry with another last accessed timestamp, sharing its encrypted password,
+     * so an entry already handed out or held by a snapshot is left as it was.
+     *
+     * @param lastAccessedAt The last accessed timestamp of the copy.
+     * @return The copy.
+     */
+    public PasswordEntry withLastAccessedAt(Date lastAccessedAt) {
+        return encryptedPassword != null
+            ? new PasswordEntry(serviceName, encryptedPassword, createdAt, updatedAt, lastAccessedAt)
+            : new PasswordEntry(serviceName, encryptedRecord, createdAt, updatedAt, lastAccessedAt);
+    }
+
     // Getters and setters
     
     public String getServiceName() {
@@ -45,7 +100,15 @@ public class PasswordEntry implements Serializable {
     }
 
     public byte[] getEncryptedPassword() {
-        return Arrays.copyOf(encryptedPassword, encryptedPassword.length);
+        if (encryptedPassword != null) {
+            return Arrays.copyOf(encryptedPassword, encryptedPassword.length);
+        }
+
+        // Decode the record on demand, without moving the shared view
+        ByteBuffer record = encryptedRecord.duplicate();
+        byte[] decoded = new byte[record.getInt()];
+        record.get(decoded);
+        return decoded;
     }
 
     public Date getCreatedAt() {
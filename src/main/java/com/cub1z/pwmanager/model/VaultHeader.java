@@ -0,0 +1,59 @@
+package com.cub1z.pwmanager.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+public class VaultHeader implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] salt;
+    private final int iterations;
+    // The header being replaced while entries are re-keyed, null otherwise
+    private final VaultHeader rekeyingFrom;
+
+    public VaultHeader(byte[] salt, int iterations) {
+        this(salt, iterations, null);
+    }
+
+    public VaultHeader(byte[] salt, int iterations, VaultHeader rekeyingFrom) {
+        if (salt == null || salt.length == 0) throw new IllegalArgumentException("Salt cannot be null or empty");
+        if (iterations <= 0) throw new IllegalArgumentException("Iterations must be positive");
+        if (rekeyingFrom != null && rekeyingFrom.isRekeying()) {
+            throw new IllegalArgumentException("Cannot re-key a vault that is already being re-keyed");
+        }
+
+        this.salt = Arrays.copyOf(salt, salt.length);
+        this.iterations = iterations;
+        this.rekeyingFrom = rekeyingFrom;
+    }
+
+    /**
+     * Tells whether this header was saved before re-keying the entries, which may not have finished.
+     *
+     * @return true if some entries may still be encrypted with the previous header's key.
+     */
+    public boolean isRekeying() {
+        return rekeyingFrom != null;
+    }
+
+    /**
+     * @return The same parameters, without the header being replaced.
+     */
+    public VaultHeader withoutRekeying() {
+        return rekeyingFrom == null ? this : new VaultHeader(salt, iterations);
+    }
+
+    // Getters
+
+    public byte[] getSalt() {
+        return Arrays.copyOf(salt, salt.length);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public VaultHeader getRekeyingFrom() {
+        return rekeyingFrom;
+    }
+}
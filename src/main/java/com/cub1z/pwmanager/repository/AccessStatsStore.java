@@ -0,0 +1,168 @@
+package com.cub1z.pwmanager.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.cub1z.pwmanager.utils.FileUtils;
+
+/**
+ * Keeps the last accessed timestamps of entries in a sidecar file, apart from the secret data.
+ * Accesses are recorded in memory and flushed in batches: on a fixed interval, every time enough
+ * accesses are pending, and on close or JVM shutdown. The shutdown hook only covers stores that
+ * were never closed, it is unregistered by {@link #close}.
+ */
+public final class AccessStatsStore implements Closeable {
+    private static final long FLUSH_INTERVAL_SECONDS = 30;
+    static final int FLUSH_DIRTY_THRESHOLD = 256;
+
+    private final Path filePath;
+    private final ConcurrentHashMap<String, Long> lastAccessedAt;
+    private final AtomicInteger dirtyCount;
+    private final AtomicBoolean flushQueued;
+    private final AtomicBoolean closed;
+    private final ScheduledExecutorService flusher;
+    private final Thread shutdownHook;
+
+    @SuppressWarnings("unchecked")
+    public AccessStatsStore(Path filePath) {
+        if (filePath == null) throw new IllegalArgumentException("File path cannot be null");
+        this.filePath = filePath;
+        this.lastAccessedAt = new ConcurrentHashMap<>();
+        this.dirtyCount = new AtomicInteger();
+        this.flushQueued = new AtomicBoolean();
+        this.closed = new AtomicBoolean();
+
+        // Load existing statistics from file if it exists
+        try {
+            FileUtils.readObjectFromFile(filePath, HashMap.class)
+                .ifPresent(map -> this.lastAccessedAt.putAll((Map<String, Long>) map));
+        } catch (IOException e) {
+            // Statistics are advisory, a damaged sidecar only loses access times
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "access-stats-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(
+            this::flushQuietly, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS
+        );
+
+        this.shutdownHook = new Thread(this::flushQuietly, "access-stats-shutdown");
+        Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+    }
+
+    /**
+     * Records an access in memory. The sidecar file is written by a later batched flush.
+     *
+     * @param serviceName The name of the accessed service.
+     * @param accessedAt The access time in epoch milliseconds.
+     */
+    public void record(String serviceName, long accessedAt) {
+        this.lastAccessedAt.merge(serviceName, accessedAt, Math::max);
+        this.markDirty();
+    }
+
+    /**
+     * Forgets the statistics of a deleted entry.
+     *
+     * @param serviceName The name of the deleted service.
+     */
+    public void remove(String serviceName) {
+        if (this.lastAccessedAt.remove(serviceName) != null) {
+            this.markDirty();
+        }
+    }
+
+    /**
+     * Retrieves the recorded last access time of a service.
+     *
+     * @param serviceName The name of the service.
+     * @return The last access time in epoch milliseconds, or null if none was recorded.
+     */
+    public Long getLastAccessedAt(String serviceName) {
+        return this.lastAccessedAt.get(serviceName);
+    }
+
+    /**
+     * Writes the pending statistics to the sidecar file, if there are any.
+     *
+     * @throws IOException If there is an error writing to the file.
+     */
+    public synchronized void flush() throws IOException {
+        int pending = this.dirtyCount.get();
+        if (pending == 0) return;
+
+        // Written aside and swapped, so a crash never leaves a half-written file
+        FileUtils.<HashMap<String, Long>>writeObjectToFile(this.filePath, new HashMap<>(this.lastAccessedAt));
+
+        // Accesses recorded while writing stay pending for the next flush
+        this.dirtyCount.addAndGet(-pending);
+    }
+
+    /**
+     * Stops the periodic flush, unregisters the shutdown hook and writes the pending statistics.
+     * Closing twice has no effect.
+     *
+     * @throws IOException If there is an error writing to the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!this.closed.compareAndSet(false, true)) return;
+
+        this.flusher.shutdown();
+
+        try {
+            Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down, the hook flushes on its own
+        }
+
+        this.flush();
+    }
+
+    // Auxiliary methods
+
+    /**
+     * Counts a pending change, and queues a flush whenever the pending changes reach the
+     * threshold and no flush is already queued, so every batch of changes is flushed and not
+     * only the first one.
+     */
+    private void markDirty() {
+        if (this.dirtyCount.incrementAndGet() < FLUSH_DIRTY_THRESHOLD || this.closed.get()) return;
+        if (!this.flushQueued.compareAndSet(false, true)) return;
+
+        try {
+            this.flusher.execute(() -> {
+                try {
+                    this.flushQuietly();
+                } finally {
+                    // Changes recorded during the flush queue the next one with their next access
+                    this.flushQueued.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closed concurrently, the close flushes the pending changes
+            this.flushQueued.set(false);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            this.flush();
+        } catch (IOException e) {
+            // Retried on the next interval, threshold or close
+        }
+    }
+}
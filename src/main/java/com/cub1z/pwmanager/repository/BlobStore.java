@@ -0,0 +1,182 @@
+package com.cub1z.pwmanager.repository;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import com.cub1z.pwmanager.utils.FileUtils;
+
+/**
+ * Keeps blobs in a directory, one file per blob, named after an identifier derived from
+ * the content, next to a small manifest file. Blobs are written aside and moved into place,
+ * so a blob file is either complete or absent, and a blob that already exists is not written twice.
+ *
+ * The store holds opaque bytes; encrypting them and deriving the identifiers is up to the caller.
+ */
+public class BlobStore {
+    private static final String MANIFEST_FILE = "manifest";
+    private static final String TEMP_PREFIX = "blob-";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Pattern BLOB_ID = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path directory;
+    private final Set<Path> pending;
+
+    public BlobStore(Path directory) {
+        if (directory == null) throw new IllegalArgumentException("Directory cannot be null");
+        this.directory = directory;
+        this.pending = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Checks if a blob is stored.
+     *
+     * @param id The blob identifier.
+     * @return true if the blob exists, false otherwise.
+     * @throws IllegalArgumentException If the identifier is malformed.
+     */
+    public boolean contains(String id) throws IllegalArgumentException {
+        return Files.exists(this.blobPath(id));
+    }
+
+    /**
+     * Creates an empty file to write a new blob into, before its identifier is known.
+     *
+     * @return The path of the file, to be passed to {@link #commit} or {@link #discard}.
+     * @throws IOException If the file cannot be created.
+     */
+    public Path createPending() throws IOException {
+        Files.createDirectories(this.directory);
+        Path path = Files.createTempFile(this.directory, TEMP_PREFIX, TEMP_SUFFIX);
+        this.pending.add(path);
+        return path;
+    }
+
+    /**
+     * Moves a written pending file into place as a blob. If the blob already exists,
+     * it holds the same content, so the pending file is dropped instead.
+     *
+     * @param pendingPath The file returned by {@link #createPending}.
+     * @param id The blob identifier.
+     * @return true if the blob was added, false if it was already stored.
+     * @throws IOException If the file cannot be moved or deleted.
+     */
+    public boolean commit(Path pendingPath, String id) throws IOException {
+        Path blobPath = this.blobPath(id);
+
+        try {
+            if (Files.exists(blobPath)) {
+                Files.deleteIfExists(pendingPath);
+                return false;
+            }
+
+            FileUtils.moveAtomically(pendingPath, blobPath);
+            return true;
+        } finally {
+            this.pending.remove(pendingPath);
+        }
+    }
+
+    /**
+     * Deletes a pending file that will not become a blob.
+     *
+     * @param pendingPath The file returned by {@link #createPending}.
+     */
+    public void discard(Path pendingPath) {
+        try {
+            Files.deleteIfExists(pendingPath);
+        } catch (IOException e) {
+            // Left for the next garbage collection
+        } finally {
+            this.pending.remove(pendingPath);
+        }
+    }
+
+    /**
+     * Opens a blob for reading. Nothing is read until the caller reads the channel.
+     *
+     * @param id The blob identifier.
+     * @return A channel over the blob file, which the caller must close.
+     * @throws IOException If the blob does not exist or cannot be opened.
+     */
+    public FileChannel open(String id) throws IOException {
+        try {
+            return FileChannel.open(this.blobPath(id), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new IOException("Blob not found: " + id, e);
+        }
+    }
+
+    /**
+     * Deletes the blobs that are not referenced, along with files left over by interrupted writes.
+     *
+     * @param referenced The identifiers of the blobs to keep.
+     * @return The number of deleted files.
+     * @throws IOException If the directory cannot be listed or a file cannot be deleted.
+     */
+    public int retainAll(Set<String> referenced) throws IOException {
+        if (!Files.isDirectory(this.directory)) return 0;
+
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean unreferencedBlob = BLOB_ID.matcher(name).matches() && !referenced.contains(name);
+                boolean abandoned = name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX) && !this.pending.contains(file);
+
+                if ((unreferencedBlob || abandoned) && Files.deleteIfExists(file)) deleted++;
+            }
+        }
+
+        return deleted;
+    }
+
+    /**
+     * @return true if a manifest was written, false otherwise.
+     */
+    public boolean hasManifest() {
+        return Files.exists(this.directory.resolve(MANIFEST_FILE));
+    }
+
+    /**
+     * Reads the manifest.
+     *
+     * @return The manifest bytes, or empty if none was written yet.
+     * @throws IOException If the manifest cannot be read.
+     */
+    public Optional<byte[]> readManifest() throws IOException {
+        Path manifestPath = this.directory.resolve(MANIFEST_FILE);
+        if (!Files.exists(manifestPath)) return Optional.empty();
+
+        return Optional.of(Files.readAllBytes(manifestPath));
+    }
+
+    /**
+     * Replaces the manifest.
+     *
+     * @param manifest The manifest bytes.
+     * @throws IOException If the manifest cannot be written.
+     */
+    public void writeManifest(byte[] manifest) throws IOException {
+        Files.createDirectories(this.directory);
+
+        // Written aside and swapped, so a crash never leaves a half-written manifest
+        FileUtils.writeBytesToFile(this.directory.resolve(MANIFEST_FILE), manifest);
+    }
+
+    // Auxiliary methods
+
+    private Path blobPath(String id) {
+        // Identifiers become file names, so only the expected form is accepted
+        if (id == null || !BLOB_ID.matcher(id).matches()) throw new IllegalArgumentException("Invalid blob id: " + id);
+        return this.directory.resolve(id);
+    }
+}
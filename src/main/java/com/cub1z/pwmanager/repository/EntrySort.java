@@ -0,0 +1,36 @@
+package com.cub1z.pwmanager.repository;
+
+/**
+ * The orders entries can be listed in, each served by one of the repository indexes.
+ */
+public enum EntrySort {
+    NAME("Name", null, false),
+    RECENTLY_USED("Recently used", EntryTimestamp.LAST_ACCESSED_AT, true),
+    RECENTLY_UPDATED("Recently updated", EntryTimestamp.UPDATED_AT, true),
+    OLDEST_FIRST("Oldest first", EntryTimestamp.CREATED_AT, false);
+
+    private final String label;
+    private final EntryTimestamp timestamp;
+    private final boolean newestFirst;
+
+    EntrySort(String label, EntryTimestamp timestamp, boolean newestFirst) {
+        this.label = label;
+        this.timestamp = timestamp;
+        this.newestFirst = newestFirst;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return The timestamp this order follows, or null when entries are ordered by name.
+     */
+    public EntryTimestamp getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean isNewestFirst() {
+        return newestFirst;
+    }
+}
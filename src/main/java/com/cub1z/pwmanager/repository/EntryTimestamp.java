@@ -0,0 +1,29 @@
+package com.cub1z.pwmanager.repository;
+
+import java.util.Date;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+
+/**
+ * The entry timestamps the repository keeps sorted indexes on.
+ */
+public enum EntryTimestamp {
+    CREATED_AT,
+    UPDATED_AT,
+    LAST_ACCESSED_AT;
+
+    /**
+     * Reads this timestamp from an entry.
+     *
+     * @param entry The entry to read.
+     * @return The timestamp in epoch milliseconds, or Long.MIN_VALUE if the entry has none.
+     */
+    public long millisOf(PasswordEntry entry) {
+        Date date = switch (this) {
+            case CREATED_AT -> entry.getCreatedAt();
+            case UPDATED_AT -> entry.getUpdatedAt();
+            case LAST_ACCESSED_AT -> entry.getLastAccessedAt();
+        };
+        return date != null ? date.getTime() : Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,33 @@
+package com.cub1z.pwmanager.repository;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+
+/**
+ * The position of an entry in one of the listing orders, used to fetch the page that follows it
+ * by seeking the index instead of skipping the entries before it.
+ *
+ * @param sort The order the position belongs to.
+ * @param millis The timestamp the entry was indexed under, unused when ordering by name.
+ * @param serviceName The service name of the entry.
+ */
+public record PageCursor(EntrySort sort, long millis, String serviceName) {
+    public PageCursor {
+        if (sort == null) throw new IllegalArgumentException("Sort cannot be null");
+        if (serviceName == null) throw new IllegalArgumentException("Service name cannot be null");
+    }
+
+    /**
+     * Captures the position of an entry, typically the last one of a page. Entries are updated
+     * in place, so the cursor must be taken when the page is read.
+     *
+     * @param sort The order of the page.
+     * @param entry The entry to resume after.
+     * @return The position of the entry.
+     */
+    public static PageCursor after(EntrySort sort, PasswordEntry entry) {
+        if (entry == null) throw new IllegalArgumentException("Entry cannot be null");
+
+        long millis = sort != null && sort.getTimestamp() != null ? sort.getTimestamp().millisOf(entry) : 0;
+        return new PageCursor(sort, millis, entry.getServiceName());
+    }
+}
@@ -1,30 +1,119 @@
 package com.cub1z.pwmanager.repository;
 
-import java.io.FileNotFoundException;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
+import com.cub1z.pwmanager.config.Constants;
 import com.cub1z.pwmanager.config.FilePath;
+import com.cub1z.pwmanager.events.VaultStorageEvent;
+import com.cub1z.pwmanager.metrics.Metrics;
+import com.cub1z.pwmanager.metrics.Timer;
 import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.model.VaultHeader;
 import com.cub1z.pwmanager.utils.FileUtils;
 
-public class PasswordEntryRepository implements Repository {
+/**
+ * Stores password entries as a checkpoint file plus an append-only log of mutations.
+ * Every mutation appends one small record to the log, and a background compaction
+ * rewrites the checkpoint once the log grows past its thresholds.
+ *
+ * The repository is thread-safe. Point reads are lock-free, writers are serialized on the
+ * repository monitor, and long operations iterate an immutable snapshot that is shared
+ * until the next mutation, so they never block concurrent readers.
+ *
+ * Service names are indexed for search, and every entry timestamp has a sorted index
+ * so time-ordered queries stream a range instead of sorting the whole vault.
+ *
+ * The checkpoint is a single vault file, or N shards selected by the hash of the service name
+ * ({@link VaultShards}); a sharded checkpoint only rewrites the shards mutated since the last one.
+ */
+public class PasswordEntryRepository implements Repository, Closeable {
+    private static final String HEADER_SUFFIX = ".hdr";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String COMPACTING_LOG_SUFFIX = ".log.old";
+    private static final String STATS_SUFFIX = ".stats";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String SNAPSHOTS_SUFFIX = ".snapshots";
+
+    // Compact once the log holds more records than live entries, or grows past the size limit
+    private static final int COMPACTION_MIN_RECORDS = 1024;
+    private static final double COMPACTION_RECORD_RATIO = 1.0;
+    private static final long COMPACTION_MAX_LOG_SIZE = 8L * 1024 * 1024;
+
+    private static final Timer SAVE_TIMER = Metrics.timer("repository.saveEntry");
+    private static final Timer SAVE_BATCH_TIMER = Metrics.timer("repository.saveEntries");
+    private static final Timer GET_TIMER = Metrics.timer("repository.getEntry");
+    private static final Timer DELETE_TIMER = Metrics.timer("repository.deleteEntry");
+    private static final Timer LOAD_TIMER = Metrics.timer("repository.load");
+    private static final Timer CHECKPOINT_TIMER = Metrics.timer("repository.checkpoint");
+
     private final Path filePath;
-    private HashMap<String, PasswordEntry> entries;
+    private final Path headerPath;
+    private final Path logPath;
+    private final Path compactingLogPath;
+    private ConcurrentHashMap<String, PasswordEntry> entries;
+    private volatile Map<String, PasswordEntry> snapshot;
+    private volatile ServiceNameIndex nameIndex;
+    private final EnumMap<EntryTimestamp, TimestampIndex> timestampIndexes;
+    private volatile VaultHeader header;
+    private volatile VaultShards shards;
+    private volatile Set<Integer> dirtyShards = ConcurrentHashMap.newKeySet();
+    private VaultLog log;
+    private AccessStatsStore accessStats;
+    private final SnapshotStore snapshots;
+    private ExecutorService compactionExecutor;
+    private Future<?> compaction;
     
     public PasswordEntryRepository(Path filePath) {
         if (filePath == null) throw new IllegalArgumentException("File path cannot be null");
         this.filePath = filePath;
+        this.headerPath = filePath.resolveSibling(filePath.getFileName() + HEADER_SUFFIX);
+        this.logPath = filePath.resolveSibling(filePath.getFileName() + LOG_SUFFIX);
+        this.compactingLogPath = filePath.resolveSibling(filePath.getFileName() + COMPACTING_LOG_SUFFIX);
+        this.timestampIndexes = new EnumMap<>(EntryTimestamp.class);
+        for (EntryTimestamp timestamp : EntryTimestamp.values()) {
+            this.timestampIndexes.put(timestamp, new TimestampIndex());
+        }
+
+        this.snapshots = new SnapshotStore(
+            filePath.resolveSibling(filePath.getFileName() + SNAPSHOTS_SUFFIX),
+            Integer.getInteger(Constants.SNAPSHOT_RETENTION_PROPERTY, Constants.DEFAULT_SNAPSHOT_RETENTION)
+        );
 
         // Load existing entries from file if it exists
         try {
             load();
+        } catch (UncheckedIOException e) {
+            // A damaged log still holds committed mutations, an empty vault would be checkpointed over them
+            throw e;
         } catch (Exception e) {
-            this.entries = new HashMap<>();
+            this.entries = new ConcurrentHashMap<>();
+            this.nameIndex = new ServiceNameIndex();
+            this.timestampIndexes.values().forEach(TimestampIndex::clear);
         }
+
+        // Access times live in a sidecar, so lookups never write to the vault
+        this.accessStats = new AccessStatsStore(filePath.resolveSibling(filePath.getFileName() + STATS_SUFFIX));
+        this.entries.values().forEach(this::applyAccessStats);
     }
 
     public PasswordEntryRepository() {
@@ -46,21 +135,101 @@ public class PasswordEntryRepository implements Repository {
             throw new IllegalArgumentException("Service name cannot be null or empty");
         }
 
-        if (this.entries.containsKey(entry.getServiceName()) && !overwrite) {
-            throw new IllegalArgumentException("An entry with this service name already exists");
-        }
+        long start = System.nanoTime();
+        VaultStorageEvent event = new VaultStorageEvent();
+        event.begin();
+        VaultLog log;
+        long position;
+        long logSize;
+        synchronized (this) {
+            if (this.entries.containsKey(entry.getServiceName()) && !overwrite) {
+                throw new IllegalArgumentException("An entry with this service name already exists");
+            }
 
-        // Save the entry
-        entries.put(entry.getServiceName(), entry);
+            // Append the mutation to the log, then publish it
+            log = this.log();
+            position = log.appendPut(entry);
+            logSize = event.isEnabled() ? log.size() : 0;
+            this.entries.put(entry.getServiceName(), entry);
+            this.index(entry);
+            this.markDirty(entry.getServiceName());
+            this.snapshot = null;
 
-        // Write the updated entries to file
-        this.save();
+            this.compactIfNeeded();
+        }
+
+        // Wait for the disk outside the lock, so concurrent writers share one fsync
+        log.sync(position);
+        event.commit("save", 1, logSize);
+        SAVE_TIMER.recordSince(start);
     }
 
     public void saveEntry(PasswordEntry entry) throws Exception {
         saveEntry(entry, false);
     }
 
+    /**
+     * Saves a batch of password entries as one batch of log records closed by a commit record.
+     * The batch is applied atomically: it is validated before anything is written, a failed
+     * write is cut from the log, and replay after a crash applies every entry or none.
+     * 
+     * @param batch The PasswordEntry objects to save.
+     * @param overwrite If true, allows overwriting existing entries with the same service names.
+     * @throws IllegalArgumentException If an entry is invalid, or if a service name already exists or repeats within the batch and overwrite is false.
+     * @throws IOException If there is an error writing to the file.
+    */
+    public void saveEntries(Collection<PasswordEntry> batch, boolean overwrite) throws IllegalArgumentException, IOException {
+        if (batch == null) {
+            throw new IllegalArgumentException("Password entries cannot be null");
+        }
+
+        for (PasswordEntry entry : batch) {
+            if (entry == null) {
+                throw new IllegalArgumentException("Password entry cannot be null");
+            }
+
+            if (entry.getServiceName() == null || entry.getServiceName().isEmpty()) {
+                throw new IllegalArgumentException("Service name cannot be null or empty");
+            }
+        }
+
+        if (batch.isEmpty()) return;
+
+        long start = System.nanoTime();
+        VaultStorageEvent event = new VaultStorageEvent();
+        event.begin();
+        VaultLog log;
+        long position;
+        long logSize;
+        synchronized (this) {
+            if (!overwrite) {
+                Set<String> names = new HashSet<>();
+                for (PasswordEntry entry : batch) {
+                    if (this.entries.containsKey(entry.getServiceName()) || !names.add(entry.getServiceName())) {
+                        throw new IllegalArgumentException("An entry with this service name already exists: " + entry.getServiceName());
+                    }
+                }
+            }
+
+            // Append the whole batch to the log, then publish it
+            log = this.log();
+            position = log.appendPuts(batch);
+            logSize = event.isEnabled() ? log.size() : 0;
+            for (PasswordEntry entry : batch) {
+                this.entries.put(entry.getServiceName(), entry);
+                this.index(entry);
+                this.markDirty(entry.getServiceName());
+            }
+            this.snapshot = null;
+
+            this.compactIfNeeded();
+        }
+
+        log.sync(position);
+        event.commit("save batch", batch.size(), logSize);
+        SAVE_BATCH_TIMER.recordSince(start);
+    }
+
     /**
      * Retrieves a password entry by its service name.
      * 
@@ -72,7 +241,21 @@ public class PasswordEntryRepository implements Repository {
             throw new IllegalArgumentException("Service name cannot be null or empty");
         }
 
-        return entries.get(serviceName);
+        long start = System.nanoTime();
+        PasswordEntry entry = entries.get(serviceName);
+        GET_TIMER.recordSince(start);
+        return entry;
+    }
+
+    /**
+     * Searches the service names by prefix, substring and approximate match.
+     * 
+     * @param query The text to search for, case-insensitive.
+     * @param limit The maximum number of results.
+     * @return The matching service names, best matches first.
+    */
+    public List<String> search(String query, int limit) {
+        return this.nameIndex.search(query, limit);
     }
 
     /**
@@ -87,54 +270,557 @@ public class PasswordEntryRepository implements Repository {
             throw new IllegalArgumentException("Service name cannot be null or empty");
         }
 
-        if (!entries.containsKey(serviceName)) {
-            throw new IllegalArgumentException("No entry found for the given service name");
-        }
+        long start = System.nanoTime();
+        VaultStorageEvent event = new VaultStorageEvent();
+        event.begin();
+        VaultLog log;
+        long position;
+        long logSize;
+        synchronized (this) {
+            if (!this.entries.containsKey(serviceName)) {
+                throw new IllegalArgumentException("No entry found for the given service name");
+            }
 
-        // Remove the entry
-        entries.remove(serviceName);
+            // Append the mutation to the log, then publish it
+            log = this.log();
+            position = log.appendDelete(serviceName);
+            logSize = event.isEnabled() ? log.size() : 0;
+            this.entries.remove(serviceName);
+            this.markDirty(serviceName);
+            this.nameIndex.remove(serviceName);
+            this.timestampIndexes.values().forEach(index -> index.remove(serviceName));
+            this.snapshot = null;
+            this.accessStats.remove(serviceName);
 
-        // Write the updated entries to file
-        this.save();
+            this.compactIfNeeded();
+        }
+
+        log.sync(position);
+        event.commit("delete", 1, logSize);
+        DELETE_TIMER.recordSince(start);
     }
 
+    /**
+     * Updates the last accessed timestamp of an entry in memory.
+     * The timestamp is persisted by a batched flush of the access statistics.
+     * 
+     * @param serviceName The name of the service that was accessed.
+     * @throws IllegalArgumentException If the service name is null or empty, or if no entry exists for it.
+     * @throws IOException If there is an error writing the access statistics.
+    */
     public void updateLastAccessedAt(String serviceName) throws IllegalArgumentException, IOException {
         if (serviceName == null || serviceName.isEmpty()) {
             throw new IllegalArgumentException("Service name cannot be null or empty");
         }
 
-        PasswordEntry entry = entries.get(serviceName);
-        if (entry == null) {
+        // The entry is swapped for an updated copy while its mapping is locked, so a concurrent
+        // delete either runs first and nothing is indexed, or runs after and removes the index too
+        Date accessedAt = new Date();
+        PasswordEntry updated = this.entries.computeIfPresent(serviceName, (name, entry) -> {
+            this.timestampIndexes.get(EntryTimestamp.LAST_ACCESSED_AT).put(name, accessedAt.getTime());
+            this.accessStats.record(name, accessedAt.getTime());
+            return entry.withLastAccessedAt(accessedAt);
+        });
+        if (updated == null) {
             throw new IllegalArgumentException("No entry found for the given service name");
         }
 
-        // Update the last accessed timestamp
-        entry.updateLastAccessedAt();
-        
-        // Write the updated entries to file
-        this.save();
+        // Under the monitor, so a snapshot being built from the previous entry is not published after this
+        synchronized (this) {
+            this.snapshot = null;
+        }
     }
 
     public List<PasswordEntry> getAllEntries() throws IOException {
-        return new ArrayList<>(entries.values());
+        return new ArrayList<>(this.snapshot().values());
+    }
+
+    /**
+     * Returns an immutable, consistent view of every entry at the time of the call.
+     * The view is shared between callers until the next mutation publishes a new one.
+     * 
+     * @return An unmodifiable map of the entries, keyed by service name.
+    */
+    public Map<String, PasswordEntry> snapshot() {
+        Map<String, PasswordEntry> current = this.snapshot;
+        if (current != null) return current;
+
+        synchronized (this) {
+            if (this.snapshot == null) this.snapshot = Map.copyOf(this.entries);
+            return this.snapshot;
+        }
+    }
+
+    /**
+     * Lazily streams the entries whose timestamp falls in a range, in timestamp order,
+     * without copying or sorting the vault.
+     * 
+     * @param timestamp The timestamp to range over.
+     * @param from The inclusive lower bound, or null for no lower bound.
+     * @param to The exclusive upper bound, or null for no upper bound.
+     * @param newestFirst If true, the most recent entries come first.
+     * @param limit The maximum number of entries.
+     * @return The matching entries.
+     * @throws IllegalArgumentException If the timestamp is null or the limit is negative.
+    */
+    public Stream<PasswordEntry> query(
+        EntryTimestamp timestamp, Date from, Date to, boolean newestFirst, long limit
+    ) throws IllegalArgumentException {
+        if (timestamp == null) {
+            throw new IllegalArgumentException("Timestamp cannot be null");
+        }
+
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+
+        return this.timestampIndexes.get(timestamp)
+            .range(from != null ? from.getTime() : Long.MIN_VALUE, to != null ? to.getTime() : Long.MAX_VALUE, newestFirst)
+            .map(this.entries::get)
+            .filter(entry -> entry != null)
+            .limit(limit);
+    }
+
+    /**
+     * Retrieves one page of entries in the given order, walking the matching index from its
+     * start. The skipped entries are not materialized, but walking past them still costs
+     * O(offset): use {@link #page(EntrySort, PageCursor, int)} to move to the next page.
+     * 
+     * @param sort The order of the entries.
+     * @param offset The number of entries to skip.
+     * @param size The maximum number of entries in the page.
+     * @return The entries of the page.
+     * @throws IllegalArgumentException If the sort is null, or the offset or size is negative.
+    */
+    public List<PasswordEntry> page(EntrySort sort, long offset, int size) throws IllegalArgumentException {
+        if (sort == null) {
+            throw new IllegalArgumentException("Sort cannot be null");
+        }
+
+        if (offset < 0 || size < 0) {
+            throw new IllegalArgumentException("Offset and size cannot be negative");
+        }
+
+        Stream<PasswordEntry> ordered = sort.getTimestamp() == null
+            ? this.nameIndex.sorted().map(this.entries::get).filter(entry -> entry != null)
+            : this.query(sort.getTimestamp(), null, null, sort.isNewestFirst(), Long.MAX_VALUE);
+
+        return ordered.skip(offset).limit(size).toList();
+    }
+
+    /**
+     * Retrieves the page of entries that follows a cursor, seeking the matching index to the
+     * cursor, so the cost only depends on the page size and not on how deep the page is.
+     * 
+     * @param sort The order of the entries.
+     * @param after The position of the last entry of the previous page, or null for the first page.
+     * @param size The maximum number of entries in the page.
+     * @return The entries of the page.
+     * @throws IllegalArgumentException If the sort is null, the cursor belongs to another order,
+     *                                  or the size is negative.
+    */
+    public List<PasswordEntry> page(EntrySort sort, PageCursor after, int size) throws IllegalArgumentException {
+        if (after == null) return this.page(sort, 0, size);
+
+        if (sort == null || after.sort() != sort) {
+            throw new IllegalArgumentException("Cursor does not belong to the requested order");
+        }
+
+        if (size < 0) {
+            throw new IllegalArgumentException("Size cannot be negative");
+        }
+
+        Stream<String> names = sort.getTimestamp() == null
+            ? this.nameIndex.sortedAfter(after.serviceName())
+            : this.timestampIndexes.get(sort.getTimestamp()).after(after.millis(), after.serviceName(), sort.isNewestFirst());
+
+        return names.map(this.entries::get).filter(entry -> entry != null).limit(size).toList();
     }
 
     public int count() {
         return entries.size();
     }
 
+    /**
+     * Retrieves the vault header holding the key derivation parameters.
+     *
+     * @return The VaultHeader of this vault, or null if none has been created yet.
+     */
+    public VaultHeader getVaultHeader() {
+        return this.header;
+    }
+
+    /**
+     * Saves the vault header next to the passwords file.
+     *
+     * @param header The VaultHeader to save.
+     * @throws IllegalArgumentException If the header is null.
+     * @throws IOException If there is an error writing to the file.
+     */
+    public synchronized void saveVaultHeader(VaultHeader header) throws IllegalArgumentException, IOException {
+        if (header == null) {
+            throw new IllegalArgumentException("Vault header cannot be null");
+        }
+
+        this.header = header;
+        FileUtils.<VaultHeader>writeObjectToFile(this.headerPath, this.header);
+    }
+
+    /**
+     * Takes an incremental snapshot of the vault, storing only the entries changed since the
+     * previous one. The entries are captured from the shared immutable view, so readers and
+     * writers are only held for the time it takes to grab it.
+     *
+     * @return The new snapshot, or empty if nothing changed since the previous one.
+     * @throws IllegalStateException If the vault is being re-keyed.
+     * @throws IOException If there is an error writing the snapshot.
+     */
+    public Optional<SnapshotStore.Snapshot> takeSnapshot() throws IllegalStateException, IOException {
+        Map<String, PasswordEntry> snapshot;
+        VaultHeader header;
+        synchronized (this) {
+            snapshot = this.snapshot();
+            header = this.header;
+        }
+
+        // Mid re-key the entries are encrypted under two keys, which no single header describes
+        if (header != null && header.isRekeying()) {
+            throw new IllegalStateException("Cannot take a snapshot while the vault is being re-keyed");
+        }
+
+        return this.snapshots.take(snapshot, header);
+    }
+
+    /**
+     * Lists the stored snapshots, oldest first.
+     *
+     * @return The snapshots.
+     * @throws IOException If there is an error reading the snapshots.
+     */
+    public List<SnapshotStore.Snapshot> listSnapshots() throws IOException {
+        return this.snapshots.list();
+    }
+
+    /**
+     * Reads the vault as it was at a snapshot, without touching the live entries.
+     *
+     * @param id The snapshot number.
+     * @return The header and entries at the time of the snapshot.
+     * @throws IllegalArgumentException If there is no snapshot with that number.
+     * @throws IOException If there is an error reading the snapshots.
+     */
+    public SnapshotStore.Contents readSnapshot(long id) throws IllegalArgumentException, IOException {
+        return this.snapshots.restore(id);
+    }
+
+    /**
+     * Replaces every entry of the vault, as when restoring a snapshot. The current state is
+     * checkpointed first, so a crash leaves either the current or the new entries on disk.
+     *
+     * @param replacement The entries of the vault.
+     * @throws IllegalArgumentException If the entries are null.
+     * @throws IOException If there is an error writing the checkpoint.
+     */
+    public synchronized void replaceAll(Collection<PasswordEntry> replacement) throws IllegalArgumentException, IOException {
+        if (replacement == null) {
+            throw new IllegalArgumentException("Password entries cannot be null");
+        }
+
+        this.save();
+
+        Map<String, PasswordEntry> replaced = new HashMap<>(replacement.size() * 2);
+        for (PasswordEntry entry : replacement) replaced.put(entry.getServiceName(), entry);
+        this.writeCheckpoint(replaced, this.shards, null);
+
+        this.entries.keySet().retainAll(replaced.keySet());
+        this.entries.putAll(replaced);
+        this.nameIndex = new ServiceNameIndex(replaced.keySet());
+        this.timestampIndexes.values().forEach(TimestampIndex::clear);
+        replaced.values().forEach(this::applyAccessStats);
+        replaced.values().forEach(this::indexTimestamps);
+        this.snapshot = null;
+    }
+
+    /**
+     * @return The number of shards of the vault checkpoint, 1 for a single vault file.
+     */
+    public int getShardCount() {
+        VaultShards current = this.shards;
+        return current != null ? current.getShardCount() : 1;
+    }
+
+    /**
+     * Rewrites the checkpoint with a new number of shards while the vault stays in use.
+     * Like a compaction, the log is rotated aside and the new layout is written from a snapshot
+     * in the background: readers are never blocked and writers keep appending to a fresh log.
+     * The new layout replaces the previous one atomically once all of its shards are on disk.
+     *
+     * @param shardCount The number of shards, or 1 for a single vault file.
+     * @throws IllegalArgumentException If the shard count is out of range.
+     * @throws IOException If there is an error writing the new layout, in which case the previous one is kept.
+     */
+    public void reshard(int shardCount) throws IllegalArgumentException, IOException {
+        if (shardCount < 1 || shardCount > VaultShards.MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 1 and " + VaultShards.MAX_SHARDS);
+        }
+
+        Future<?> resharding;
+        synchronized (this) {
+            this.awaitCompaction();
+            if (shardCount == this.getShardCount()) return;
+
+            VaultShards current = this.shards;
+            VaultShards target = shardCount == 1
+                ? null
+                : new VaultShards(this.filePath, shardCount, current != null ? current.getGeneration() + 1 : 1);
+
+            this.log().rotateTo(this.compactingLogPath);
+            Map<String, PasswordEntry> snapshot = this.snapshot();
+
+            // Compactions wait for the reshard, which publishes the new layout before it completes
+            resharding = this.compaction = this.compactionExecutor().submit(() -> {
+                this.writeCheckpoint(snapshot, target, null);
+
+                // Entries saved meanwhile were marked against the previous layout
+                this.dirtyShards = allShards(target);
+                this.shards = target;
+                Files.deleteIfExists(this.compactingLogPath);
+                VaultShards.deleteStale(this.filePath, target);
+                return null;
+            });
+        }
+
+        try {
+            resharding.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resharding", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Vault reshard failed", e.getCause());
+        }
+    }
+
+    /**
+     * Flushes the access statistics, waits for a pending compaction and releases
+     * the log and background resources.
+     *
+     * @throws IOException If there is an error closing the log or flushing the statistics.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            this.accessStats.close();
+            this.awaitCompaction();
+        } finally {
+            if (this.compactionExecutor != null) {
+                this.compactionExecutor.shutdown();
+                this.compactionExecutor = null;
+            }
+
+            if (this.log != null) {
+                this.log.close();
+                this.log = null;
+            }
+        }
+    }
+
     // Overrides for Repository interface
     
     @Override
     @SuppressWarnings("unchecked")
-    public void load() throws Exception {
-        this.entries = FileUtils.readObjectFromFile(this.filePath, HashMap.class)
-            .map(map -> (HashMap<String, PasswordEntry>) map)
-            .orElseThrow(() -> new FileNotFoundException("Password file not found"));
+    public synchronized void load() throws Exception {
+        long start = System.nanoTime();
+        VaultStorageEvent event = new VaultStorageEvent();
+        event.begin();
+        this.header = FileUtils.readObjectFromFile(this.headerPath, VaultHeader.class).orElse(null);
+
+        HashMap<String, PasswordEntry> loaded;
+        this.shards = null;
+        if (VaultShards.isManifest(this.filePath)) {
+            this.shards = VaultShards.open(this.filePath);
+            loaded = this.shards.read();
+        } else if (VaultFile.isVaultFile(this.filePath)) {
+            loaded = VaultFile.read(this.filePath);
+        } else {
+            loaded = FileUtils.readObjectFromFile(this.filePath, HashMap.class)
+                .map(map -> (HashMap<String, PasswordEntry>) map)
+                .orElseGet(HashMap::new);
+
+            // Migrate a serialized checkpoint to the binary vault format on first open
+            if (Files.exists(this.filePath)) this.writeCheckpoint(loaded, null, null);
+        }
+
+        if (Files.exists(this.filePath)) {
+            VaultShards.deleteStale(this.filePath, this.shards);
+        } else {
+            int shardCount = Integer.getInteger(Constants.VAULT_SHARDS_PROPERTY, Constants.DEFAULT_VAULT_SHARDS);
+            if (shardCount > 1) this.shards = new VaultShards(this.filePath, shardCount, 1);
+        }
+
+        // Replay mutations made since the last checkpoint, oldest log first
+        Map<String, PasswordEntry> checkpoint = this.shards != null ? new HashMap<>(loaded) : null;
+        try {
+            VaultLog.replay(this.compactingLogPath, loaded);
+            VaultLog.replay(this.logPath, loaded);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // The replayed entries are not in their shards yet, the next checkpoint must rewrite them
+        this.dirtyShards = ConcurrentHashMap.newKeySet();
+        if (checkpoint != null) {
+            loaded.forEach((serviceName, entry) -> {
+                if (checkpoint.get(serviceName) != entry) this.markDirty(serviceName);
+            });
+            checkpoint.keySet().stream().filter(serviceName -> !loaded.containsKey(serviceName)).forEach(this::markDirty);
+        }
+
+        this.entries = new ConcurrentHashMap<>(loaded);
+        this.nameIndex = new ServiceNameIndex(loaded.keySet());
+        this.timestampIndexes.values().forEach(TimestampIndex::clear);
+        loaded.values().forEach(this::indexTimestamps);
+        this.snapshot = null;
+
+        event.commit("load", loaded.size(), Files.exists(this.filePath) ? Files.size(this.filePath) : 0);
+        LOAD_TIMER.recordSince(start);
     }
 
+    /**
+     * Writes a full checkpoint of every entry and discards the log.
+     *
+     * @throws IOException If there is an error writing to the file.
+     */
     @Override
-    public void save() throws IOException {
-        FileUtils.<HashMap<String, PasswordEntry>>writeObjectToFile(this.filePath, this.entries);
+    public synchronized void save() throws IOException {
+        try {
+            this.awaitCompaction();
+        } catch (IOException ignored) {
+            // A full checkpoint supersedes whatever the failed compaction left behind
+        }
+
+        this.writeCheckpoint(this.snapshot(), this.shards, null);
+        this.dirtyShards.clear();
+        this.log().truncate();
+        Files.deleteIfExists(this.compactingLogPath);
+    }
+
+    // Auxiliary methods
+
+    private void index(PasswordEntry entry) {
+        this.nameIndex.add(entry.getServiceName());
+        this.indexTimestamps(entry);
+    }
+
+    private void indexTimestamps(PasswordEntry entry) {
+        this.timestampIndexes.forEach((timestamp, index) -> index.put(entry.getServiceName(), timestamp.millisOf(entry)));
+    }
+
+    private void applyAccessStats(PasswordEntry entry) {
+        Long accessedAt = this.accessStats.getLastAccessedAt(entry.getServiceName());
+        if (accessedAt != null && accessedAt > entry.getLastAccessedAt().getTime()) {
+            entry.setLastAccessedAt(new Date(accessedAt));
+            this.timestampIndexes.get(EntryTimestamp.LAST_ACCESSED_AT).put(entry.getServiceName(), accessedAt);
+        }
+    }
+
+    private VaultLog log() throws IOException {
+        if (this.log == null) this.log = new VaultLog(this.logPath);
+        return this.log;
+    }
+
+    /**
+     * Starts a background compaction when the log passes its size or ratio threshold.
+     * The current log is rotated aside and a snapshot of the entries is checkpointed
+     * while new mutations keep appending to a fresh log.
+     */
+    private synchronized void compactIfNeeded() throws IOException {
+        if (this.compaction != null && !this.compaction.isDone()) return;
+
+        long records = this.log.getRecordCount();
+        boolean overRatio = records >= Math.max(COMPACTION_MIN_RECORDS, this.entries.size() * COMPACTION_RECORD_RATIO);
+        boolean overSize = this.log.size() >= COMPACTION_MAX_LOG_SIZE;
+        if (!overRatio && !overSize) return;
+
+        this.log.rotateTo(this.compactingLogPath);
+        Map<String, PasswordEntry> snapshot = this.snapshot();
+        VaultShards layout = this.shards;
+        Set<Integer> dirty = Set.copyOf(this.dirtyShards);
+        this.dirtyShards.removeAll(dirty);
+
+        this.compaction = this.compactionExecutor().submit(() -> {
+            try {
+                this.writeCheckpoint(snapshot, layout, dirty);
+            } catch (IOException | RuntimeException e) {
+                // The rotated log is kept, so its shards must be rewritten by the next checkpoint
+                this.dirtyShards.addAll(dirty);
+                throw e;
+            }
+            Files.deleteIfExists(this.compactingLogPath);
+            return null;
+        });
+    }
+
+    private ExecutorService compactionExecutor() {
+        if (this.compactionExecutor == null) {
+            this.compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "vault-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return this.compactionExecutor;
+    }
+
+    private void awaitCompaction() throws IOException {
+        if (this.compaction == null) return;
+
+        try {
+            this.compaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for compaction", e);
+        } catch (ExecutionException e) {
+            // The rotated log is kept, so a failed compaction loses nothing
+            throw new IOException("Vault compaction failed", e.getCause());
+        } finally {
+            this.compaction = null;
+        }
+    }
+
+    private void markDirty(String serviceName) {
+        VaultShards layout = this.shards;
+        if (layout != null) this.dirtyShards.add(layout.shardOf(serviceName));
+    }
+
+    private static Set<Integer> allShards(VaultShards layout) {
+        Set<Integer> shards = ConcurrentHashMap.newKeySet();
+        for (int shard = 0; layout != null && shard < layout.getShardCount(); shard++) shards.add(shard);
+        return shards;
+    }
+
+    /**
+     * Writes a checkpoint of the snapshot in a layout: a single vault file when the layout is
+     * null, otherwise the given shards, or all of them when null.
+     */
+    private void writeCheckpoint(Map<String, PasswordEntry> snapshot, VaultShards layout, Set<Integer> shards) throws IOException {
+        // Write aside and swap, so a crash never leaves a half-written checkpoint
+        long start = System.nanoTime();
+        VaultStorageEvent event = new VaultStorageEvent();
+        event.begin();
+        if (layout == null) {
+            Path tempPath = this.filePath.resolveSibling(this.filePath.getFileName() + TEMP_SUFFIX);
+            VaultFile.write(tempPath, snapshot.values());
+            FileUtils.moveAtomically(tempPath, this.filePath);
+        } else {
+            layout.write(snapshot, shards);
+
+            // A new layout is switched in once all of its shards are on disk
+            boolean current = VaultShards.isManifest(this.filePath)
+                && VaultShards.open(this.filePath).getGeneration() == layout.getGeneration();
+            if (!current) layout.writeManifest();
+        }
+        event.commit("checkpoint", snapshot.size(), Files.size(this.filePath));
+        CHECKPOINT_TIMER.recordSince(start);
     }
-}
\ No newline at end of file
+}
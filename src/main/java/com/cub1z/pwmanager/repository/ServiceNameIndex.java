@@ -0,0 +1,188 @@
+package com.cub1z.pwmanager.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory search index over service names, supporting case-insensitive prefix, substring
+ * and typo-tolerant matches.
+ *
+ * Names are kept in a sorted map for prefix range scans, and in a trigram index for substring
+ * and fuzzy lookups. Results are ranked exact match first, then prefix, substring and fuzzy
+ * matches, which are ordered by the share of the query trigrams they contain.
+ *
+ * Reads are lock-free. Updates are expected to be serialized by the caller, as the repository
+ * does on its monitor.
+ */
+public final class ServiceNameIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final double MIN_FUZZY_COVERAGE = 0.5;
+
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int SUBSTRING = 2;
+    private static final int FUZZY = 3;
+
+    // Normalized name + '\0' + name, so names differing only in case stay distinct
+    private final ConcurrentSkipListMap<String, String> sortedNames;
+    private final ConcurrentHashMap<String, Set<String>> postings;
+
+    private record Match(String serviceName, int tier, double score, int position) {}
+
+    public ServiceNameIndex() {
+        this.sortedNames = new ConcurrentSkipListMap<>();
+        this.postings = new ConcurrentHashMap<>();
+    }
+
+    public ServiceNameIndex(Collection<String> serviceNames) {
+        this();
+        serviceNames.forEach(this::add);
+    }
+
+    /**
+     * Adds a service name to the index. Adding a name twice has no effect.
+     *
+     * @param serviceName The service name to index.
+     */
+    public void add(String serviceName) {
+        String normalized = normalize(serviceName);
+        if (this.sortedNames.putIfAbsent(sortKey(normalized, serviceName), serviceName) != null) return;
+
+        for (String gram : grams(normalized)) {
+            this.postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(serviceName);
+        }
+    }
+
+    /**
+     * Removes a service name from the index.
+     *
+     * @param serviceName The service name to remove.
+     */
+    public void remove(String serviceName) {
+        String normalized = normalize(serviceName);
+        if (this.sortedNames.remove(sortKey(normalized, serviceName)) == null) return;
+
+        for (String gram : grams(normalized)) {
+            this.postings.computeIfPresent(gram, (key, names) -> {
+                names.remove(serviceName);
+                return names.isEmpty() ? null : names;
+            });
+        }
+    }
+
+    /**
+     * Lazily streams every service name in case-insensitive alphabetical order.
+     *
+     * @return The indexed service names, sorted.
+     */
+    public Stream<String> sorted() {
+        return this.sortedNames.values().stream();
+    }
+
+    /**
+     * Lazily streams the service names that follow a name in case-insensitive alphabetical
+     * order, seeking the sorted map to it.
+     *
+     * @param serviceName The name to resume after, which does not need to be indexed.
+     * @return The indexed service names after it, sorted.
+     */
+    public Stream<String> sortedAfter(String serviceName) {
+        return this.sortedNames.tailMap(sortKey(normalize(serviceName), serviceName), false).values().stream();
+    }
+
+    public int size() {
+        return this.sortedNames.size();
+    }
+
+    /**
+     * Finds the service names matching a query, best matches first.
+     *
+     * @param query The text to search for, case-insensitive.
+     * @param limit The maximum number of results.
+     * @return The matching service names, ranked.
+     */
+    public List<String> search(String query, int limit) {
+        String normalized = query == null ? "" : normalize(query);
+        if (normalized.isEmpty() || limit <= 0) return List.of();
+
+        Map<String, Match> matches = new HashMap<>();
+
+        // Prefix matches come straight from the sorted names
+        for (String serviceName : this.sortedNames.subMap(normalized, true, normalized + Character.MAX_VALUE, false).values()) {
+            int tier = normalize(serviceName).equals(normalized) ? EXACT : PREFIX;
+            matches.put(serviceName, new Match(serviceName, tier, 1.0, 0));
+        }
+
+        if (normalized.length() < GRAM_LENGTH) {
+            // Too short for trigrams, scan the names for substrings instead
+            for (String serviceName : this.sortedNames.values()) {
+                int position = normalize(serviceName).indexOf(normalized);
+                if (position > 0) matches.putIfAbsent(serviceName, new Match(serviceName, SUBSTRING, 1.0, position));
+            }
+        } else {
+            Set<String> queryGrams = grams(normalized);
+            Map<String, Integer> shared = new HashMap<>();
+            for (String gram : queryGrams) {
+                Set<String> names = this.postings.get(gram);
+                if (names != null) names.forEach(name -> shared.merge(name, 1, Integer::sum));
+            }
+
+            shared.forEach((serviceName, count) -> {
+                if (matches.containsKey(serviceName)) return;
+
+                int position = normalize(serviceName).indexOf(normalized);
+                double coverage = (double) count / queryGrams.size();
+                if (position >= 0) {
+                    matches.put(serviceName, new Match(serviceName, SUBSTRING, coverage, position));
+                } else if (coverage >= MIN_FUZZY_COVERAGE) {
+                    matches.put(serviceName, new Match(serviceName, FUZZY, coverage, Integer.MAX_VALUE));
+                }
+            });
+        }
+
+        List<Match> ranked = new ArrayList<>(matches.values());
+        ranked.sort(Comparator.comparingInt(Match::tier)
+            .thenComparing(Comparator.comparingDouble(Match::score).reversed())
+            .thenComparingInt(Match::position)
+            .thenComparingInt(match -> match.serviceName().length())
+            .thenComparing(Match::serviceName));
+
+        List<String> results = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            results.add(ranked.get(i).serviceName());
+        }
+        return results;
+    }
+
+    // Auxiliary methods
+
+    private static String normalize(String value) {
+        return value.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static String sortKey(String normalized, String serviceName) {
+        return normalized + '\0' + serviceName;
+    }
+
+    /**
+     * Splits a normalized name into trigrams, padded so short names and word starts get grams too.
+     */
+    private static Set<String> grams(String normalized) {
+        String padded = "  " + normalized + " ";
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+}
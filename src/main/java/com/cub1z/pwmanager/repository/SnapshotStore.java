@@ -0,0 +1,451 @@
+package com.cub1z.pwmanager.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import com.cub1z.pwmanager.metrics.Metrics;
+import com.cub1z.pwmanager.metrics.Timer;
+import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.model.VaultHeader;
+import com.cub1z.pwmanager.utils.FileUtils;
+
+/**
+ * Keeps a ring of point-in-time snapshots of the vault in a directory, one file per snapshot.
+ * The oldest snapshot is a base holding every entry; each later one holds only the entries put
+ * or removed since the previous one. Entry records are addressed by their SHA-256 and written
+ * by the first snapshot that needs them, so an unchanged entry is never written again.
+ *
+ * A snapshot is restored by replaying the chain from the base. Past the retention limit the base
+ * is folded into the next snapshot, which becomes the new base, dropping the records that no
+ * remaining snapshot references.
+ */
+public class SnapshotStore {
+    private static final byte[] MAGIC = { 'P', 'W', 'S', 'N' };
+    private static final int VERSION = 1;
+    private static final String FILE_SUFFIX = ".snap";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int HASH_LENGTH = 32;
+
+    private static final Timer TAKE_TIMER = Metrics.timer("snapshot.take");
+    private static final Timer RESTORE_TIMER = Metrics.timer("snapshot.restore");
+
+    private final Path directory;
+    private final int retention;
+    // The chain, loaded on first use: snapshot manifests, the latest state and the stored records
+    private List<SnapshotFile> chain;
+    private Map<String, String> latestState;
+    private Set<String> storedRecords;
+
+    /**
+     * Describes a stored snapshot.
+     *
+     * @param id The snapshot number, increasing over time.
+     * @param createdAt When the snapshot was taken.
+     * @param entries The number of entries in the vault at that time.
+     * @param changed The number of entries put since the previous snapshot, or all of them for the base.
+     * @param removed The number of entries removed since the previous snapshot.
+     * @param bytes The size of the snapshot file.
+     */
+    public record Snapshot(long id, Date createdAt, int entries, int changed, int removed, long bytes) {}
+
+    /**
+     * The vault at the time of a snapshot.
+     *
+     * @param header The vault header the entries were encrypted under, or null if the vault had none.
+     * @param entries The entries, keyed by service name.
+     */
+    public record Contents(VaultHeader header, Map<String, PasswordEntry> entries) {}
+
+    public SnapshotStore(Path directory, int retention) {
+        if (directory == null) throw new IllegalArgumentException("Directory cannot be null");
+        if (retention < 1) throw new IllegalArgumentException("Retention must be at least one snapshot");
+
+        this.directory = directory;
+        this.retention = retention;
+    }
+
+    /**
+     * Takes a snapshot of the given entries, storing only what changed since the previous one.
+     * The entries are encoded and written by the caller's thread, from a view the vault no longer
+     * mutates, so readers of the vault are never blocked.
+     *
+     * @param entries An immutable view of every entry, keyed by service name.
+     * @param header The vault header the entries are encrypted under, or null.
+     * @return The new snapshot, or empty if nothing changed since the previous one.
+     * @throws IOException If there is an error reading the chain or writing the snapshot.
+     */
+    public synchronized Optional<Snapshot> take(Map<String, PasswordEntry> entries, VaultHeader header) throws IOException {
+        long start = System.nanoTime();
+        this.loadChain();
+
+        MessageDigest digest = newDigest();
+        Map<String, String> state = new HashMap<>(entries.size() * 2);
+        Map<String, String> puts = new LinkedHashMap<>();
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        for (PasswordEntry entry : entries.values()) {
+            byte[] record = encodeRecord(entry);
+            String hash = HexFormat.of().formatHex(digest.digest(record));
+            state.put(entry.getServiceName(), hash);
+
+            if (!hash.equals(this.latestState.get(entry.getServiceName()))) puts.put(entry.getServiceName(), hash);
+            if (!this.storedRecords.contains(hash)) records.putIfAbsent(hash, record);
+        }
+
+        List<String> deletes = this.latestState.keySet().stream().filter(name -> !state.containsKey(name)).toList();
+        SnapshotFile previous = this.chain.isEmpty() ? null : this.chain.get(this.chain.size() - 1);
+        boolean headerChanged = previous != null && !sameHeader(previous.header, header);
+        if (previous != null && puts.isEmpty() && deletes.isEmpty() && !headerChanged) return Optional.empty();
+
+        long id = previous == null ? 1 : previous.id + 1;
+        SnapshotFile snapshot = new SnapshotFile(
+            id, previous == null ? 0 : previous.id, new Date(), header, puts, deletes, records
+        );
+        snapshot.bytes = this.write(snapshot);
+
+        this.chain.add(snapshot.withoutRecords());
+        this.latestState = state;
+        this.storedRecords.addAll(records.keySet());
+        this.enforceRetention();
+
+        TAKE_TIMER.recordSince(start);
+        return Optional.of(new Snapshot(id, snapshot.createdAt, state.size(), puts.size(), deletes.size(), snapshot.bytes));
+    }
+
+    /**
+     * Lists the stored snapshots, oldest first.
+     *
+     * @return The snapshots.
+     * @throws IOException If there is an error reading the chain.
+     */
+    public synchronized List<Snapshot> list() throws IOException {
+        this.loadChain();
+
+        List<Snapshot> snapshots = new ArrayList<>(this.chain.size());
+        Set<String> names = new HashSet<>();
+        for (SnapshotFile snapshot : this.chain) {
+            names.addAll(snapshot.puts.keySet());
+            snapshot.deletes.forEach(names::remove);
+            snapshots.add(new Snapshot(
+                snapshot.id, snapshot.createdAt, names.size(), snapshot.puts.size(), snapshot.deletes.size(), snapshot.bytes
+            ));
+        }
+
+        return snapshots;
+    }
+
+    /**
+     * Rebuilds the vault as it was at a snapshot, replaying the chain from the base.
+     *
+     * @param id The snapshot number.
+     * @return The header and entries at the time of the snapshot.
+     * @throws IllegalArgumentException If there is no snapshot with that number.
+     * @throws IOException If a snapshot file is missing, damaged or out of order.
+     */
+    public synchronized Contents restore(long id) throws IllegalArgumentException, IOException {
+        long start = System.nanoTime();
+        this.loadChain();
+
+        int last = -1;
+        for (int i = 0; i < this.chain.size(); i++) {
+            if (this.chain.get(i).id == id) last = i;
+        }
+        if (last < 0) throw new IllegalArgumentException("No snapshot " + id);
+
+        // Records are written by the first snapshot needing them, so none past the target is needed
+        Map<String, String> state = new LinkedHashMap<>();
+        Map<String, byte[]> records = new HashMap<>();
+        for (int i = 0; i <= last; i++) {
+            SnapshotFile snapshot = read(this.path(this.chain.get(i).id), true);
+            state.putAll(snapshot.puts);
+            snapshot.deletes.forEach(state::remove);
+            records.putAll(snapshot.records);
+        }
+
+        Map<String, PasswordEntry> entries = new LinkedHashMap<>(state.size() * 2);
+        for (Map.Entry<String, String> entry : state.entrySet()) {
+            byte[] record = records.get(entry.getValue());
+            if (record == null) throw new IOException("Snapshot " + id + " is missing the record of " + entry.getKey());
+
+            entries.put(entry.getKey(), decodeRecord(entry.getKey(), record));
+        }
+
+        RESTORE_TIMER.recordSince(start);
+        return new Contents(this.chain.get(last).header, entries);
+    }
+
+    // Auxiliary methods
+
+    private void loadChain() throws IOException {
+        if (this.chain != null) return;
+
+        List<SnapshotFile> chain = new ArrayList<>();
+        if (Files.isDirectory(this.directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*" + FILE_SUFFIX)) {
+                for (Path file : files) chain.add(read(file, false));
+            }
+        }
+        chain.sort((a, b) -> Long.compare(a.id, b.id));
+
+        // A fold interrupted after writing the new base leaves the old base behind it
+        int base = 0;
+        for (int i = 0; i < chain.size(); i++) {
+            if (chain.get(i).parent == 0) base = i;
+        }
+        for (SnapshotFile stale : chain.subList(0, base)) Files.deleteIfExists(this.path(stale.id));
+        chain = new ArrayList<>(chain.subList(base, chain.size()));
+
+        Map<String, String> state = new HashMap<>();
+        Set<String> stored = new HashSet<>();
+        for (int i = 0; i < chain.size(); i++) {
+            SnapshotFile snapshot = chain.get(i);
+            long expectedParent = i == 0 ? 0 : chain.get(i - 1).id;
+            if (snapshot.parent != expectedParent) throw new IOException("Snapshot chain is broken at snapshot " + snapshot.id);
+
+            state.putAll(snapshot.puts);
+            snapshot.deletes.forEach(state::remove);
+            stored.addAll(snapshot.recordHashes);
+        }
+
+        this.chain = chain;
+        this.latestState = state;
+        this.storedRecords = stored;
+    }
+
+    /**
+     * Folds the base into the next snapshot until the ring is within the retention limit.
+     * The new base is written before the old one is deleted, so a crash loses nothing.
+     */
+    private void enforceRetention() throws IOException {
+        while (this.chain.size() > this.retention) {
+            SnapshotFile base = read(this.path(this.chain.get(0).id), true);
+            SnapshotFile next = read(this.path(this.chain.get(1).id), true);
+
+            Map<String, String> state = new LinkedHashMap<>(base.puts);
+            state.putAll(next.puts);
+            next.deletes.forEach(state::remove);
+
+            Set<String> referenced = new HashSet<>(state.values());
+            for (SnapshotFile later : this.chain.subList(2, this.chain.size())) referenced.addAll(later.puts.values());
+
+            Map<String, byte[]> records = new LinkedHashMap<>();
+            for (SnapshotFile snapshot : List.of(base, next)) {
+                snapshot.records.forEach((hash, record) -> {
+                    if (referenced.contains(hash)) records.putIfAbsent(hash, record);
+                });
+            }
+
+            SnapshotFile folded = new SnapshotFile(next.id, 0, next.createdAt, next.header, state, List.of(), records);
+            folded.bytes = this.write(folded);
+            Files.delete(this.path(base.id));
+
+            this.chain.remove(0);
+            this.chain.set(0, folded.withoutRecords());
+            base.records.keySet().forEach(this.storedRecords::remove);
+            next.records.keySet().forEach(this.storedRecords::remove);
+            this.storedRecords.addAll(records.keySet());
+        }
+    }
+
+    private long write(SnapshotFile snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.write(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(snapshot.id);
+        out.writeLong(snapshot.parent);
+        out.writeLong(snapshot.createdAt.getTime());
+
+        byte[] salt = snapshot.header != null ? snapshot.header.getSalt() : new byte[0];
+        out.writeShort(salt.length);
+        out.write(salt);
+        out.writeInt(snapshot.header != null ? snapshot.header.getIterations() : 0);
+
+        out.writeInt(snapshot.puts.size());
+        for (Map.Entry<String, String> put : snapshot.puts.entrySet()) {
+            out.writeUTF(put.getKey());
+            out.write(HexFormat.of().parseHex(put.getValue()));
+        }
+
+        out.writeInt(snapshot.deletes.size());
+        for (String name : snapshot.deletes) out.writeUTF(name);
+
+        out.writeInt(snapshot.records.size());
+        for (Map.Entry<String, byte[]> record : snapshot.records.entrySet()) {
+            out.write(HexFormat.of().parseHex(record.getKey()));
+            out.writeInt(record.getValue().length);
+            out.write(record.getValue());
+        }
+
+        // Files are replaced atomically, the checksum catches damage at rest
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        Files.createDirectories(this.directory);
+        FileUtils.writeBytesToFile(this.path(snapshot.id), bytes.toByteArray());
+        return bytes.size();
+    }
+
+    private static SnapshotFile read(Path path, boolean withRecords) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length < MAGIC.length + Integer.BYTES) throw new IOException("Snapshot file is truncated: " + path);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Integer.BYTES);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (!Arrays.equals(in.readNBytes(MAGIC.length), MAGIC)) throw new IOException("Not a snapshot file: " + path);
+        if ((int) crc.getValue() != readTrailer(bytes)) throw new IOException("Snapshot file is damaged: " + path);
+
+        int version = in.readInt();
+        if (version > VERSION) throw new IOException("Unsupported snapshot version " + version);
+
+        long id = in.readLong();
+        long parent = in.readLong();
+        Date createdAt = new Date(in.readLong());
+
+        byte[] salt = new byte[in.readUnsignedShort()];
+        in.readFully(salt);
+        int iterations = in.readInt();
+        VaultHeader header = salt.length > 0 ? new VaultHeader(salt, iterations) : null;
+
+        int putCount = in.readInt();
+        Map<String, String> puts = new LinkedHashMap<>(putCount * 2);
+        for (int i = 0; i < putCount; i++) {
+            puts.put(in.readUTF(), HexFormat.of().formatHex(in.readNBytes(HASH_LENGTH)));
+        }
+
+        int deleteCount = in.readInt();
+        List<String> deletes = new ArrayList<>(deleteCount);
+        for (int i = 0; i < deleteCount; i++) deletes.add(in.readUTF());
+
+        int recordCount = in.readInt();
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        Set<String> recordHashes = new HashSet<>(recordCount * 2);
+        for (int i = 0; i < recordCount; i++) {
+            String hash = HexFormat.of().formatHex(in.readNBytes(HASH_LENGTH));
+            int length = in.readInt();
+            if (length < 0 || length > in.available()) throw new IOException("Snapshot file is damaged: " + path);
+
+            recordHashes.add(hash);
+            if (withRecords) {
+                records.put(hash, in.readNBytes(length));
+            } else {
+                in.skipNBytes(length);
+            }
+        }
+
+        SnapshotFile snapshot = new SnapshotFile(id, parent, createdAt, header, puts, deletes, records);
+        snapshot.recordHashes = recordHashes;
+        snapshot.bytes = bytes.length;
+        return snapshot;
+    }
+
+    private static int readTrailer(byte[] bytes) {
+        int end = bytes.length;
+        return (bytes[end - 4] & 0xFF) << 24 | (bytes[end - 3] & 0xFF) << 16 | (bytes[end - 2] & 0xFF) << 8 | (bytes[end - 1] & 0xFF);
+    }
+
+    /**
+     * Encodes what a snapshot keeps of an entry. Access times change on every read and live in
+     * the access statistics, so they are left out to keep read-only entries deduplicated.
+     */
+    private static byte[] encodeRecord(PasswordEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] encryptedPassword = entry.getEncryptedPassword();
+
+        out.writeLong(entry.getCreatedAt().getTime());
+        out.writeLong(entry.getUpdatedAt().getTime());
+        out.writeInt(encryptedPassword.length);
+        out.write(encryptedPassword);
+
+        return bytes.toByteArray();
+    }
+
+    private static PasswordEntry decodeRecord(String serviceName, byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        Date createdAt = new Date(in.readLong());
+        Date updatedAt = new Date(in.readLong());
+        byte[] encryptedPassword = new byte[in.readInt()];
+        in.readFully(encryptedPassword);
+
+        return new PasswordEntry(serviceName, encryptedPassword, createdAt, updatedAt, updatedAt);
+    }
+
+    private static boolean sameHeader(VaultHeader a, VaultHeader b) {
+        if (a == null || b == null) return a == b;
+        return a.getIterations() == b.getIterations() && Arrays.equals(a.getSalt(), b.getSalt());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private Path path(long id) {
+        return this.directory.resolve(String.format("%010d%s", id, FILE_SUFFIX));
+    }
+
+    /**
+     * One snapshot: the entries put and removed since its parent, and the records it stores.
+     */
+    private static class SnapshotFile {
+        private final long id;
+        private final long parent;
+        private final Date createdAt;
+        private final VaultHeader header;
+        private final Map<String, String> puts;
+        private final List<String> deletes;
+        private final Map<String, byte[]> records;
+        private Set<String> recordHashes;
+        private long bytes;
+
+        SnapshotFile(
+            long id, long parent, Date createdAt, VaultHeader header,
+            Map<String, String> puts, List<String> deletes, Map<String, byte[]> records
+        ) {
+            this.id = id;
+            this.parent = parent;
+            this.createdAt = createdAt;
+            this.header = header;
+            this.puts = puts;
+            this.deletes = deletes;
+            this.records = records;
+            this.recordHashes = records.keySet();
+        }
+
+        /**
+         * @return The same manifest without the record bytes, to keep in memory.
+         */
+        SnapshotFile withoutRecords() {
+            SnapshotFile manifest = new SnapshotFile(this.id, this.parent, this.createdAt, this.header, this.puts, this.deletes, Map.of());
+            manifest.recordHashes = Set.copyOf(this.recordHashes);
+            manifest.bytes = this.bytes;
+            return manifest;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.cub1z.pwmanager.repository;
+
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Sorted index of service names by one timestamp, backed by a concurrent skip list
+ * keyed by epoch millis and then by name.
+ *
+ * Writers are serialized on the index. Reads are lock-free and weakly consistent, and skip
+ * the stale key a name briefly has while its timestamp moves.
+ */
+public class TimestampIndex {
+    private final ConcurrentSkipListSet<Key> keys;
+    private final ConcurrentHashMap<String, Long> current;
+
+    private record Key(long millis, String serviceName) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int byTime = Long.compare(this.millis, other.millis);
+            return byTime != 0 ? byTime : this.serviceName.compareTo(other.serviceName);
+        }
+    }
+
+    public TimestampIndex() {
+        this.keys = new ConcurrentSkipListSet<>();
+        this.current = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Indexes a service name under a timestamp, replacing its previous timestamp.
+     *
+     * @param serviceName The service name.
+     * @param millis The timestamp in epoch milliseconds.
+     */
+    public synchronized void put(String serviceName, long millis) {
+        Long previous = this.current.put(serviceName, millis);
+        if (previous != null && previous == millis) return;
+
+        // Insert before removing, so readers never miss the name entirely
+        this.keys.add(new Key(millis, serviceName));
+        if (previous != null) this.keys.remove(new Key(previous, serviceName));
+    }
+
+    public synchronized void remove(String serviceName) {
+        Long previous = this.current.remove(serviceName);
+        if (previous != null) this.keys.remove(new Key(previous, serviceName));
+    }
+
+    public synchronized void clear() {
+        this.keys.clear();
+        this.current.clear();
+    }
+
+    /**
+     * Lazily streams the service names whose timestamp falls in a range, in timestamp order.
+     *
+     * @param fromMillis The inclusive lower bound.
+     * @param toMillis The exclusive upper bound.
+     * @param descending If true, the newest names come first.
+     * @return The service names in the range.
+     */
+    public Stream<String> range(long fromMillis, long toMillis, boolean descending) {
+        if (fromMillis >= toMillis) return Stream.empty();
+
+        NavigableSet<Key> range = this.keys.subSet(new Key(fromMillis, ""), true, new Key(toMillis, ""), false);
+        return (descending ? range.descendingSet() : range).stream()
+            .filter(this::isCurrent)
+            .map(Key::serviceName);
+    }
+
+    /**
+     * Lazily streams the service names that follow a position in timestamp order, seeking the
+     * skip list to the position instead of walking the names before it.
+     *
+     * @param millis The timestamp of the position.
+     * @param serviceName The service name of the position, which is excluded.
+     * @param descending If true, the newest names come first, so the older names are streamed.
+     * @return The service names after the position.
+     */
+    public Stream<String> after(long millis, String serviceName, boolean descending) {
+        Key position = new Key(millis, serviceName);
+        NavigableSet<Key> rest = descending ? this.keys.headSet(position, false).descendingSet() : this.keys.tailSet(position, false);
+        return rest.stream()
+            .filter(this::isCurrent)
+            .map(Key::serviceName);
+    }
+
+    // Auxiliary methods
+
+    private boolean isCurrent(Key key) {
+        return Long.valueOf(key.millis()).equals(this.current.get(key.serviceName()));
+    }
+}
@@ -0,0 +1,175 @@
+package com.cub1z.pwmanager.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+
+/**
+ * Binary vault checkpoint format.
+ *
+ * <pre>
+ * header:  magic "PWMV" | int version | int entryCount | long indexOffset | int reserved
+ * records: int length | encrypted password bytes               (one per entry)
+ * index:   u16 nameLength | name (UTF-8) | long createdAt | long updatedAt
+ *          | long lastAccessedAt | long recordOffset            (one per entry)
+ * </pre>
+ *
+ * Files are loaded into the heap with a single read. Only the index is decoded up front, the
+ * encrypted password of an entry is copied out of the loaded records when it is requested.
+ * The file is not memory-mapped: a mapping is never unmapped until it is garbage collected,
+ * and while it is alive Windows refuses to replace or delete the file, which would break the
+ * atomic move of the next checkpoint over it.
+ */
+public class VaultFile {
+    private static final byte[] MAGIC = { 'P', 'W', 'M', 'V' };
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 24;
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+    /**
+     * Checks if a file is stored in the binary vault format.
+     *
+     * @param path The file to check.
+     * @return true if the file exists and starts with the vault format magic, false otherwise.
+     * @throws IOException If there is an error reading the file.
+     */
+    public static boolean isVaultFile(Path path) throws IOException {
+        if (!Files.exists(path)) return false;
+
+        try (InputStream in = Files.newInputStream(path)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /**
+     * Loads a vault file and decodes its index.
+     *
+     * @param path The vault file to read.
+     * @return The entries of the vault, keyed by service name.
+     * @throws IOException If the file cannot be read or is not a valid vault file.
+     */
+    public static HashMap<String, PasswordEntry> read(Path path) throws IOException {
+        if (Files.size(path) > Integer.MAX_VALUE) {
+            throw new IOException("Vault file is too large to load: " + path);
+        }
+
+        // Entries keep views into the loaded records, not into the file
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a vault file: " + path);
+            }
+
+            int version = buffer.getInt();
+            if (version > VERSION) {
+                throw new IOException("Unsupported vault file version " + version + ": " + path);
+            }
+
+            int entryCount = buffer.getInt();
+            long indexOffset = buffer.getLong();
+
+            HashMap<String, PasswordEntry> entries = new HashMap<>(Math.max(16, (int) (entryCount / 0.75f) + 1));
+            buffer.position(Math.toIntExact(indexOffset));
+
+            for (int i = 0; i < entryCount; i++) {
+                byte[] name = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(name);
+                String serviceName = new String(name, StandardCharsets.UTF_8);
+
+                Date createdAt = new Date(buffer.getLong());
+                Date updatedAt = new Date(buffer.getLong());
+                Date lastAccessedAt = new Date(buffer.getLong());
+                int recordOffset = Math.toIntExact(buffer.getLong());
+
+                entries.put(serviceName, new PasswordEntry(
+                    serviceName, buffer.slice(recordOffset, buffer.limit() - recordOffset),
+                    createdAt, updatedAt, lastAccessedAt
+                ));
+            }
+
+            return entries;
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted vault file: " + path, e);
+        }
+    }
+
+    /**
+     * Writes entries to a vault file, replacing any existing content.
+     *
+     * @param path The vault file to write.
+     * @param entries The entries to write.
+     * @throws IOException If there is an error writing the file.
+     */
+    public static void write(Path path, Collection<PasswordEntry> entries) throws IOException {
+        PasswordEntry[] snapshot = entries.toArray(new PasswordEntry[0]);
+        long[] recordOffsets = new long[snapshot.length];
+
+        try (FileChannel channel = FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            long position = HEADER_LENGTH;
+
+            // Placeholder header, patched once the index offset is known
+            out.write(new byte[HEADER_LENGTH]);
+
+            for (int i = 0; i < snapshot.length; i++) {
+                byte[] encryptedPassword = snapshot[i].getEncryptedPassword();
+                recordOffsets[i] = position;
+
+                out.writeInt(encryptedPassword.length);
+                out.write(encryptedPassword);
+                position += Integer.BYTES + encryptedPassword.length;
+            }
+
+            long indexOffset = position;
+            for (int i = 0; i < snapshot.length; i++) {
+                PasswordEntry entry = snapshot[i];
+                byte[] name = entry.getServiceName().getBytes(StandardCharsets.UTF_8);
+                if (name.length > MAX_NAME_LENGTH) {
+                    throw new IOException("Service name is too long: " + entry.getServiceName());
+                }
+
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeLong(entry.getCreatedAt().getTime());
+                out.writeLong(entry.getUpdatedAt().getTime());
+                out.writeLong(entry.getLastAccessedAt().getTime());
+                out.writeLong(recordOffsets[i]);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.put(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(snapshot.length);
+            header.putLong(indexOffset);
+            header.putInt(0);
+            header.flip();
+
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+
+            // The checkpoint replaces the log, so it must be on disk before it is swapped in
+            channel.force(true);
+        }
+    }
+}
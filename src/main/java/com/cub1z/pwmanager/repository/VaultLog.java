@@ -0,0 +1,523 @@
+package com.cub1z.pwmanager.repository;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.cub1z.pwmanager.metrics.Counter;
+import com.cub1z.pwmanager.metrics.Metrics;
+import com.cub1z.pwmanager.metrics.Timer;
+import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.utils.FileUtils;
+
+/**
+ * Append-only log of vault mutations.
+ * Each record is framed as [length][crc32][payload], so a torn write at the tail
+ * is detected on replay and discarded instead of corrupting the vault. A damaged frame
+ * followed by more records is not a torn write, and fails the replay instead, since
+ * dropping it would also drop every committed record after it.
+ *
+ * A batch of puts is written as records of their own kind followed by a commit record, and
+ * replay only applies them once it reaches the commit, so a batch cut short by a crash is
+ * discarded as a whole rather than leaving part of it applied.
+ *
+ * Appends only write; {@link #sync} makes them durable. Callers that sync while another
+ * force is in flight wait for it and are then covered together by a single force, so
+ * concurrent mutations share one fsync instead of queueing for one each.
+ */
+public class VaultLog implements Closeable {
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_BATCH_PUT = 3;
+    private static final byte OP_COMMIT = 4;
+    private static final int FRAME_HEADER_LENGTH = Integer.BYTES * 2;
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+    private static final int BATCH_BUFFER_SIZE = 64 * 1024;
+
+    private static final Timer APPEND_TIMER = Metrics.timer("log.append");
+    private static final Counter APPEND_BYTES = Metrics.counter("log.append.bytes");
+    private static final Timer SYNC_TIMER = Metrics.timer("log.fsync");
+
+    private final Path path;
+    private final Object syncMonitor;
+    private FileChannel channel;
+    private long recordCount;
+    // Bytes appended and bytes known to be on disk since the log was opened, across rotations
+    private volatile long appendedBytes;
+    private long syncedBytes;
+    private boolean syncing;
+
+    public VaultLog(Path path) throws IOException {
+        if (path == null) throw new IllegalArgumentException("File path cannot be null");
+        this.path = path;
+        this.syncMonitor = new Object();
+        this.open();
+    }
+
+    /**
+     * Appends a record storing the full state of an entry.
+     *
+     * @param entry The PasswordEntry that was saved.
+     * @return The position to {@link #sync} to make the record durable.
+     * @throws IOException If there is an error writing to the log.
+     */
+    public long appendPut(PasswordEntry entry) throws IOException {
+        return this.append(encodePut(OP_PUT, entry));
+    }
+
+    /**
+     * Appends one record per entry and a commit record. The records are encoded into a buffer
+     * of bounded size that is written whenever it fills up, so large batches are not copied whole.
+     * The entries are replayed all together once the commit record is on disk, or not at all.
+     *
+     * @param entries The PasswordEntry objects that were saved.
+     * @return The position to {@link #sync} to make the records durable.
+     * @throws IOException If there is an error writing to the log.
+     */
+    public synchronized long appendPuts(Collection<PasswordEntry> entries) throws IOException {
+        long start = System.nanoTime();
+        long position = this.channel.position();
+        ByteBuffer frames = ByteBuffer.allocate(BATCH_BUFFER_SIZE);
+        long bytes = 0;
+
+        try {
+            for (PasswordEntry entry : entries) {
+                bytes += this.put(frames, encodePut(OP_BATCH_PUT, entry));
+            }
+            bytes += this.put(frames, ByteBuffer.allocate(1 + Integer.BYTES).put(OP_COMMIT).putInt(entries.size()).array());
+            bytes += this.drain(frames);
+        } catch (IOException e) {
+            // Without its commit record the batch is ignored, but records after it would not be
+            this.rollback(position, e);
+            throw e;
+        }
+
+        this.recordCount += entries.size();
+        this.appendedBytes += bytes;
+
+        APPEND_TIMER.recordSince(start);
+        APPEND_BYTES.add(bytes);
+        return this.appendedBytes;
+    }
+
+    /**
+     * Appends a record removing an entry.
+     *
+     * @param serviceName The name of the service whose entry was deleted.
+     * @return The position to {@link #sync} to make the record durable.
+     * @throws IOException If there is an error writing to the log.
+     */
+    public long appendDelete(String serviceName) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeByte(OP_DELETE);
+        out.writeUTF(serviceName);
+
+        return this.append(bytes.toByteArray());
+    }
+
+    /**
+     * Waits until the log is on disk up to a position returned by an append. If another caller
+     * is forcing the log, this one waits for it and returns if it was covered; otherwise it forces
+     * everything appended so far, covering every caller that arrived in the meantime.
+     *
+     * @param position The position returned by the append.
+     * @throws IOException If there is an error forcing the log, or the wait was interrupted.
+     */
+    public void sync(long position) throws IOException {
+        if (!this.becomeSyncLeader(position)) return;
+
+        long synced = 0;
+        try {
+            synced = this.force();
+        } finally {
+            this.resignSyncLeader(synced);
+        }
+    }
+
+    /**
+     * Replays every intact record of a log file on top of the given entries.
+     * Replay is idempotent, so applying records already contained in a checkpoint is harmless.
+     *
+     * @param path The log file to replay.
+     * @param entries The entries to apply the records to.
+     * @return The number of records applied.
+     * @throws IOException If there is an error reading the log, or it is damaged before its tail.
+     */
+    public static int replay(Path path, Map<String, PasswordEntry> entries) throws IOException {
+        if (!Files.exists(path)) return 0;
+
+        int applied = 0;
+        for (byte[] payload : readRecords(path).payloads()) {
+            apply(payload, entries);
+            applied++;
+        }
+
+        return applied;
+    }
+
+    /**
+     * Discards every record, typically after a checkpoint has made them redundant.
+     *
+     * @throws IOException If there is an error truncating the log.
+     */
+    public synchronized void truncate() throws IOException {
+        long synced = this.holdSync();
+        try {
+            this.channel.truncate(0);
+            this.recordCount = 0;
+        } finally {
+            this.resignSyncLeader(synced);
+        }
+    }
+
+    /**
+     * Closes the log and renames it, so that a fresh log can be opened at the same path.
+     *
+     * @param target The path the current log file is moved to. Existing records there are kept.
+     * @throws IOException If there is an error moving the log.
+     */
+    public synchronized void rotateTo(Path target) throws IOException {
+        long synced = this.holdSync();
+        try {
+            this.channel.close();
+            this.moveTo(target);
+            this.open();
+        } finally {
+            this.resignSyncLeader(synced);
+        }
+    }
+
+    public long size() throws IOException {
+        return this.channel.size();
+    }
+
+    public long getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Forces the pending appends to disk and closes the log.
+     *
+     * @throws IOException If there is an error forcing or closing the log.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        long synced = this.holdSync();
+        try {
+            this.channel.close();
+        } finally {
+            this.resignSyncLeader(synced);
+        }
+    }
+
+    // Auxiliary methods
+
+    private void moveTo(Path target) throws IOException {
+        if (Files.exists(target)) {
+            // A previous rotation was never checkpointed: keep its records ahead of ours
+            // Cut a tail torn by an interrupted move first, or it would end up in front of our records
+            long validLength = readRecords(target).length();
+            try (
+                FileChannel source = FileChannel.open(this.path, StandardOpenOption.READ);
+                FileChannel destination = FileChannel.open(target, StandardOpenOption.WRITE)
+            ) {
+                destination.truncate(validLength);
+                destination.position(validLength);
+                long position = 0;
+                while (position < source.size()) {
+                    position += source.transferTo(position, source.size() - position, destination);
+                }
+                destination.force(false);
+            }
+            Files.delete(this.path);
+        } else {
+            FileUtils.moveAtomically(this.path, target);
+        }
+    }
+
+    private void open() throws IOException {
+        this.recordCount = 0;
+
+        if (Files.exists(this.path)) {
+            // Drop a torn tail left by an interrupted append before writing after it
+            Records records = readRecords(this.path);
+            long validLength = records.length();
+            this.recordCount = records.payloads().size();
+
+            this.channel = FileChannel.open(this.path, StandardOpenOption.WRITE);
+            this.channel.truncate(validLength);
+            this.channel.position(validLength);
+        } else {
+            this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileUtils.forceDirectory(this.path.toAbsolutePath().getParent());
+        }
+    }
+
+    private long append(byte[] payload) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_LENGTH + payload.length);
+        frame(frame, payload);
+        return this.write(frame.flip(), 1);
+    }
+
+    private synchronized long write(ByteBuffer frames, int records) throws IOException {
+        long start = System.nanoTime();
+        int bytes = frames.remaining();
+        long position = this.channel.position();
+        try {
+            while (frames.hasRemaining()) {
+                this.channel.write(frames);
+            }
+        } catch (IOException e) {
+            // Later appends would otherwise land after a partial frame, which replay rejects
+            this.rollback(position, e);
+            throw e;
+        }
+        this.recordCount += records;
+        this.appendedBytes += bytes;
+
+        APPEND_TIMER.recordSince(start);
+        APPEND_BYTES.add(bytes);
+        return this.appendedBytes;
+    }
+
+    /**
+     * Adds a frame to the buffer, writing the buffer out first if the frame does not fit.
+     *
+     * @return The number of bytes written to the log.
+     */
+    private long put(ByteBuffer frames, byte[] payload) throws IOException {
+        int length = FRAME_HEADER_LENGTH + payload.length;
+        if (frames.remaining() >= length) {
+            frame(frames, payload);
+            return 0;
+        }
+
+        long written = this.drain(frames);
+        if (frames.remaining() >= length) {
+            frame(frames, payload);
+            return written;
+        }
+
+        // A record larger than the buffer is written on its own
+        ByteBuffer large = ByteBuffer.allocate(length);
+        frame(large, payload);
+        return written + this.drain(large);
+    }
+
+    private long drain(ByteBuffer frames) throws IOException {
+        frames.flip();
+        int bytes = frames.remaining();
+        while (frames.hasRemaining()) {
+            this.channel.write(frames);
+        }
+        frames.clear();
+        return bytes;
+    }
+
+    private void rollback(long position, IOException cause) {
+        try {
+            this.channel.truncate(position);
+            this.channel.position(position);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Waits until no other caller is forcing the log, then takes over forcing it, unless
+     * the force that was in flight already covered the position.
+     *
+     * @return true if the caller must force the log, then resign.
+     */
+    private boolean becomeSyncLeader(long position) throws IOException {
+        synchronized (this.syncMonitor) {
+            try {
+                while (this.syncing && this.syncedBytes < position) {
+                    this.syncMonitor.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the log to sync");
+            }
+
+            if (this.syncedBytes >= position) return false;
+            this.syncing = true;
+            return true;
+        }
+    }
+
+    private void resignSyncLeader(long synced) {
+        synchronized (this.syncMonitor) {
+            this.syncedBytes = Math.max(this.syncedBytes, synced);
+            this.syncing = false;
+            this.syncMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Forces every append so far and keeps other callers from forcing, for operations
+     * that close or cut the file. The caller must resign with the returned position.
+     */
+    private long holdSync() throws IOException {
+        this.becomeSyncLeader(Long.MAX_VALUE);
+        try {
+            return this.force();
+        } catch (IOException | RuntimeException e) {
+            this.resignSyncLeader(0);
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of appended bytes the force covered.
+     */
+    private long force() throws IOException {
+        long start = System.nanoTime();
+        long appended = this.appendedBytes;
+        this.channel.force(false);
+        SYNC_TIMER.recordSince(start);
+        return appended;
+    }
+
+    private static void frame(ByteBuffer buffer, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+    }
+
+    private static byte[] encodePut(byte op, PasswordEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] encryptedPassword = entry.getEncryptedPassword();
+
+        out.writeByte(op);
+        out.writeUTF(entry.getServiceName());
+        out.writeLong(entry.getCreatedAt().getTime());
+        out.writeLong(entry.getUpdatedAt().getTime());
+        out.writeLong(entry.getLastAccessedAt().getTime());
+        out.writeInt(encryptedPassword.length);
+        out.write(encryptedPassword);
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the intact records of a log file. A damaged frame ends the records only when it is
+     * the last one in the file, or everything after it is zeroes, as left by a torn append.
+     * Batched records are only returned once their commit record has been read.
+     *
+     * @throws IOException If the log cannot be read, or a damaged frame is followed by more data.
+     */
+    private static Records readRecords(Path path) throws IOException {
+        List<byte[]> payloads = new ArrayList<>();
+        List<byte[]> batch = new ArrayList<>();
+        long size = Files.size(path);
+        long offset = 0;
+        long committed = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (size - offset >= FRAME_HEADER_LENGTH) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                long end = offset + FRAME_HEADER_LENGTH + length;
+
+                if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                    if (length == 0 && checksum == 0 && isZeroFilled(in)) break;
+                    throw corrupted(path, offset);
+                }
+                if (end > size) break;
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    if (end == size || isZeroFilled(in)) break;
+                    throw corrupted(path, offset);
+                }
+
+                if (payload[0] == OP_BATCH_PUT) {
+                    batch.add(payload);
+                } else if (payload[0] == OP_COMMIT) {
+                    int count = ByteBuffer.wrap(payload, 1, Integer.BYTES).getInt();
+                    if (count > batch.size()) throw corrupted(path, offset);
+
+                    // Records of a batch abandoned by a failed write may precede those of this one
+                    payloads.addAll(batch.subList(batch.size() - count, batch.size()));
+                    batch.clear();
+                    committed = end;
+                } else {
+                    batch.clear();
+                    payloads.add(payload);
+                    committed = end;
+                }
+                offset = end;
+            }
+        }
+
+        // An uncommitted batch at the tail is cut along with the torn frame
+        return new Records(payloads, committed);
+    }
+
+    private static boolean isZeroFilled(InputStream in) throws IOException {
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b != 0) return false;
+        }
+        return true;
+    }
+
+    private static IOException corrupted(Path path, long offset) {
+        return new IOException("Vault log " + path + " is damaged at byte " + offset + ", before records that follow it");
+    }
+
+    private static void apply(byte[] payload, Map<String, PasswordEntry> entries) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        String serviceName = in.readUTF();
+
+        switch (op) {
+            case OP_PUT, OP_BATCH_PUT -> {
+                Date createdAt = new Date(in.readLong());
+                Date updatedAt = new Date(in.readLong());
+                Date lastAccessedAt = new Date(in.readLong());
+                byte[] encryptedPassword = new byte[in.readInt()];
+                in.readFully(encryptedPassword);
+
+                entries.put(serviceName, new PasswordEntry(
+                    serviceName, encryptedPassword, createdAt, updatedAt, lastAccessedAt
+                ));
+            }
+            case OP_DELETE -> entries.remove(serviceName);
+            default -> throw new IOException("Unknown log record type: " + op);
+        }
+    }
+
+    /**
+     * The intact records of a log file, and the number of bytes they span from its start.
+     */
+    private record Records(List<byte[]> payloads, long length) {}
+}
@@ -0,0 +1,215 @@
+package com.cub1z.pwmanager.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.utils.FileUtils;
+
+/**
+ * Sharded vault checkpoint layout. The entries are spread over N vault files by the hash of
+ * their service name, so a checkpoint only rewrites the shards that changed and a load decodes
+ * every shard in parallel.
+ *
+ * <pre>
+ * manifest: magic "PWMS" | int version | int shardCount | long generation   (at the vault path)
+ * shards:   &lt;vault&gt;.shard-&lt;generation&gt;-&lt;index&gt;                            (one vault file each)
+ * </pre>
+ *
+ * A new layout is written under a new generation and switched in by replacing the manifest,
+ * so a crash while resharding leaves the previous layout in place.
+ */
+public class VaultShards {
+    public static final int MAX_SHARDS = 1024;
+
+    private static final byte[] MAGIC = { 'P', 'W', 'M', 'S' };
+    private static final int VERSION = 1;
+    private static final String SHARD_INFIX = ".shard-";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path filePath;
+    private final int shardCount;
+    private final long generation;
+
+    public VaultShards(Path filePath, int shardCount, long generation) {
+        if (filePath == null) throw new IllegalArgumentException("File path cannot be null");
+        if (shardCount < 2 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 2 and " + MAX_SHARDS);
+        }
+
+        this.filePath = filePath;
+        this.shardCount = shardCount;
+        this.generation = generation;
+    }
+
+    /**
+     * Checks if the vault path holds a shard manifest.
+     *
+     * @param filePath The vault path.
+     * @return true if the file exists and starts with the manifest magic, false otherwise.
+     * @throws IOException If there is an error reading the file.
+     */
+    public static boolean isManifest(Path filePath) throws IOException {
+        if (!Files.exists(filePath)) return false;
+
+        try (InputStream in = Files.newInputStream(filePath)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /**
+     * Reads the layout described by the shard manifest at the vault path.
+     *
+     * @param filePath The vault path.
+     * @return The sharded layout.
+     * @throws IOException If the manifest cannot be read or is not valid.
+     */
+    public static VaultShards open(Path filePath) throws IOException {
+        ByteBuffer manifest = ByteBuffer.wrap(Files.readAllBytes(filePath));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            manifest.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a shard manifest: " + filePath);
+
+            int version = manifest.getInt();
+            if (version > VERSION) throw new IOException("Unsupported shard manifest version " + version + ": " + filePath);
+
+            return new VaultShards(filePath, manifest.getInt(), manifest.getLong());
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted shard manifest: " + filePath, e);
+        }
+    }
+
+    /**
+     * Deletes the shard files that do not belong to a layout, left by a previous layout or an
+     * interrupted reshard.
+     *
+     * @param filePath The vault path.
+     * @param current The layout in use, or null if the vault is a single file.
+     * @throws IOException If there is an error listing or deleting the files.
+     */
+    public static void deleteStale(Path filePath, VaultShards current) throws IOException {
+        String prefix = filePath.getFileName() + SHARD_INFIX;
+        String keep = current != null ? prefix + current.generation + "-" : null;
+
+        Path directory = filePath.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                if (keep == null || !file.getFileName().toString().startsWith(keep)) Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * @param serviceName The service name of an entry.
+     * @return The shard holding the entry.
+     */
+    public int shardOf(String serviceName) {
+        // Spread the hash, so names differing in their last characters still change the high bits
+        int hash = serviceName.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), this.shardCount);
+    }
+
+    public int getShardCount() {
+        return this.shardCount;
+    }
+
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Decodes every shard in parallel. A shard that was never written holds no entries.
+     *
+     * @return The entries of the vault, keyed by service name.
+     * @throws IOException If a shard cannot be read or is not a valid vault file.
+     */
+    public HashMap<String, PasswordEntry> read() throws IOException {
+        List<HashMap<String, PasswordEntry>> shards;
+        try {
+            shards = IntStream.range(0, this.shardCount).parallel().mapToObj(shard -> {
+                try {
+                    Path path = this.shardPath(shard);
+                    return Files.exists(path) ? VaultFile.read(path) : new HashMap<String, PasswordEntry>();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        HashMap<String, PasswordEntry> entries = new HashMap<>(
+            Math.max(16, (int) (shards.stream().mapToInt(Map::size).sum() / 0.75f) + 1)
+        );
+        shards.forEach(entries::putAll);
+        return entries;
+    }
+
+    /**
+     * Rewrites shards from a snapshot of the vault, in parallel. Each shard is written aside
+     * and swapped in, like a single file checkpoint.
+     *
+     * @param snapshot Every entry of the vault, keyed by service name.
+     * @param shards The shards to rewrite, or null to rewrite all of them.
+     * @throws IOException If there is an error writing a shard.
+     */
+    public void write(Map<String, PasswordEntry> snapshot, Set<Integer> shards) throws IOException {
+        List<List<PasswordEntry>> partitions = new ArrayList<>(this.shardCount);
+        for (int shard = 0; shard < this.shardCount; shard++) partitions.add(new ArrayList<>());
+        for (PasswordEntry entry : snapshot.values()) {
+            int shard = this.shardOf(entry.getServiceName());
+            if (shards == null || shards.contains(shard)) partitions.get(shard).add(entry);
+        }
+
+        try {
+            IntStream.range(0, this.shardCount).parallel()
+                .filter(shard -> shards == null || shards.contains(shard))
+                .forEach(shard -> {
+                    try {
+                        Path path = this.shardPath(shard);
+                        Path tempPath = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+                        VaultFile.write(tempPath, partitions.get(shard));
+                        FileUtils.moveAtomically(tempPath, path);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes the manifest at the vault path, switching the vault to this layout.
+     *
+     * @throws IOException If there is an error writing the manifest.
+     */
+    public void writeManifest() throws IOException {
+        ByteBuffer manifest = ByteBuffer.allocate(MAGIC.length + Integer.BYTES * 2 + Long.BYTES);
+        manifest.put(MAGIC);
+        manifest.putInt(VERSION);
+        manifest.putInt(this.shardCount);
+        manifest.putLong(this.generation);
+
+        FileUtils.writeBytesToFile(this.filePath, manifest.array());
+    }
+
+    // Auxiliary methods
+
+    private Path shardPath(int shard) {
+        return this.filePath.resolveSibling(this.filePath.getFileName() + SHARD_INFIX + this.generation + "-" + shard);
+    }
+}
@@ -4,122 +4,496 @@ import javax.crypto.*;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.cub1z.pwmanager.events.CryptoEvent;
+import com.cub1z.pwmanager.metrics.Metrics;
+import com.cub1z.pwmanager.metrics.Timer;
+import com.cub1z.pwmanager.model.VaultHeader;
 
 public class AESCryptoService implements CryptoService {
     private static final String ENCRYPTION_ALGORITHM = "AES/GCM/NoPadding";
     private static final String KEY_DERIVATION_ALGORITHM = "PBKDF2WithHmacSHA256";
     private static final int ITERATIONS = 100_000;
+    private static final int MIN_ITERATIONS = 10_000;
+    private static final int MAX_ITERATIONS = 10_000_000;
+    private static final int CALIBRATION_ITERATIONS = 10_000;
+    private static final int CALIBRATION_ROUNDS = 5;
     private static final int KEY_LENGTH = 256;
     private static final int GCM_TAG_LENGTH = 128;
     private static final int IV_LENGTH = 12;
     private static final int SALT_LENGTH = 16;
+    private static final String HKDF_ALGORITHM = "HmacSHA256";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int CONTEXTS_PER_PROCESSOR = 2;
+    private static final byte[] ENTRY_KEY_INFO = "pwmanager/entry/v1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEYED_FORMAT_MAGIC = { 'P', 'W', 'K', 1 };
+    private static final byte[] STREAM_KEY_INFO = "pwmanager/stream/v1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STREAM_FORMAT_MAGIC = { 'P', 'W', 'S', 1 };
+    private static final int STREAM_SEGMENT_SIZE = 64 * 1024;
+    private static final int MAX_STREAM_SEGMENT_SIZE = 1024 * 1024;
+    private static final int STREAM_NONCE_PREFIX_LENGTH = 7;
+    private static final int STREAM_HEADER_LENGTH = STREAM_FORMAT_MAGIC.length + Integer.BYTES + SALT_LENGTH + STREAM_NONCE_PREFIX_LENGTH;
+    private static final int GCM_TAG_BYTES = GCM_TAG_LENGTH / Byte.SIZE;
+
+    private static final Timer KDF_TIMER = Metrics.timer("crypto.kdf");
+    private static final Timer ENCRYPT_TIMER = Metrics.timer("crypto.encrypt");
+    private static final Timer DECRYPT_TIMER = Metrics.timer("crypto.decrypt");
+    private static final Timer ENCRYPT_STREAM_TIMER = Metrics.timer("crypto.encryptStream");
+    private static final Timer DECRYPT_STREAM_TIMER = Metrics.timer("crypto.decryptStream");
 
     private final SecureRandom secureRandom;
+    private final Map<PasswordPolicy, PasswordGenerator> passwordGenerators;
+    private final CryptoContext.Pool contexts;
 
     public AESCryptoService() {
         this.secureRandom = new SecureRandom();
+        this.passwordGenerators = new ConcurrentHashMap<>();
+        this.contexts = new CryptoContext.Pool(
+            ENCRYPTION_ALGORITHM, HKDF_ALGORITHM, KEY_DERIVATION_ALGORITHM, DIGEST_ALGORITHM,
+            Runtime.getRuntime().availableProcessors() * CONTEXTS_PER_PROCESSOR
+        );
     }
 
     @Override
     public byte[] encrypt(char[] plainData, char[] password) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        CryptoEvent event = new CryptoEvent();
+        event.begin();
+        CryptoContext context = this.contexts.acquire();
+
         // Generate random salt
         byte[] salt = new byte[SALT_LENGTH];
-        this.secureRandom.nextBytes(salt);
+        context.random().nextBytes(salt);
 
         // Generate random IV
         byte[] iv = new byte[IV_LENGTH];
-        this.secureRandom.nextBytes(iv);
+        context.random().nextBytes(iv);
 
-        SecretKey key = deriveKey(password, salt);
+        SecretKey key = deriveKey(context, password, salt);
 
-        Cipher cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
+        Cipher cipher = context.cipher();
         GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
         cipher.init(Cipher.ENCRYPT_MODE, key, gcmSpec);
 
-        byte[] plainBytes = new String(plainData).getBytes(StandardCharsets.UTF_8);
-        byte[] cipherText = cipher.doFinal(plainBytes);
-
-        ByteBuffer buffer = ByteBuffer.allocate(salt.length + iv.length + cipherText.length);
-        buffer.put(salt);
-        buffer.put(iv);
-        buffer.put(cipherText);
+        int plainLength;
+        byte[] encrypted;
+        try (SecretBuffer plain = SecretBuffer.encode(plainData)) {
+            plainLength = plain.length();
+            encrypted = new byte[salt.length + iv.length + cipher.getOutputSize(plainLength)];
 
-        // Clean up sensitive data
-        wipeSensitiveData(plainBytes);
-        wipeSensitiveData(password);
+            ByteBuffer buffer = ByteBuffer.wrap(encrypted);
+            buffer.put(salt);
+            buffer.put(iv);
+            cipher.doFinal(plain.readable(), buffer);
+        } finally {
+            // Clean up sensitive data
+            wipeSensitiveData(password);
+        }
 
-        return buffer.array();
+        this.contexts.release(context);
+        event.commit("encrypt", plainLength, 0);
+        ENCRYPT_TIMER.recordSince(start);
+        return encrypted;
     }
 
     @Override
     public char[] decrypt(byte[] encryptedData, char[] password) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        CryptoEvent event = new CryptoEvent();
+        event.begin();
+        CryptoContext context = this.contexts.acquire();
+
         if (encryptedData.length < SALT_LENGTH + IV_LENGTH) {
             throw new GeneralSecurityException("Invalid encrypted data length");
         }
 
-        // Extract salt, IV, and cipher text
+        // Extract salt and IV, the cipher text is read in place
         byte[] salt = Arrays.copyOfRange(encryptedData, 0, SALT_LENGTH);
         byte[] iv = Arrays.copyOfRange(encryptedData, SALT_LENGTH, SALT_LENGTH + IV_LENGTH);
-        byte[] cipherText = Arrays.copyOfRange(encryptedData, SALT_LENGTH + IV_LENGTH, encryptedData.length);
+        int offset = SALT_LENGTH + IV_LENGTH;
 
         // Calculate derived key
-        SecretKey key = deriveKey(password, salt);
+        SecretKey key;
+        try {
+            key = deriveKey(context, password, salt);
+        } finally {
+            // Clean up sensitive data
+            wipeSensitiveData(password);
+        }
 
-        Cipher cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
+        Cipher cipher = context.cipher();
         GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
         cipher.init(Cipher.DECRYPT_MODE, key, gcmSpec);
 
-        byte[] plainBytes = cipher.doFinal(cipherText);
-        char[] plainChars = new String(plainBytes, StandardCharsets.UTF_8).toCharArray();
-
-        // Clean up sensitive data
-        wipeSensitiveData(plainBytes);
-        wipeSensitiveData(password);
+        char[] plainChars;
+        try (SecretBuffer plain = doFinalToBuffer(cipher, encryptedData, offset)) {
+            plainChars = plain.toChars();
+        }
 
+        this.contexts.release(context);
+        event.commit("decrypt", encryptedData.length, 0);
+        DECRYPT_TIMER.recordSince(start);
         return plainChars;
     }
 
     @Override
-    public char[] generateSecurePassword(int length, boolean includeSpecialChars) throws GeneralSecurityException {
-        if (length <= 0) {
-            throw new IllegalArgumentException("Password length must be positive");
+    public byte[] encrypt(char[] plainData, VaultKey key) throws GeneralSecurityException {
+        try (SecretBuffer plain = SecretBuffer.encode(plainData)) {
+            return encrypt(plain, key);
+        }
+    }
+
+    @Override
+    public byte[] encrypt(SecretBuffer plainData, VaultKey key) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        CryptoEvent event = new CryptoEvent();
+        event.begin();
+        CryptoContext context = this.contexts.acquire();
+
+        // Generate random entry salt, used to expand a per-entry subkey
+        byte[] entrySalt = new byte[SALT_LENGTH];
+        context.random().nextBytes(entrySalt);
+
+        // Generate random IV
+        byte[] iv = new byte[IV_LENGTH];
+        context.random().nextBytes(iv);
+
+        SecretKey subkey = deriveEntryKey(context, key, entrySalt);
+
+        Cipher cipher = context.cipher();
+        cipher.init(Cipher.ENCRYPT_MODE, subkey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        cipher.updateAAD(KEYED_FORMAT_MAGIC);
+
+        // The cipher reads the secret in place and writes right after the header
+        int plainLength = plainData.length();
+        byte[] encrypted = new byte[KEYED_FORMAT_MAGIC.length + entrySalt.length + iv.length + cipher.getOutputSize(plainLength)];
+        ByteBuffer buffer = ByteBuffer.wrap(encrypted);
+        buffer.put(KEYED_FORMAT_MAGIC);
+        buffer.put(entrySalt);
+        buffer.put(iv);
+        cipher.doFinal(plainData.readable(), buffer);
+
+        this.contexts.release(context);
+        event.commit("encrypt", plainLength, 0);
+        ENCRYPT_TIMER.recordSince(start);
+        return encrypted;
+    }
+
+    @Override
+    public char[] decrypt(byte[] encryptedData, VaultKey key) throws GeneralSecurityException {
+        try (SecretBuffer plain = decryptToBuffer(encryptedData, key)) {
+            return plain.toChars();
+        }
+    }
+
+    @Override
+    public SecretBuffer decryptToBuffer(byte[] encryptedData, VaultKey key) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        CryptoEvent event = new CryptoEvent();
+        event.begin();
+        CryptoContext context = this.contexts.acquire();
+
+        if (!isKeyEncrypted(encryptedData)) {
+            throw new GeneralSecurityException("Data was not encrypted with a vault key");
+        }
+
+        // Extract entry salt and IV, the cipher text is read in place
+        int offset = KEYED_FORMAT_MAGIC.length;
+        byte[] entrySalt = Arrays.copyOfRange(encryptedData, offset, offset + SALT_LENGTH);
+        offset += SALT_LENGTH;
+        byte[] iv = Arrays.copyOfRange(encryptedData, offset, offset + IV_LENGTH);
+        offset += IV_LENGTH;
+
+        SecretKey subkey = deriveEntryKey(context, key, entrySalt);
+
+        Cipher cipher = context.cipher();
+        cipher.init(Cipher.DECRYPT_MODE, subkey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        cipher.updateAAD(KEYED_FORMAT_MAGIC);
+
+        SecretBuffer plain = doFinalToBuffer(cipher, encryptedData, offset);
+
+        this.contexts.release(context);
+        event.commit("decrypt", encryptedData.length, 0);
+        DECRYPT_TIMER.recordSince(start);
+        return plain;
+    }
+
+    /**
+     * Encrypts a stream of any length in constant memory. The data is split into fixed-size
+     * segments, each sealed with AES-GCM under a per-stream subkey of the vault key. A segment's
+     * nonce is a random prefix, its index and a final flag, so segments cannot be reordered,
+     * dropped or cut off after a segment boundary without decryption failing.
+     *
+     * The channels are read and written through direct buffers, so file channels do native I/O.
+     * Neither channel is closed.
+     *
+     * @param source A blocking channel with the data, read until its end.
+     * @param target The channel the encrypted stream is written to.
+     * @param key The vault key.
+     * @return The number of plain bytes encrypted.
+     */
+    @Override
+    public long encrypt(ReadableByteChannel source, WritableByteChannel target, VaultKey key) throws IOException, GeneralSecurityException {
+        long start = System.nanoTime();
+        CryptoEvent event = new CryptoEvent();
+        event.begin();
+        CryptoContext context = this.contexts.acquire();
+
+        // Generate random stream salt and nonce prefix
+        byte[] streamSalt = new byte[SALT_LENGTH];
+        context.random().nextBytes(streamSalt);
+        byte[] noncePrefix = new byte[STREAM_NONCE_PREFIX_LENGTH];
+        context.random().nextBytes(noncePrefix);
+
+        // The header is authenticated with every segment
+        byte[] header = encodeStreamHeader(STREAM_SEGMENT_SIZE, streamSalt, noncePrefix);
+        writeFully(target, ByteBuffer.wrap(header));
+
+        SecretKey subkey = deriveStreamKey(context, key, streamSalt);
+        Cipher cipher = context.cipher();
+
+        // One byte more than a segment is read, a full segment is final only if nothing follows it
+        ByteBuffer plain = ByteBuffer.allocateDirect(STREAM_SEGMENT_SIZE + 1);
+        ByteBuffer sealed = ByteBuffer.allocateDirect(STREAM_SEGMENT_SIZE + GCM_TAG_BYTES);
+        long total = 0;
+        try {
+            int segment = 0;
+            boolean isFinal = false;
+            while (!isFinal) {
+                isFinal = !readFully(source, plain);
+                plain.flip();
+                int available = plain.limit();
+                if (!isFinal) plain.limit(STREAM_SEGMENT_SIZE);
+                total += plain.remaining();
+
+                cipher.init(Cipher.ENCRYPT_MODE, subkey, streamNonce(noncePrefix, segment++, isFinal));
+                cipher.updateAAD(header);
+                sealed.clear();
+                cipher.doFinal(plain, sealed);
+                writeFully(target, sealed.flip());
+
+                // Carry the byte read ahead over to the next segment
+                plain.limit(available);
+                plain.compact();
+            }
+        } finally {
+            wipeSensitiveData(plain);
         }
 
-        String upper = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-        String lower = "abcdefghijklmnopqrstuvwxyz";
-        String digits = "0123456789";
-        String specials = "!@#$%^&*()-_=+[]{}|;:',.<>?/";
-        String all = upper + lower + digits + (includeSpecialChars ? specials : "");
+        this.contexts.release(context);
+        event.commit("encryptStream", (int) Math.min(total, Integer.MAX_VALUE), 0);
+        ENCRYPT_STREAM_TIMER.recordSince(start);
+        return total;
+    }
 
-        StringBuilder password = new StringBuilder(length);
+    /**
+     * Decrypts a stream written by {@link #encrypt(ReadableByteChannel, WritableByteChannel, VaultKey)}
+     * in constant memory. Each segment is authenticated before it is written out, but a stream
+     * cut short is only detected at its end, so the caller must discard the output on failure.
+     *
+     * @param source A blocking channel with the encrypted stream, read until its end.
+     * @param target The channel the plain data is written to.
+     * @param key The vault key.
+     * @return The number of plain bytes decrypted.
+     * @throws GeneralSecurityException If the stream was tampered with, truncated or encrypted with another key.
+     */
+    @Override
+    public long decrypt(ReadableByteChannel source, WritableByteChannel target, VaultKey key) throws IOException, GeneralSecurityException {
+        long start = System.nanoTime();
+        CryptoEvent event = new CryptoEvent();
+        event.begin();
+        CryptoContext context = this.contexts.acquire();
+
+        ByteBuffer headerBuffer = ByteBuffer.allocate(STREAM_HEADER_LENGTH);
+        if (!readFully(source, headerBuffer)) {
+            throw new GeneralSecurityException("Encrypted stream is truncated");
+        }
 
-        // Ensure at least one character from each required set
-        password.append(upper.charAt(secureRandom.nextInt(upper.length())));
-        password.append(lower.charAt(secureRandom.nextInt(lower.length())));
-        password.append(digits.charAt(secureRandom.nextInt(digits.length())));
-        if (includeSpecialChars && length > 3) {
-            password.append(specials.charAt(secureRandom.nextInt(specials.length())));
+        byte[] header = headerBuffer.array();
+        headerBuffer.flip();
+        byte[] magic = new byte[STREAM_FORMAT_MAGIC.length];
+        headerBuffer.get(magic);
+        if (!Arrays.equals(magic, STREAM_FORMAT_MAGIC)) {
+            throw new GeneralSecurityException("Data is not an encrypted stream");
         }
 
-        // Fill the rest randomly
-        for (int i = password.length(); i < length; i++) {
-            password.append(all.charAt(secureRandom.nextInt(all.length())));
+        int segmentSize = headerBuffer.getInt();
+        if (segmentSize <= 0 || segmentSize > MAX_STREAM_SEGMENT_SIZE) {
+            throw new GeneralSecurityException("Invalid stream segment size: " + segmentSize);
         }
 
-        // Shuffle to avoid predictable positions
-        char[] pwdArr = password.toString().toCharArray();
-        for (int i = pwdArr.length - 1; i > 0; i--) {
-            int j = secureRandom.nextInt(i + 1);
-            char tmp = pwdArr[i];
-            pwdArr[i] = pwdArr[j];
-            pwdArr[j] = tmp;
+        byte[] streamSalt = new byte[SALT_LENGTH];
+        headerBuffer.get(streamSalt);
+        byte[] noncePrefix = new byte[STREAM_NONCE_PREFIX_LENGTH];
+        headerBuffer.get(noncePrefix);
+
+        SecretKey subkey = deriveStreamKey(context, key, streamSalt);
+        Cipher cipher = context.cipher();
+
+        ByteBuffer sealed = ByteBuffer.allocateDirect(segmentSize + GCM_TAG_BYTES + 1);
+        ByteBuffer plain = ByteBuffer.allocateDirect(segmentSize);
+        long total = 0;
+        try {
+            int segment = 0;
+            boolean isFinal = false;
+            while (!isFinal) {
+                isFinal = !readFully(source, sealed);
+                sealed.flip();
+                int available = sealed.limit();
+                if (!isFinal) sealed.limit(segmentSize + GCM_TAG_BYTES);
+                if (sealed.remaining() < GCM_TAG_BYTES) {
+                    throw new GeneralSecurityException("Encrypted stream is truncated");
+                }
+
+                cipher.init(Cipher.DECRYPT_MODE, subkey, streamNonce(noncePrefix, segment++, isFinal));
+                cipher.updateAAD(header);
+                plain.clear();
+                cipher.doFinal(sealed, plain);
+                total += plain.flip().remaining();
+                writeFully(target, plain);
+
+                // Carry the byte read ahead over to the next segment
+                sealed.limit(available);
+                sealed.compact();
+            }
+        } finally {
+            wipeSensitiveData(plain);
         }
 
-        return pwdArr;
+        this.contexts.release(context);
+        event.commit("decryptStream", (int) Math.min(total, Integer.MAX_VALUE), 0);
+        DECRYPT_STREAM_TIMER.recordSince(start);
+        return total;
+    }
+
+    @Override
+    public long encrypt(InputStream source, OutputStream target, VaultKey key) throws IOException, GeneralSecurityException {
+        return encrypt(Channels.newChannel(source), Channels.newChannel(target), key);
+    }
+
+    @Override
+    public long decrypt(InputStream source, OutputStream target, VaultKey key) throws IOException, GeneralSecurityException {
+        return decrypt(Channels.newChannel(source), Channels.newChannel(target), key);
+    }
+
+    @Override
+    public boolean isKeyEncrypted(byte[] encryptedData) {
+        if (encryptedData == null || encryptedData.length < KEYED_FORMAT_MAGIC.length + SALT_LENGTH + IV_LENGTH) {
+            return false;
+        }
+
+        return Arrays.equals(
+            encryptedData, 0, KEYED_FORMAT_MAGIC.length,
+            KEYED_FORMAT_MAGIC, 0, KEYED_FORMAT_MAGIC.length
+        );
+    }
+
+    @Override
+    public VaultHeader generateVaultHeader() {
+        return generateVaultHeader(ITERATIONS);
+    }
+
+    @Override
+    public VaultHeader generateVaultHeader(int iterations) {
+        if (iterations < MIN_ITERATIONS || iterations > MAX_ITERATIONS) {
+            throw new IllegalArgumentException("Iterations must be between " + MIN_ITERATIONS + " and " + MAX_ITERATIONS);
+        }
+
+        byte[] salt = new byte[SALT_LENGTH];
+        this.secureRandom.nextBytes(salt);
+        return new VaultHeader(salt, iterations);
+    }
+
+    /**
+     * Measures PBKDF2 on this machine and picks the iteration count that takes about the target time.
+     * The fastest of a few probe rounds is used, so the first rounds also warm up the JIT.
+     */
+    @Override
+    public int calibrateIterations(long targetMillis) throws GeneralSecurityException {
+        if (targetMillis <= 0) {
+            throw new IllegalArgumentException("Target time must be positive");
+        }
+
+        char[] password = "calibration".toCharArray();
+        byte[] salt = new byte[SALT_LENGTH];
+        this.secureRandom.nextBytes(salt);
+
+        CryptoContext context = this.contexts.acquire();
+        long fastestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            long start = System.nanoTime();
+            deriveKey(context, password, salt, CALIBRATION_ITERATIONS);
+            fastestNanos = Math.min(fastestNanos, System.nanoTime() - start);
+        }
+        this.contexts.release(context);
+
+        double nanosPerIteration = (double) Math.max(1, fastestNanos) / CALIBRATION_ITERATIONS;
+        long iterations = (long) (targetMillis * 1_000_000.0 / nanosPerIteration);
+
+        // Round to a readable value and keep it within sane bounds
+        iterations = iterations / 1000 * 1000;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+    }
+
+    @Override
+    public VaultKey deriveVaultKey(char[] password, VaultHeader header) throws GeneralSecurityException {
+        if (password == null || password.length == 0) {
+            throw new IllegalArgumentException("Password cannot be null or empty");
+        }
+
+        try {
+            CryptoContext context = this.contexts.acquire();
+            SecretKey key = deriveKey(context, password, header.getSalt(), header.getIterations());
+            this.contexts.release(context);
+            return new VaultKey(key.getEncoded());
+        } finally {
+            // Clean up sensitive data
+            wipeSensitiveData(password);
+        }
+    }
+
+    @Override
+    public VaultKey deriveSubkey(VaultKey key, String purpose, byte[] salt) throws GeneralSecurityException {
+        if (purpose == null || purpose.isEmpty()) {
+            throw new IllegalArgumentException("Purpose cannot be null or empty");
+        }
+
+        CryptoContext context = this.contexts.acquire();
+        VaultKey subkey = new VaultKey(hkdfExpand(context, key, purpose.getBytes(StandardCharsets.UTF_8), salt));
+        this.contexts.release(context);
+        return subkey;
+    }
+
+    @Override
+    public char[] generateSecurePassword(int length, boolean includeSpecialChars) throws GeneralSecurityException {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Password length must be positive");
+        }
+
+        return passwordGenerator(PasswordPolicy.of(length, includeSpecialChars)).generate();
+    }
+
+    @Override
+    public PasswordGenerator passwordGenerator(PasswordPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Policy cannot be null");
+        }
+
+        // Generators hold the compiled tables of their policy, so they are kept per policy.
+        // Each call borrows a pooled context and draws from its DRBG, not from a shared generator.
+        return this.passwordGenerators.computeIfAbsent(policy, key -> new PasswordGenerator(key, this.contexts));
     }
 
     @Override
@@ -128,8 +502,9 @@ public class AESCryptoService implements CryptoService {
             throw new IllegalArgumentException("Password cannot be null or empty");
         }
 
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hash = digest.digest(new String(password).getBytes(StandardCharsets.UTF_8));
+        CryptoContext context = this.contexts.acquire();
+        byte[] hash = context.digest().digest(new String(password).getBytes(StandardCharsets.UTF_8));
+        this.contexts.release(context);
 
         // Clean up sensitive data
         wipeSensitiveData(password);
@@ -139,15 +514,118 @@ public class AESCryptoService implements CryptoService {
 
     // Auxiliary methods
 
-    private SecretKey deriveKey(char[] password, byte[] salt) throws GeneralSecurityException {
-        PBEKeySpec spec = new PBEKeySpec(password, salt, ITERATIONS, KEY_LENGTH);
+    private SecretKey deriveKey(CryptoContext context, char[] password, byte[] salt) throws GeneralSecurityException {
+        return deriveKey(context, password, salt, ITERATIONS);
+    }
+
+    private SecretKey deriveKey(CryptoContext context, char[] password, byte[] salt, int iterations) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        CryptoEvent event = new CryptoEvent();
+        event.begin();
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, KEY_LENGTH);
         try {
-            SecretKeyFactory factory = SecretKeyFactory.getInstance(KEY_DERIVATION_ALGORITHM);
-            byte[] keyBytes = factory.generateSecret(spec).getEncoded();
+            byte[] keyBytes = context.keyFactory().generateSecret(spec).getEncoded();
             return new SecretKeySpec(keyBytes, "AES");
         } finally {
             spec.clearPassword();
+            event.commit("kdf", 0, iterations);
+            KDF_TIMER.recordSince(start);
+        }
+    }
+
+    /**
+     * Decrypts the cipher text that follows the header straight into an off-heap buffer.
+     */
+    private SecretBuffer doFinalToBuffer(Cipher cipher, byte[] encryptedData, int offset) throws GeneralSecurityException {
+        ByteBuffer cipherText = ByteBuffer.wrap(encryptedData, offset, encryptedData.length - offset);
+        SecretBuffer plain = SecretBuffer.allocate(cipher.getOutputSize(cipherText.remaining()));
+
+        try {
+            ByteBuffer out = plain.writable();
+            cipher.doFinal(cipherText, out);
+            plain.setLength(out.position());
+            return plain;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            plain.destroy();
+            throw e;
+        }
+    }
+
+    private SecretKey deriveEntryKey(CryptoContext context, VaultKey key, byte[] entrySalt) throws GeneralSecurityException {
+        byte[] keyBytes = hkdfExpand(context, key, ENTRY_KEY_INFO, entrySalt);
+
+        try {
+            return new SecretKeySpec(keyBytes, "AES");
+        } finally {
+            wipeSensitiveData(keyBytes);
+        }
+    }
+
+    private SecretKey deriveStreamKey(CryptoContext context, VaultKey key, byte[] streamSalt) throws GeneralSecurityException {
+        byte[] keyBytes = hkdfExpand(context, key, STREAM_KEY_INFO, streamSalt);
+
+        try {
+            return new SecretKeySpec(keyBytes, "AES");
+        } finally {
+            wipeSensitiveData(keyBytes);
+        }
+    }
+
+    private static byte[] encodeStreamHeader(int segmentSize, byte[] streamSalt, byte[] noncePrefix) {
+        return ByteBuffer.allocate(STREAM_HEADER_LENGTH)
+            .put(STREAM_FORMAT_MAGIC)
+            .putInt(segmentSize)
+            .put(streamSalt)
+            .put(noncePrefix)
+            .array();
+    }
+
+    /**
+     * Builds the nonce of a segment from the stream's prefix, the segment index and whether it is the last one.
+     */
+    private static GCMParameterSpec streamNonce(byte[] noncePrefix, int segment, boolean isFinal) throws GeneralSecurityException {
+        if (segment < 0) {
+            throw new GeneralSecurityException("Stream exceeds the maximum number of segments");
         }
+
+        ByteBuffer nonce = ByteBuffer.allocate(IV_LENGTH);
+        nonce.put(noncePrefix);
+        nonce.putInt(segment);
+        nonce.put((byte) (isFinal ? 1 : 0));
+        return new GCMParameterSpec(GCM_TAG_LENGTH, nonce.array());
+    }
+
+    /**
+     * Reads until the buffer is full or the channel ends.
+     *
+     * @return true if the buffer was filled, false if the channel ended first.
+     */
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) return false;
+        }
+        return true;
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Expands a 256-bit subkey from the vault key using HKDF-Expand (RFC 5869) with HMAC-SHA256.
+     * The vault key is already uniformly distributed, so it is used directly as the pseudorandom key.
+     */
+    private byte[] hkdfExpand(CryptoContext context, VaultKey key, byte[] info, byte[] salt) throws GeneralSecurityException {
+        Mac mac = context.mac();
+        mac.init(new SecretKeySpec(key.bytes(), HKDF_ALGORITHM));
+
+        // A single HMAC block covers the 256-bit subkey
+        mac.update(info);
+        mac.update(salt);
+        mac.update((byte) 1);
+        return mac.doFinal();
     }
 
     private void wipeSensitiveData(char[] data) {
@@ -160,6 +638,12 @@ public class AESCryptoService implements CryptoService {
             Arrays.fill(data, (byte) 0);
     }
 
+    private void wipeSensitiveData(ByteBuffer data) {
+        ByteBuffer view = data.duplicate().clear();
+        while (view.remaining() >= Long.BYTES) view.putLong(0L);
+        while (view.hasRemaining()) view.put((byte) 0);
+    }
+
     private String bytesToHex(byte[] bytes) {
         StringBuilder sb = new StringBuilder(bytes.length * 2);
         for (byte b : bytes) {
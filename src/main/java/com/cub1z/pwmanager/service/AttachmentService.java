@@ -0,0 +1,485 @@
+package com.cub1z.pwmanager.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.cub1z.pwmanager.config.FilePath;
+import com.cub1z.pwmanager.metrics.Metrics;
+import com.cub1z.pwmanager.metrics.Timer;
+import com.cub1z.pwmanager.model.Attachment;
+import com.cub1z.pwmanager.repository.BlobStore;
+
+/**
+ * Stores files attached to password entries in a blob store beside the vault, so attachments
+ * never inflate the vault file. Each blob is named after a keyed hash of its content, hence
+ * identical attachments are stored once, and is only read when the attachment is requested.
+ *
+ * Blobs and the index of attachments are encrypted with a random store key, which the manifest
+ * keeps wrapped with the vault key. Re-keying the vault only re-wraps the store key.
+ *
+ * The index is loaded on first use and kept until the store is locked.
+ */
+public class AttachmentService {
+    private static final byte[] MANIFEST_MAGIC = { 'P', 'W', 'A', 'M' };
+    private static final int MANIFEST_VERSION = 1;
+    private static final String BLOB_ID_PURPOSE = "pwmanager/attachment/id";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int STORE_KEY_LENGTH = 32;
+
+    private static final Timer ATTACH_TIMER = Metrics.timer("attachment.attach");
+    private static final Timer READ_TIMER = Metrics.timer("attachment.read");
+
+    private final CryptoService cryptoService;
+    private final BlobStore blobStore;
+    private final SecureRandom secureRandom;
+    private VaultKey storeKey;
+    private Map<String, Map<String, Attachment>> index;
+    private boolean persisted;
+
+    public AttachmentService(CryptoService cryptoService, Path directory) {
+        this.cryptoService = cryptoService;
+        this.blobStore = new BlobStore(directory);
+        this.secureRandom = new SecureRandom();
+    }
+
+    public AttachmentService(CryptoService cryptoService) {
+        this(cryptoService, FilePath.getAttachmentsDefault());
+    }
+
+    /**
+     * Encrypts content into the store and attaches it to an entry, replacing the attachment
+     * with the same name. Content already stored for any entry is not stored again.
+     *
+     * @param serviceName The name of the entry.
+     * @param name The name of the attachment.
+     * @param content The content, read until its end.
+     * @param key The vault key.
+     * @return The new attachment.
+     * @throws IllegalArgumentException If the service name or attachment name is null or empty.
+     * @throws IOException If there is an error reading the content or writing the store.
+     * @throws GeneralSecurityException If the store key cannot be unwrapped with the vault key.
+     */
+    public synchronized Attachment attach(
+        String serviceName, String name, ReadableByteChannel content, VaultKey key
+    ) throws IllegalArgumentException, IOException, GeneralSecurityException {
+        if (serviceName == null || serviceName.isEmpty()) throw new IllegalArgumentException("Service name cannot be null or empty");
+        if (name == null || name.isEmpty()) throw new IllegalArgumentException("Attachment name cannot be null or empty");
+
+        long start = System.nanoTime();
+        this.load(key);
+        Mac mac = this.blobIdMac();
+
+        // The content is hashed as it streams through the cipher, the blob is named once it is written
+        Path pendingPath = this.blobStore.createPending();
+        long size;
+        try (FileChannel out = FileChannel.open(pendingPath, StandardOpenOption.WRITE)) {
+            size = this.cryptoService.encrypt(new HashingChannel(content, mac), out, this.storeKey);
+            out.force(true);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            this.blobStore.discard(pendingPath);
+            throw e;
+        }
+
+        String blobId = HexFormat.of().formatHex(mac.doFinal());
+        this.blobStore.commit(pendingPath, blobId);
+
+        Attachment attachment = new Attachment(name, blobId, size);
+        Map<String, Attachment> attachments = this.index.computeIfAbsent(serviceName, k -> new LinkedHashMap<>());
+        Attachment previous = attachments.put(name, attachment);
+        try {
+            this.saveManifest(key);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            if (previous != null) attachments.put(name, previous); else attachments.remove(name);
+            throw e;
+        }
+
+        // A replaced blob may no longer be referenced by any entry
+        if (previous != null) this.deleteUnreferencedBlobs();
+
+        ATTACH_TIMER.recordSince(start);
+        return attachment;
+    }
+
+    /**
+     * Lists the attachments of an entry, without reading any blob.
+     *
+     * @param serviceName The name of the entry.
+     * @param key The vault key.
+     * @return The attachments, in the order they were added.
+     * @throws IOException If the manifest cannot be read.
+     * @throws GeneralSecurityException If the store key cannot be unwrapped with the vault key.
+     */
+    public synchronized List<Attachment> list(String serviceName, VaultKey key) throws IOException, GeneralSecurityException {
+        this.load(key);
+        return List.copyOf(this.index.getOrDefault(serviceName, Map.of()).values());
+    }
+
+    /**
+     * Decrypts the content of an attachment, streaming it from its blob. On failure,
+     * part of the content may already have been written and must be discarded.
+     *
+     * @param serviceName The name of the entry.
+     * @param name The name of the attachment.
+     * @param target The channel the content is written to.
+     * @param key The vault key.
+     * @return The number of bytes written.
+     * @throws IllegalArgumentException If the entry has no attachment with that name.
+     * @throws IOException If the blob is missing or cannot be read.
+     * @throws GeneralSecurityException If the blob was tampered with or the store key cannot be unwrapped.
+     */
+    public synchronized long read(
+        String serviceName, String name, WritableByteChannel target, VaultKey key
+    ) throws IllegalArgumentException, IOException, GeneralSecurityException {
+        long start = System.nanoTime();
+        this.load(key);
+
+        Attachment attachment = this.index.getOrDefault(serviceName, Map.of()).get(name);
+        if (attachment == null) {
+            throw new IllegalArgumentException("No attachment '" + name + "' found for service: " + serviceName);
+        }
+
+        try (FileChannel in = this.blobStore.open(attachment.blobId())) {
+            return this.cryptoService.decrypt(in, target, this.storeKey);
+        } finally {
+            READ_TIMER.recordSince(start);
+        }
+    }
+
+    /**
+     * Removes an attachment and deletes its blob if no other entry references it.
+     *
+     * @param serviceName The name of the entry.
+     * @param name The name of the attachment.
+     * @param key The vault key.
+     * @return true if the attachment was removed, false if there was none.
+     * @throws IOException If there is an error writing the store.
+     * @throws GeneralSecurityException If the store key cannot be unwrapped with the vault key.
+     */
+    public synchronized boolean detach(String serviceName, String name, VaultKey key) throws IOException, GeneralSecurityException {
+        this.load(key);
+
+        Map<String, Attachment> attachments = this.index.get(serviceName);
+        if (attachments == null || !attachments.containsKey(name)) return false;
+
+        Map<String, Attachment> previous = new LinkedHashMap<>(attachments);
+        attachments.remove(name);
+        if (attachments.isEmpty()) this.index.remove(serviceName);
+        this.saveOrRestore(Map.of(serviceName, previous), key);
+
+        this.deleteUnreferencedBlobs();
+        return true;
+    }
+
+    /**
+     * Removes every attachment of an entry, typically when the entry is deleted.
+     *
+     * @param serviceName The name of the entry.
+     * @param key The vault key.
+     * @return The number of removed attachments.
+     * @throws IOException If there is an error writing the store.
+     * @throws GeneralSecurityException If the store key cannot be unwrapped with the vault key.
+     */
+    public synchronized int detachAll(String serviceName, VaultKey key) throws IOException, GeneralSecurityException {
+        return this.detachAll(Collections.singleton(serviceName), key);
+    }
+
+    /**
+     * Removes every attachment of several entries with a single manifest write, typically when
+     * the entries are replaced by imported ones.
+     *
+     * @param serviceNames The names of the entries.
+     * @param key The vault key.
+     * @return The number of removed attachments.
+     * @throws IOException If there is an error writing the store.
+     * @throws GeneralSecurityException If the store key cannot be unwrapped with the vault key.
+     */
+    public synchronized int detachAll(Collection<String> serviceNames, VaultKey key) throws IOException, GeneralSecurityException {
+        if (this.isUnused()) return 0;
+        this.load(key);
+
+        Map<String, Map<String, Attachment>> removed = new LinkedHashMap<>();
+        for (String serviceName : serviceNames) {
+            Map<String, Attachment> previous = this.index.remove(serviceName);
+            if (previous != null) removed.put(serviceName, previous);
+        }
+        if (removed.isEmpty()) return 0;
+
+        this.saveOrRestore(removed, key);
+        this.deleteUnreferencedBlobs();
+        return countAttachments(removed);
+    }
+
+    /**
+     * Drops the attachments of entries that no longer exist, such as those of an entry deleted
+     * while the store could not be written, then deletes the blobs no attachment references
+     * and files left over by interrupted writes.
+     *
+     * @param exists Tells whether the vault has an entry with the given service name.
+     * @param key The vault key.
+     * @return The number of deleted files.
+     * @throws IOException If there is an error writing the store, or listing or deleting the files.
+     * @throws GeneralSecurityException If the store key cannot be unwrapped with the vault key.
+     */
+    public synchronized int collectGarbage(Predicate<String> exists, VaultKey key) throws IOException, GeneralSecurityException {
+        this.load(key);
+
+        Map<String, Map<String, Attachment>> removed = new LinkedHashMap<>();
+        this.index.entrySet().removeIf(entry -> {
+            if (exists.test(entry.getKey())) return false;
+            removed.put(entry.getKey(), entry.getValue());
+            return true;
+        });
+        if (!removed.isEmpty()) this.saveOrRestore(removed, key);
+
+        return this.deleteUnreferencedBlobs();
+    }
+
+    /**
+     * Rewrites the manifest with the store key wrapped with each of the given keys, so any of
+     * them opens the store. While the vault is re-keyed, wrapping with both the current and
+     * the new key keeps the attachments readable whichever way the re-key settles.
+     *
+     * @param key The vault key that currently opens the store.
+     * @param wrappingKeys The vault keys that open the store afterwards.
+     * @throws IOException If the manifest cannot be written.
+     * @throws GeneralSecurityException If the store key cannot be unwrapped with the vault key.
+     */
+    public synchronized void rewrap(VaultKey key, VaultKey... wrappingKeys) throws IOException, GeneralSecurityException {
+        if (wrappingKeys.length == 0) throw new IllegalArgumentException("At least one wrapping key is required");
+
+        // Nothing to re-wrap until the first attachment is stored
+        if (this.isUnused()) return;
+
+        this.load(key);
+        this.saveManifest(wrappingKeys);
+    }
+
+    /**
+     * Wipes the store key and drops the index, until the next call with a vault key.
+     */
+    public synchronized void lock() {
+        if (this.storeKey != null) {
+            this.storeKey.destroy();
+            this.storeKey = null;
+        }
+        this.index = null;
+    }
+
+    // Auxiliary methods
+
+    private void load(VaultKey key) throws IOException, GeneralSecurityException {
+        if (this.index != null) return;
+
+        Optional<byte[]> manifest = this.blobStore.readManifest();
+        if (manifest.isEmpty()) {
+            // A new store, its manifest is written with the first attachment
+            byte[] keyBytes = new byte[STORE_KEY_LENGTH];
+            this.secureRandom.nextBytes(keyBytes);
+            this.storeKey = new VaultKey(keyBytes);
+            this.index = new LinkedHashMap<>();
+            this.persisted = false;
+            return;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(manifest.get()));
+        byte[] magic = in.readNBytes(MANIFEST_MAGIC.length);
+        if (!Arrays.equals(magic, MANIFEST_MAGIC)) throw new IOException("Not an attachment manifest");
+
+        int version = in.readInt();
+        if (version > MANIFEST_VERSION) throw new IOException("Unsupported attachment manifest version " + version);
+
+        VaultKey unwrapped = null;
+        int wrappedKeys = in.readUnsignedShort();
+        for (int i = 0; i < wrappedKeys; i++) {
+            int length = in.readInt();
+            if (length < 0 || length > in.available()) throw new IOException("Attachment manifest is truncated");
+
+            byte[] wrapped = in.readNBytes(length);
+            if (unwrapped != null) continue;
+            try {
+                unwrapped = this.unwrap(wrapped, key);
+            } catch (GeneralSecurityException e) {
+                // Wrapped with another vault key
+            }
+        }
+        if (unwrapped == null) throw new GeneralSecurityException("Attachment store cannot be opened with the vault key");
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try {
+            this.cryptoService.decrypt(in, plain, unwrapped);
+            this.index = decodeIndex(plain.toByteArray());
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            unwrapped.destroy();
+            throw e;
+        }
+
+        this.storeKey = unwrapped;
+        this.persisted = true;
+    }
+
+    private boolean isUnused() {
+        return this.index == null ? !this.blobStore.hasManifest() : !this.persisted;
+    }
+
+    private void saveOrRestore(
+        Map<String, Map<String, Attachment>> previous, VaultKey key
+    ) throws IOException, GeneralSecurityException {
+        try {
+            this.saveManifest(key);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            this.index.putAll(previous);
+            throw e;
+        }
+    }
+
+    private int deleteUnreferencedBlobs() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        this.index.values().forEach(attachments -> attachments.values().forEach(a -> referenced.add(a.blobId())));
+        return this.blobStore.retainAll(referenced);
+    }
+
+    private static int countAttachments(Map<String, Map<String, Attachment>> index) {
+        return index.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private void saveManifest(VaultKey... wrappingKeys) throws IOException, GeneralSecurityException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.write(MANIFEST_MAGIC);
+        out.writeInt(MANIFEST_VERSION);
+        out.writeShort(wrappingKeys.length);
+        for (VaultKey wrappingKey : wrappingKeys) {
+            byte[] wrapped = this.wrap(wrappingKey);
+            out.writeInt(wrapped.length);
+            out.write(wrapped);
+        }
+        this.cryptoService.encrypt(new ByteArrayInputStream(encodeIndex(this.index)), out, this.storeKey);
+
+        this.blobStore.writeManifest(bytes.toByteArray());
+        this.persisted = true;
+    }
+
+    private byte[] wrap(VaultKey wrappingKey) throws GeneralSecurityException {
+        try (SecretBuffer plain = SecretBuffer.allocate(STORE_KEY_LENGTH)) {
+            plain.writable().put(this.storeKey.bytes());
+            plain.setLength(STORE_KEY_LENGTH);
+            return this.cryptoService.encrypt(plain, wrappingKey);
+        }
+    }
+
+    private VaultKey unwrap(byte[] wrapped, VaultKey key) throws GeneralSecurityException {
+        try (SecretBuffer plain = this.cryptoService.decryptToBuffer(wrapped, key)) {
+            if (plain.length() != STORE_KEY_LENGTH) throw new GeneralSecurityException("Invalid attachment store key");
+
+            byte[] keyBytes = new byte[STORE_KEY_LENGTH];
+            plain.readable().get(keyBytes);
+            return new VaultKey(keyBytes);
+        }
+    }
+
+    private Mac blobIdMac() throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        try (VaultKey idKey = this.cryptoService.deriveSubkey(this.storeKey, BLOB_ID_PURPOSE, new byte[0])) {
+            mac.init(new SecretKeySpec(idKey.bytes(), MAC_ALGORITHM));
+        }
+        return mac;
+    }
+
+    private static byte[] encodeIndex(Map<String, Map<String, Attachment>> index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(index.size());
+        for (Map.Entry<String, Map<String, Attachment>> entry : index.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (Attachment attachment : entry.getValue().values()) {
+                out.writeUTF(attachment.name());
+                out.writeUTF(attachment.blobId());
+                out.writeLong(attachment.size());
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, Map<String, Attachment>> decodeIndex(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        Map<String, Map<String, Attachment>> index = new LinkedHashMap<>();
+
+        int services = in.readInt();
+        for (int i = 0; i < services; i++) {
+            String serviceName = in.readUTF();
+            int count = in.readInt();
+            Map<String, Attachment> attachments = new LinkedHashMap<>();
+            for (int j = 0; j < count; j++) {
+                Attachment attachment = new Attachment(in.readUTF(), in.readUTF(), in.readLong());
+                attachments.put(attachment.name(), attachment);
+            }
+            index.put(serviceName, attachments);
+        }
+
+        return index;
+    }
+
+    /**
+     * Feeds every byte read from a channel into a MAC on its way to the reader.
+     */
+    private static class HashingChannel implements ReadableByteChannel {
+        private final ReadableByteChannel source;
+        private final Mac mac;
+
+        HashingChannel(ReadableByteChannel source, Mac mac) {
+            this.source = source;
+            this.mac = mac;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            int start = destination.position();
+            int read = this.source.read(destination);
+            if (read > 0) {
+                ByteBuffer added = destination.duplicate();
+                added.limit(added.position()).position(start);
+                this.mac.update(added);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.source.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.source.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.cub1z.pwmanager.service;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+
+/**
+ * Crypto primitives looked up once and reused, so the hot paths skip provider lookups
+ * and every worker draws from its own random generator instead of a shared one.
+ *
+ * A context is used by one thread at a time. Contexts are borrowed from a {@link Pool}
+ * rather than kept per thread, so short-lived virtual threads reuse them too.
+ */
+final class CryptoContext {
+    private final Cipher cipher;
+    private final Mac mac;
+    private final SecretKeyFactory keyFactory;
+    private final MessageDigest digest;
+    private final SecureRandom random;
+
+    private CryptoContext(
+        String cipherAlgorithm, String macAlgorithm, String keyFactoryAlgorithm, String digestAlgorithm
+    ) throws GeneralSecurityException {
+        this.cipher = Cipher.getInstance(cipherAlgorithm);
+        this.mac = Mac.getInstance(macAlgorithm);
+        this.keyFactory = SecretKeyFactory.getInstance(keyFactoryAlgorithm);
+        this.digest = MessageDigest.getInstance(digestAlgorithm);
+        this.random = newRandom();
+    }
+
+    // Getters
+
+    Cipher cipher() {
+        return cipher;
+    }
+
+    Mac mac() {
+        return mac;
+    }
+
+    SecretKeyFactory keyFactory() {
+        return keyFactory;
+    }
+
+    MessageDigest digest() {
+        return digest;
+    }
+
+    SecureRandom random() {
+        return random;
+    }
+
+    // Auxiliary methods
+
+    private static SecureRandom newRandom() {
+        try {
+            // A DRBG instance per context, each seeded on its own
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    /**
+     * Hands out idle contexts, creating new ones when none is idle. At most a bounded
+     * number of idle contexts is kept, the others are dropped when released.
+     *
+     * A context must be released only after a successful operation; one that saw
+     * an exception is simply not released, so a half-used primitive is never reused.
+     */
+    static final class Pool {
+        private final String cipherAlgorithm;
+        private final String macAlgorithm;
+        private final String keyFactoryAlgorithm;
+        private final String digestAlgorithm;
+        private final int capacity;
+        private final ConcurrentLinkedDeque<CryptoContext> idle;
+        private final AtomicInteger idleCount;
+
+        Pool(String cipherAlgorithm, String macAlgorithm, String keyFactoryAlgorithm, String digestAlgorithm, int capacity) {
+            if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+
+            this.cipherAlgorithm = cipherAlgorithm;
+            this.macAlgorithm = macAlgorithm;
+            this.keyFactoryAlgorithm = keyFactoryAlgorithm;
+            this.digestAlgorithm = digestAlgorithm;
+            this.capacity = capacity;
+            this.idle = new ConcurrentLinkedDeque<>();
+            this.idleCount = new AtomicInteger();
+        }
+
+        CryptoContext acquire() throws GeneralSecurityException {
+            // Most recently released first, its primitives are the likeliest to be in cache
+            CryptoContext context = this.idle.pollFirst();
+            if (context != null) {
+                this.idleCount.decrementAndGet();
+                return context;
+            }
+
+            return new CryptoContext(this.cipherAlgorithm, this.macAlgorithm, this.keyFactoryAlgorithm, this.digestAlgorithm);
+        }
+
+        void release(CryptoContext context) {
+            if (this.idleCount.incrementAndGet() <= this.capacity) {
+                this.idle.offerFirst(context);
+            } else {
+                this.idleCount.decrementAndGet();
+            }
+        }
+    }
+}
@@ -1,10 +1,32 @@
 package com.cub1z.pwmanager.service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.GeneralSecurityException;
 
+import com.cub1z.pwmanager.model.VaultHeader;
+
 public interface CryptoService {
     byte[] encrypt(char[] plainData, char[] password) throws GeneralSecurityException;
     char[] decrypt(byte[] encryptedData, char[] password) throws GeneralSecurityException;
+    byte[] encrypt(char[] plainData, VaultKey key) throws GeneralSecurityException;
+    char[] decrypt(byte[] encryptedData, VaultKey key) throws GeneralSecurityException;
+    byte[] encrypt(SecretBuffer plainData, VaultKey key) throws GeneralSecurityException;
+    SecretBuffer decryptToBuffer(byte[] encryptedData, VaultKey key) throws GeneralSecurityException;
+    long encrypt(ReadableByteChannel source, WritableByteChannel target, VaultKey key) throws IOException, GeneralSecurityException;
+    long decrypt(ReadableByteChannel source, WritableByteChannel target, VaultKey key) throws IOException, GeneralSecurityException;
+    long encrypt(InputStream source, OutputStream target, VaultKey key) throws IOException, GeneralSecurityException;
+    long decrypt(InputStream source, OutputStream target, VaultKey key) throws IOException, GeneralSecurityException;
+    boolean isKeyEncrypted(byte[] encryptedData);
+    VaultHeader generateVaultHeader();
+    VaultHeader generateVaultHeader(int iterations);
+    int calibrateIterations(long targetMillis) throws GeneralSecurityException;
+    VaultKey deriveVaultKey(char[] password, VaultHeader header) throws GeneralSecurityException;
+    VaultKey deriveSubkey(VaultKey key, String purpose, byte[] salt) throws GeneralSecurityException;
     char[] generateSecurePassword(int length, boolean includeSpecialChars) throws GeneralSecurityException;
+    PasswordGenerator passwordGenerator(PasswordPolicy policy);
     String hashPassword(char[] password) throws GeneralSecurityException;
-}
\ No newline at end of file
+}
@@ -0,0 +1,193 @@
+package com.cub1z.pwmanager.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.utils.CsvReader;
+
+/**
+ * Imports credential dumps exported as CSV by browsers and other password managers.
+ * The input is parsed as a stream, rows are encrypted in parallel in fixed-size chunks,
+ * and the whole import is handed to the sink once, so the vault is written a single time.
+ *
+ * The header row decides the columns. Recognised names, case-insensitive:
+ * <pre>
+ * name:     name, title, service
+ * url:      url, login_uri, website
+ * username: username, login_username, login
+ * password: password, login_password
+ * </pre>
+ *
+ * The service name is the name column, or the host of the url when there is none, followed by
+ * the username in parentheses when there is one, so several accounts on one site do not collide.
+ */
+public class CsvImportService {
+    private static final int CHUNK_SIZE = 512;
+    private static final List<String> NAME_COLUMNS = List.of("name", "title", "service");
+    private static final List<String> URL_COLUMNS = List.of("url", "login_uri", "website");
+    private static final List<String> USERNAME_COLUMNS = List.of("username", "login_username", "login");
+    private static final List<String> PASSWORD_COLUMNS = List.of("password", "login_password");
+
+    private final CryptoService cryptoService;
+
+    /**
+     * Receives the progress of an import after every chunk of rows.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(long rowsRead, long failed);
+    }
+
+    public record RowError(long line, String serviceName, String message) {}
+
+    public record Report(int imported, List<RowError> errors) {}
+
+    private record Row(long line, String serviceName, char[] password) {}
+
+    private record Encrypted(Row row, PasswordEntry entry, String error) {}
+
+    public CsvImportService(CryptoService cryptoService) {
+        if (cryptoService == null) throw new IllegalArgumentException("Crypto service cannot be null");
+        this.cryptoService = cryptoService;
+    }
+
+    /**
+     * Parses and encrypts every row of a CSV dump, then commits the valid ones in one batch.
+     * Invalid rows are reported and skipped, they never abort the import.
+     *
+     * @param input The CSV stream, with a header row.
+     * @param key The vault key the passwords are encrypted with.
+     * @param isTaken Tells whether a service name already exists in the vault and must be skipped,
+     *                or null to import over existing entries.
+     * @param listener Receives the progress, or null.
+     * @param sink Receives all the encrypted entries at once, unless there are none.
+     * @return The number of imported entries and the errors of the rejected rows.
+     * @throws IllegalArgumentException If the header has no password column or no name or url column.
+     * @throws IOException If there is an error reading the input or committing the entries.
+     */
+    public Report importCsv(
+        Reader input, VaultKey key, Predicate<String> isTaken,
+        ProgressListener listener, VaultArchiveService.EntryBatchSink sink
+    ) throws IllegalArgumentException, IOException {
+        Objects.requireNonNull(key, "Vault key cannot be null");
+        Objects.requireNonNull(sink, "Sink cannot be null");
+
+        CsvReader reader = new CsvReader(input);
+        List<String> header = reader.readRecord();
+        if (header == null) return new Report(0, List.of());
+
+        int nameColumn = findColumn(header, NAME_COLUMNS);
+        int urlColumn = findColumn(header, URL_COLUMNS);
+        int usernameColumn = findColumn(header, USERNAME_COLUMNS);
+        int passwordColumn = findColumn(header, PASSWORD_COLUMNS);
+        if (passwordColumn < 0 || (nameColumn < 0 && urlColumn < 0)) {
+            throw new IllegalArgumentException("CSV header needs a password column and a name or url column");
+        }
+
+        List<PasswordEntry> entries = new ArrayList<>();
+        List<RowError> errors = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+        long rowsRead = 0;
+
+        List<String> record;
+        long line = reader.getLineNumber();
+        while ((record = reader.readRecord()) != null) {
+            rowsRead++;
+            if (!(record.size() == 1 && record.get(0).isBlank())) {
+                String serviceName = serviceName(
+                    field(record, nameColumn), field(record, urlColumn), field(record, usernameColumn)
+                );
+                // Passwords are taken verbatim, surrounding spaces included
+                String password = passwordColumn < record.size() ? record.get(passwordColumn) : "";
+
+                if (serviceName.isEmpty()) errors.add(new RowError(line, null, "Missing service name"));
+                else if (password.isEmpty()) errors.add(new RowError(line, serviceName, "Missing password"));
+                else if (!seen.add(serviceName)) errors.add(new RowError(line, serviceName, "Duplicate service name in file"));
+                else if (isTaken != null && isTaken.test(serviceName)) {
+                    errors.add(new RowError(line, serviceName, "Service name already exists"));
+                } else {
+                    chunk.add(new Row(line, serviceName, password.toCharArray()));
+                }
+            }
+            line = reader.getLineNumber();
+
+            if (chunk.size() == CHUNK_SIZE) {
+                this.encryptChunk(chunk, key, entries, errors);
+                if (listener != null) listener.onProgress(rowsRead, errors.size());
+            }
+        }
+
+        this.encryptChunk(chunk, key, entries, errors);
+        if (listener != null) listener.onProgress(rowsRead, errors.size());
+
+        if (!entries.isEmpty()) sink.accept(entries);
+        return new Report(entries.size(), Collections.unmodifiableList(errors));
+    }
+
+    // Auxiliary methods
+
+    /**
+     * Encrypts a chunk across the common fork-join pool, keeping the rows in input order.
+     */
+    private void encryptChunk(List<Row> chunk, VaultKey key, List<PasswordEntry> entries, List<RowError> errors) {
+        List<Encrypted> results = chunk.parallelStream().map(row -> {
+            try {
+                byte[] encrypted = this.cryptoService.encrypt(row.password(), key);
+                return new Encrypted(row, new PasswordEntry(row.serviceName(), encrypted), null);
+            } catch (GeneralSecurityException | RuntimeException e) {
+                return new Encrypted(row, null, "Encryption failed: " + e.getMessage());
+            } finally {
+                Arrays.fill(row.password(), '\0');
+            }
+        }).toList();
+
+        for (Encrypted result : results) {
+            if (result.entry() != null) entries.add(result.entry());
+            else errors.add(new RowError(result.row().line(), result.row().serviceName(), result.error()));
+        }
+        chunk.clear();
+    }
+
+    private static int findColumn(List<String> header, List<String> names) {
+        for (int i = 0; i < header.size(); i++) {
+            // Exports written on Windows often start with a byte order mark
+            String column = header.get(i).replace("\uFEFF", "").strip().toLowerCase(Locale.ROOT);
+            if (names.contains(column)) return i;
+        }
+        return -1;
+    }
+
+    private static String field(List<String> record, int column) {
+        return column >= 0 && column < record.size() ? record.get(column).strip() : "";
+    }
+
+    private static String serviceName(String name, String url, String username) {
+        String service = name.isEmpty() ? host(url) : name;
+        if (service.isEmpty() || username.isEmpty()) return service;
+        return service + " (" + username + ")";
+    }
+
+    private static String host(String url) {
+        if (url.isEmpty()) return url;
+
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+}
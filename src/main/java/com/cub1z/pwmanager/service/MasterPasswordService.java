@@ -3,10 +3,16 @@ package com.cub1z.pwmanager.service;
 import java.io.IOException;
 import java.nio.file.Path;
 
+import com.cub1z.pwmanager.events.AuthenticationEvent;
+import com.cub1z.pwmanager.metrics.Counter;
+import com.cub1z.pwmanager.metrics.Metrics;
 import com.cub1z.pwmanager.model.MasterPassword;
 import com.cub1z.pwmanager.repository.MasterPasswordRepository;
 
 public class MasterPasswordService {
+    private static final Counter AUTH_ATTEMPTS = Metrics.counter("auth.attempts");
+    private static final Counter AUTH_FAILURES = Metrics.counter("auth.failures");
+
     private final MasterPasswordRepository repository;
     private boolean isAuthenticated = false;
 
@@ -41,10 +47,21 @@ public class MasterPasswordService {
      * @return true if the authentication is successful, false otherwise.
      */
     public boolean authenticate(String encryptedMasterPassword) {
+        AUTH_ATTEMPTS.increment();
+        AuthenticationEvent event = new AuthenticationEvent();
+        event.begin();
+
         MasterPassword storedMasterPassword = repository.getMasterPassword();
-        if (storedMasterPassword == null) return false;
+        if (storedMasterPassword == null) {
+            AUTH_FAILURES.increment();
+            event.commit();
+            return false;
+        }
 
         boolean isAuthenticated = storedMasterPassword.verify(encryptedMasterPassword);
+        if (!isAuthenticated) AUTH_FAILURES.increment();
+        event.succeeded = isAuthenticated;
+        event.commit();
 
         this.isAuthenticated = isAuthenticated;
         return isAuthenticated;
@@ -2,10 +2,19 @@ package com.cub1z.pwmanager.service;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.model.VaultHeader;
+import com.cub1z.pwmanager.repository.EntrySort;
+import com.cub1z.pwmanager.repository.EntryTimestamp;
+import com.cub1z.pwmanager.repository.PageCursor;
 import com.cub1z.pwmanager.repository.PasswordEntryRepository;
+import com.cub1z.pwmanager.repository.SnapshotStore;
 
 public class PasswordEntryService {
     private final PasswordEntryRepository repository;
@@ -31,6 +40,18 @@ public class PasswordEntryService {
         this.repository.saveEntry(entry, overwrite);
     }
 
+    /**
+     * Saves a batch of password entries with a single write.
+     *
+     * @param entries The PasswordEntry objects to save.
+     * @param overwrite If true, allows overwriting existing entries with the same service names.
+     * @throws IllegalArgumentException If an entry is invalid, or if a service name already exists and overwrite is false.
+     * @throws IOException If there is an error writing to the file.
+    */
+    public void saveEntries(Collection<PasswordEntry> entries, boolean overwrite) throws IllegalArgumentException, IOException {
+        this.repository.saveEntries(entries, overwrite);
+    }
+
     /**
      * Retrieves a password entry by its service name.
      *
@@ -42,6 +63,17 @@ public class PasswordEntryService {
         return this.repository.getEntry(serviceName);
     }
 
+    /**
+     * Searches the stored service names by prefix, substring and approximate match.
+     *
+     * @param query The text to search for, case-insensitive.
+     * @param limit The maximum number of results.
+     * @return The matching service names, best matches first.
+    */
+    public List<String> search(String query, int limit) {
+        return this.repository.search(query, limit);
+    }
+
     /**
      * Deletes a password entry by its service name.
      *
@@ -53,6 +85,59 @@ public class PasswordEntryService {
         this.repository.deleteEntry(serviceName);
     }
 
+    /**
+     * Returns a consistent, immutable view of every stored entry without copying it.
+     *
+     * @return The entries at the time of the call.
+    */
+    public Collection<PasswordEntry> snapshot() {
+        return this.repository.snapshot().values();
+    }
+
+    /**
+     * Lazily streams the entries whose timestamp falls in a range, in timestamp order.
+     *
+     * @param timestamp The timestamp to range over.
+     * @param from The inclusive lower bound, or null for no lower bound.
+     * @param to The exclusive upper bound, or null for no upper bound.
+     * @param newestFirst If true, the most recent entries come first.
+     * @param limit The maximum number of entries.
+     * @return The matching entries.
+     * @throws IllegalArgumentException If the timestamp is null or the limit is negative.
+    */
+    public Stream<PasswordEntry> query(
+        EntryTimestamp timestamp, Date from, Date to, boolean newestFirst, long limit
+    ) throws IllegalArgumentException {
+        return this.repository.query(timestamp, from, to, newestFirst, limit);
+    }
+
+    /**
+     * Retrieves one page of entries in the given order.
+     *
+     * @param sort The order of the entries.
+     * @param offset The number of entries to skip.
+     * @param size The maximum number of entries in the page.
+     * @return The entries of the page.
+     * @throws IllegalArgumentException If the sort is null, or the offset or size is negative.
+    */
+    public List<PasswordEntry> getPage(EntrySort sort, long offset, int size) throws IllegalArgumentException {
+        return this.repository.page(sort, offset, size);
+    }
+
+    /**
+     * Retrieves the page of entries that follows a cursor, without walking the previous pages.
+     *
+     * @param sort The order of the entries.
+     * @param after The position of the last entry of the previous page, or null for the first page.
+     * @param size The maximum number of entries in the page.
+     * @return The entries of the page.
+     * @throws IllegalArgumentException If the sort is null, the cursor belongs to another order,
+     *                                  or the size is negative.
+    */
+    public List<PasswordEntry> getPage(EntrySort sort, PageCursor after, int size) throws IllegalArgumentException {
+        return this.repository.page(sort, after, size);
+    }
+
     /**
      * Lists all stored password entries.
      *
@@ -82,4 +167,95 @@ public class PasswordEntryService {
     public int getStoredPasswordCount() {
         return this.repository.count();
     }
+
+    /**
+     * Retrieves the vault header holding the key derivation parameters.
+     *
+     * @return The VaultHeader of this vault, or null if none has been created yet.
+    */
+    public VaultHeader getVaultHeader() {
+        return this.repository.getVaultHeader();
+    }
+
+    /**
+     * Saves the vault header holding the key derivation parameters.
+     *
+     * @param header The VaultHeader to save.
+     * @throws IllegalArgumentException If the header is null.
+     * @throws IOException If there is an error writing to the file.
+    */
+    public void saveVaultHeader(VaultHeader header) throws IllegalArgumentException, IOException {
+        this.repository.saveVaultHeader(header);
+    }
+
+    /**
+     * Takes an incremental snapshot of the vault.
+     *
+     * @return The new snapshot, or empty if nothing changed since the previous one.
+     * @throws IllegalStateException If the vault is being re-keyed.
+     * @throws IOException If there is an error writing the snapshot.
+    */
+    public Optional<SnapshotStore.Snapshot> takeSnapshot() throws IllegalStateException, IOException {
+        return this.repository.takeSnapshot();
+    }
+
+    /**
+     * Lists the stored snapshots, oldest first.
+     *
+     * @return The snapshots.
+     * @throws IOException If there is an error reading the snapshots.
+    */
+    public List<SnapshotStore.Snapshot> listSnapshots() throws IOException {
+        return this.repository.listSnapshots();
+    }
+
+    /**
+     * Reads the vault as it was at a snapshot.
+     *
+     * @param id The snapshot number.
+     * @return The header and entries at the time of the snapshot.
+     * @throws IllegalArgumentException If there is no snapshot with that number.
+     * @throws IOException If there is an error reading the snapshots.
+    */
+    public SnapshotStore.Contents readSnapshot(long id) throws IllegalArgumentException, IOException {
+        return this.repository.readSnapshot(id);
+    }
+
+    /**
+     * Replaces every entry of the vault.
+     *
+     * @param entries The entries of the vault.
+     * @throws IllegalArgumentException If the entries are null.
+     * @throws IOException If there is an error writing to the file.
+    */
+    public void replaceAll(Collection<PasswordEntry> entries) throws IllegalArgumentException, IOException {
+        this.repository.replaceAll(entries);
+    }
+
+    /**
+     * @return The number of shards of the vault file, 1 if it is not sharded.
+    */
+    public int getShardCount() {
+        return this.repository.getShardCount();
+    }
+
+    /**
+     * Rewrites the vault file with a new number of shards while it stays in use.
+     *
+     * @param shardCount The number of shards, or 1 for a single vault file.
+     * @throws IllegalArgumentException If the shard count is out of range.
+     * @throws IOException If there is an error writing the vault.
+    */
+    public void reshard(int shardCount) throws IllegalArgumentException, IOException {
+        this.repository.reshard(shardCount);
+    }
+
+    /**
+     * Releases the resources held by the underlying repository.
+     *
+     * @throws IOException If there is an error closing the repository.
+    */
+    public void close() throws IOException {
+        this.repository.close();
+    }
 }
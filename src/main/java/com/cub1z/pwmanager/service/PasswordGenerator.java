@@ -0,0 +1,185 @@
+package com.cub1z.pwmanager.service;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Generates passwords for one policy straight into caller-supplied arrays.
+ *
+ * The policy is compiled once into character tables. Random bytes are drawn in blocks into
+ * a per-call buffer and turned into indexes by rejection sampling, so every character is
+ * uniformly distributed and no intermediate strings or copies of a password are created.
+ * The buffer is wiped at the end of every call.
+ *
+ * Instances are thread-safe and calls share no mutable state. A generator built on a crypto
+ * context pool borrows a context for each call and draws from its own DRBG, so concurrent
+ * callers neither queue on a lock nor contend on one random generator.
+ */
+public class PasswordGenerator {
+    private static final int RANDOM_BLOCK_SIZE = 256;
+    private static final int SAMPLE_RANGE = 1 << 16;
+
+    private final PasswordPolicy policy;
+    private final SecureRandom random;
+    private final CryptoContext.Pool contexts;
+    private final char[] alphabet;
+    private final char[][] requiredClasses;
+
+    public PasswordGenerator(PasswordPolicy policy, SecureRandom random) {
+        this(policy, random, null);
+        if (random == null) throw new IllegalArgumentException("Random source cannot be null");
+    }
+
+    /**
+     * Creates a generator that borrows a context from the pool for every call.
+     */
+    PasswordGenerator(PasswordPolicy policy, CryptoContext.Pool contexts) {
+        this(policy, null, contexts);
+        if (contexts == null) throw new IllegalArgumentException("Context pool cannot be null");
+    }
+
+    private PasswordGenerator(PasswordPolicy policy, SecureRandom random, CryptoContext.Pool contexts) {
+        if (policy == null) throw new IllegalArgumentException("Policy cannot be null");
+
+        this.policy = policy;
+        this.random = random;
+        this.contexts = contexts;
+
+        StringBuilder alphabet = new StringBuilder();
+        this.requiredClasses = new char[policy.classes().size()][];
+        int i = 0;
+        for (PasswordPolicy.CharacterClass characterClass : PasswordPolicy.CharacterClass.values()) {
+            if (!policy.classes().contains(characterClass)) continue;
+
+            String chars = characterClass.getChars().chars()
+                .filter(c -> policy.excluded().indexOf(c) < 0)
+                .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append)
+                .toString();
+            if (chars.isEmpty()) {
+                throw new IllegalArgumentException("Exclusions leave no characters in class " + characterClass);
+            }
+
+            this.requiredClasses[i++] = chars.toCharArray();
+            alphabet.append(chars);
+        }
+
+        this.alphabet = alphabet.toString().toCharArray();
+    }
+
+    public PasswordPolicy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * Generates one password into a new array.
+     *
+     * @return The password, which the caller should wipe after use.
+     */
+    public char[] generate() {
+        char[] password = new char[this.policy.length()];
+        this.generate(password, 0, 1);
+        return password;
+    }
+
+    /**
+     * Generates passwords back to back into a destination array, each policy-length characters long.
+     *
+     * @param destination The array to fill.
+     * @param offset The index of the first character of the first password.
+     * @param count The number of passwords to generate.
+     * @throws IllegalArgumentException If the passwords do not fit in the destination.
+     * @throws IllegalStateException If no crypto context can be created for the call.
+     */
+    public void generate(char[] destination, int offset, int count) throws IllegalArgumentException, IllegalStateException {
+        int length = this.policy.length();
+        if (destination == null || offset < 0 || count < 0 || (long) offset + (long) count * length > destination.length) {
+            throw new IllegalArgumentException("Destination too small for " + count + " passwords");
+        }
+
+        if (this.contexts == null) {
+            this.generate(destination, offset, count, this.random);
+            return;
+        }
+
+        CryptoContext context;
+        try {
+            context = this.contexts.acquire();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot create a crypto context", e);
+        }
+        this.generate(destination, offset, count, context.random());
+        this.contexts.release(context);
+    }
+
+    // Auxiliary methods
+
+    private void generate(char[] destination, int offset, int count, SecureRandom random) {
+        RandomBlocks blocks = new RandomBlocks(random);
+        try {
+            for (int n = 0; n < count; n++) {
+                this.fill(destination, offset + n * this.policy.length(), this.policy.length(), blocks);
+            }
+        } finally {
+            blocks.wipe();
+        }
+    }
+
+    private void fill(char[] destination, int start, int length, RandomBlocks blocks) {
+        // One character of each class first, as far as the length allows, then any character
+        int required = Math.min(length, this.requiredClasses.length);
+        for (int i = 0; i < required; i++) {
+            char[] chars = this.requiredClasses[i];
+            destination[start + i] = chars[blocks.nextIndex(chars.length)];
+        }
+        for (int i = required; i < length; i++) {
+            destination[start + i] = this.alphabet[blocks.nextIndex(this.alphabet.length)];
+        }
+
+        // Shuffle in place so the required characters do not sit at predictable positions
+        for (int i = length - 1; i > 0; i--) {
+            int j = blocks.nextIndex(i + 1);
+            char tmp = destination[start + i];
+            destination[start + i] = destination[start + j];
+            destination[start + j] = tmp;
+        }
+    }
+
+    /**
+     * The random bytes of one call, drawn in blocks from the random generator of that call.
+     */
+    private static final class RandomBlocks {
+        private final SecureRandom random;
+        private final byte[] block;
+        private int position;
+
+        RandomBlocks(SecureRandom random) {
+            this.random = random;
+            this.block = new byte[RANDOM_BLOCK_SIZE];
+            this.position = RANDOM_BLOCK_SIZE;
+        }
+
+        /**
+         * Draws a uniform index below the bound from 16-bit samples, rejecting the samples
+         * of the incomplete last range that would bias the modulo.
+         */
+        int nextIndex(int bound) {
+            int limit = SAMPLE_RANGE - SAMPLE_RANGE % bound;
+            int sample;
+            do {
+                if (this.position + 2 > RANDOM_BLOCK_SIZE) {
+                    this.random.nextBytes(this.block);
+                    this.position = 0;
+                }
+                sample = (this.block[this.position++] & 0xFF) << 8 | (this.block[this.position++] & 0xFF);
+            } while (sample >= limit);
+
+            return sample % bound;
+        }
+
+        void wipe() {
+            Arrays.fill(this.block, (byte) 0);
+            this.position = RANDOM_BLOCK_SIZE;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.cub1z.pwmanager.service;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.cub1z.pwmanager.config.Constants;
+
+/**
+ * Describes the passwords to generate: their length, the character classes they draw from,
+ * and characters never to use. Every class appears at least once when the length allows it.
+ *
+ * @param length The number of characters of each password.
+ * @param classes The character classes to draw from, each required at least once.
+ * @param excluded Characters removed from every class, such as look-alikes, or empty.
+ */
+public record PasswordPolicy(int length, Set<PasswordPolicy.CharacterClass> classes, String excluded) {
+    public static final int MAX_LENGTH = 1024;
+    public static final String AMBIGUOUS_CHARS = "Il1O0o";
+
+    public enum CharacterClass {
+        UPPER("ABCDEFGHIJKLMNOPQRSTUVWXYZ"),
+        LOWER("abcdefghijklmnopqrstuvwxyz"),
+        DIGITS("0123456789"),
+        SPECIALS("!@#$%^&*()-_=+[]{}|;:',.<>?/");
+
+        private final String chars;
+
+        CharacterClass(String chars) {
+            this.chars = chars;
+        }
+
+        public String getChars() {
+            return chars;
+        }
+    }
+
+    public PasswordPolicy {
+        if (length <= 0 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Password length must be between 1 and " + MAX_LENGTH);
+        }
+        if (classes == null || classes.isEmpty()) {
+            throw new IllegalArgumentException("At least one character class is required");
+        }
+
+        classes = Set.copyOf(EnumSet.copyOf(classes));
+        excluded = excluded == null ? "" : excluded;
+    }
+
+    /**
+     * @return The policy built from the application defaults.
+     */
+    public static PasswordPolicy defaults() {
+        return of(Constants.DEFAULT_PASSWORD_LENGTH, Constants.DEFAULT_INCLUDE_SPECIAL_CHARS);
+    }
+
+    /**
+     * @return A policy with letters and digits, and special characters if requested.
+     */
+    public static PasswordPolicy of(int length, boolean includeSpecialChars) {
+        EnumSet<CharacterClass> classes = EnumSet.of(CharacterClass.UPPER, CharacterClass.LOWER, CharacterClass.DIGITS);
+        if (includeSpecialChars) classes.add(CharacterClass.SPECIALS);
+        return new PasswordPolicy(length, classes, "");
+    }
+
+    public PasswordPolicy withLength(int length) {
+        return new PasswordPolicy(length, this.classes, this.excluded);
+    }
+
+    public PasswordPolicy withExcluded(String excluded) {
+        return new PasswordPolicy(this.length, this.classes, excluded);
+    }
+}
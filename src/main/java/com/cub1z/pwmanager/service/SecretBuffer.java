@@ -0,0 +1,188 @@
+package com.cub1z.pwmanager.service;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Destroyable;
+
+/**
+ * Holds a secret as UTF-8 bytes in off-heap memory, outside the reach of heap copies made
+ * by the garbage collector. Secrets are encoded and decoded directly into and out of the
+ * buffer, and the cipher reads and writes it in place, so no String of the secret exists.
+ *
+ * The memory is wiped when the buffer is destroyed or closed, or at the latest when it
+ * becomes unreachable. Direct memory is costly to allocate, so blocks sized for passwords
+ * are wiped and recycled through a bounded pool.
+ */
+public final class SecretBuffer implements Destroyable, AutoCloseable {
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final int BLOCK_SIZE = 256;
+    private static final int MAX_POOLED_BLOCKS = 256;
+    private static final ConcurrentLinkedDeque<ByteBuffer> POOL = new ConcurrentLinkedDeque<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private final ByteBuffer buffer;
+    private final Cleaner.Cleanable cleanable;
+    private int length;
+    private volatile boolean destroyed;
+
+    /**
+     * Wipes the memory and recycles pooled blocks, without referencing the SecretBuffer
+     * so it can become unreachable.
+     */
+    private record Wiper(ByteBuffer buffer) implements Runnable {
+        @Override
+        public void run() {
+            wipe(this.buffer);
+            if (this.buffer.capacity() == BLOCK_SIZE && POOLED.incrementAndGet() <= MAX_POOLED_BLOCKS) {
+                POOL.offerFirst(this.buffer);
+            } else if (this.buffer.capacity() == BLOCK_SIZE) {
+                POOLED.decrementAndGet();
+            }
+        }
+    }
+
+    private SecretBuffer(int capacity) {
+        this.buffer = block(capacity);
+        this.cleanable = CLEANER.register(this, new Wiper(this.buffer));
+        this.length = 0;
+        this.destroyed = false;
+    }
+
+    /**
+     * Allocates an empty buffer to be filled through {@link #writable()}.
+     */
+    static SecretBuffer allocate(int capacity) {
+        return new SecretBuffer(capacity);
+    }
+
+    /**
+     * Encodes characters as UTF-8 straight into a new buffer.
+     *
+     * @param chars The secret. The array is left untouched, the caller still owns it.
+     * @return The encoded secret.
+     * @throws IllegalArgumentException If the characters are not valid UTF-16, such as lone surrogates.
+     */
+    public static SecretBuffer encode(char[] chars) throws IllegalArgumentException {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        SecretBuffer secret = new SecretBuffer((int) (chars.length * (double) encoder.maxBytesPerChar()));
+        ByteBuffer out = secret.writable();
+        CoderResult result = encoder.encode(CharBuffer.wrap(chars), out, true);
+        if (!result.isError()) result = encoder.flush(out);
+        if (result.isError()) {
+            secret.destroy();
+            throw new IllegalArgumentException("Secret is not valid text");
+        }
+
+        secret.setLength(out.position());
+        return secret;
+    }
+
+    /**
+     * @return The number of bytes of the encoded secret.
+     */
+    public int length() {
+        this.checkNotDestroyed();
+        return this.length;
+    }
+
+    /**
+     * Decodes the secret into a new char array.
+     *
+     * @return The characters, which the caller should wipe after use.
+     * @throws IllegalStateException If the buffer does not hold valid UTF-8.
+     */
+    public char[] toChars() throws IllegalStateException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        // UTF-8 never decodes to more chars than bytes, so the array is sized once
+        ByteBuffer in = this.readable();
+        char[] chars = new char[this.length];
+        CharBuffer out = CharBuffer.wrap(chars);
+        CoderResult result = decoder.decode(in, out, true);
+        if (!result.isError()) result = decoder.flush(out);
+        if (result.isError()) {
+            Arrays.fill(chars, '\0');
+            throw new IllegalStateException("Secret is not valid UTF-8");
+        }
+        if (out.position() == chars.length) return chars;
+
+        char[] exact = Arrays.copyOf(chars, out.position());
+        Arrays.fill(chars, '\0');
+        return exact;
+    }
+
+    /**
+     * @return A view of the encoded secret, positioned at its first byte and limited to its length.
+     */
+    ByteBuffer readable() {
+        this.checkNotDestroyed();
+        return this.buffer.duplicate().position(0).limit(this.length);
+    }
+
+    /**
+     * @return A view of the whole memory to write the secret into, then set its length.
+     */
+    ByteBuffer writable() {
+        this.checkNotDestroyed();
+        return this.buffer.duplicate().clear();
+    }
+
+    void setLength(int length) {
+        if (length < 0 || length > this.buffer.capacity()) throw new IllegalArgumentException("Invalid length");
+        this.length = length;
+    }
+
+    @Override
+    public void destroy() {
+        this.destroyed = true;
+        this.length = 0;
+        this.cleanable.clean();
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return this.destroyed;
+    }
+
+    @Override
+    public void close() {
+        this.destroy();
+    }
+
+    // Auxiliary methods
+
+    private void checkNotDestroyed() {
+        if (this.destroyed) throw new IllegalStateException("Secret buffer has been destroyed");
+    }
+
+    private static ByteBuffer block(int capacity) {
+        if (capacity > BLOCK_SIZE) return ByteBuffer.allocateDirect(capacity);
+
+        ByteBuffer block = POOL.pollFirst();
+        if (block == null) return ByteBuffer.allocateDirect(BLOCK_SIZE);
+
+        POOLED.decrementAndGet();
+        return block;
+    }
+
+    private static void wipe(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate().clear();
+        while (view.remaining() >= Long.BYTES) view.putLong(0L);
+        while (view.hasRemaining()) view.put((byte) 0);
+    }
+}
@@ -0,0 +1,446 @@
+package com.cub1z.pwmanager.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.model.VaultHeader;
+
+/**
+ * Streams vault entries to and from a portable, authenticated archive.
+ *
+ * <pre>
+ * header: magic "PWMA" | int version | u16 saltLength | vault salt | int iterations
+ *         | archive salt (16) | nonce prefix (7)
+ * chunk:  byte final | int length | AES-GCM ciphertext of up to 64 KiB of entry records
+ * record: u16 nameLength | name (UTF-8) | long createdAt | long updatedAt | long lastAccessedAt
+ *         | int length | encrypted password
+ * </pre>
+ *
+ * Chunks are encrypted with a key expanded from the vault key. Each nonce is the prefix followed
+ * by the chunk index and the final flag, and the header is authenticated with every chunk, so
+ * reordered, dropped or truncated chunks are rejected. Entry ciphertexts are copied as they are,
+ * and only re-encrypted on import when the archive was written under a different vault key.
+ * Imported entries are spooled to a temporary file, encrypted under a throwaway key, until the
+ * final chunk authenticates, so a truncated or tampered archive never reaches the vault and
+ * memory only holds one chunk and one batch at a time, whatever the size of the archive.
+ */
+public class VaultArchiveService {
+    private static final byte[] MAGIC = { 'P', 'W', 'M', 'A' };
+    private static final int VERSION = 1;
+    private static final String ARCHIVE_KEY_PURPOSE = "pwmanager/archive/v1";
+    private static final String ENCRYPTION_ALGORITHM = "AES/GCM/NoPadding";
+    private static final int GCM_TAG_LENGTH = 128;
+    private static final int SALT_LENGTH = 16;
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK_LENGTH = 16 * 1024 * 1024;
+    private static final int IMPORT_BATCH_SIZE = 1024;
+    private static final int SPOOL_KEY_LENGTH = 32;
+
+    private final CryptoService cryptoService;
+    private final SecureRandom secureRandom;
+
+    /**
+     * Resolves the vault key an archive was written with, from the vault header stored in it.
+     */
+    @FunctionalInterface
+    public interface SourceKeyResolver {
+        VaultKey resolve(VaultHeader archiveHeader) throws GeneralSecurityException;
+    }
+
+    /**
+     * Receives the imported entries in batches, once the whole archive has been authenticated.
+     */
+    @FunctionalInterface
+    public interface EntryBatchSink {
+        void accept(List<PasswordEntry> batch) throws IOException;
+    }
+
+    public VaultArchiveService(CryptoService cryptoService) {
+        if (cryptoService == null) throw new IllegalArgumentException("Crypto service cannot be null");
+        this.cryptoService = cryptoService;
+        this.secureRandom = new SecureRandom();
+    }
+
+    /**
+     * Writes entries to an archive one chunk at a time.
+     *
+     * @param entries The entries to export.
+     * @param header The vault header the entries were encrypted under.
+     * @param key The vault key the entries were encrypted with.
+     * @param out The destination of the archive. It is not closed.
+     * @return The number of exported entries.
+     * @throws IOException If there is an error writing the archive.
+     * @throws GeneralSecurityException If there is an error encrypting the archive.
+     */
+    public long exportEntries(
+        Iterable<PasswordEntry> entries, VaultHeader header, VaultKey key, OutputStream out
+    ) throws IOException, GeneralSecurityException {
+        byte[] archiveSalt = new byte[SALT_LENGTH];
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        this.secureRandom.nextBytes(archiveSalt);
+        this.secureRandom.nextBytes(noncePrefix);
+
+        byte[] headerBytes = encodeHeader(header, archiveSalt, noncePrefix);
+        out.write(headerBytes);
+
+        try (VaultKey archiveKey = this.cryptoService.deriveSubkey(key, ARCHIVE_KEY_PURPOSE, archiveSalt)) {
+            ChunkWriter writer = new ChunkWriter(new ChunkCipher(archiveKey, noncePrefix, headerBytes), out);
+            for (PasswordEntry entry : entries) {
+                writer.write(entry);
+            }
+
+            writer.finish();
+            return writer.count;
+        }
+    }
+
+    /**
+     * Reads an archive one chunk at a time and spools its entries, handing them to the sink in
+     * batches only after the final chunk has been authenticated. Nothing is handed over if the
+     * archive is truncated, tampered with or followed by unexpected data.
+     *
+     * @param in The archive to read. It is not closed.
+     * @param sourceKeyResolver Resolves the vault key the archive was written with.
+     * @param sourcePassword The master password the archive was written with, required to
+     *                       re-encrypt legacy per-entry salt entries under a different key, or null.
+     * @param targetKey The vault key imported entries must be encrypted with.
+     * @param sink The destination of the imported entries.
+     * @return The number of imported entries.
+     * @throws IOException If the archive cannot be read or is malformed or truncated, or the spool cannot be written.
+     * @throws GeneralSecurityException If the archive fails authentication or cannot be re-encrypted.
+     */
+    public long importEntries(
+        InputStream in, SourceKeyResolver sourceKeyResolver, char[] sourcePassword, VaultKey targetKey, EntryBatchSink sink
+    ) throws IOException, GeneralSecurityException {
+        DataInputStream data = new DataInputStream(in);
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(64);
+        DataInputStream header = new DataInputStream(new TeeInputStream(data, headerBytes));
+
+        byte[] magic = header.readNBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a vault archive");
+
+        int version = header.readInt();
+        if (version > VERSION) throw new IOException("Unsupported vault archive version " + version);
+
+        byte[] vaultSalt = new byte[header.readUnsignedShort()];
+        header.readFully(vaultSalt);
+        VaultHeader archiveHeader = new VaultHeader(vaultSalt, header.readInt());
+        byte[] archiveSalt = new byte[SALT_LENGTH];
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        header.readFully(archiveSalt);
+        header.readFully(noncePrefix);
+
+        VaultKey sourceKey = sourceKeyResolver.resolve(archiveHeader);
+        boolean reencrypt = !sameKey(sourceKey, targetKey);
+        byte[] spoolKeyBytes = new byte[SPOOL_KEY_LENGTH];
+        byte[] spoolNoncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        this.secureRandom.nextBytes(spoolKeyBytes);
+        this.secureRandom.nextBytes(spoolNoncePrefix);
+        Path spool = Files.createTempFile("pwmanager-import", ".tmp");
+
+        try (
+            VaultKey archiveKey = this.cryptoService.deriveSubkey(sourceKey, ARCHIVE_KEY_PURPOSE, archiveSalt);
+            VaultKey spoolKey = new VaultKey(spoolKeyBytes)
+        ) {
+            ChunkReader archive = new ChunkReader(data, new ChunkCipher(archiveKey, noncePrefix, headerBytes.toByteArray()));
+            long count;
+
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(spool))) {
+                ChunkWriter writer = new ChunkWriter(new ChunkCipher(spoolKey, spoolNoncePrefix, new byte[0]), out);
+                for (PasswordEntry entry = archive.next(); entry != null; entry = archive.next()) {
+                    writer.write(reencrypt ? this.reencrypt(entry, sourceKey, sourcePassword, targetKey) : entry);
+                }
+
+                if (data.read() != -1) throw new IOException("Unexpected data after the final archive chunk");
+                writer.finish();
+                count = writer.count;
+            }
+
+            // The whole archive is authentic, the spool can be handed over
+            try (InputStream spooled = new BufferedInputStream(Files.newInputStream(spool))) {
+                ChunkReader reader = new ChunkReader(
+                    new DataInputStream(spooled), new ChunkCipher(spoolKey, spoolNoncePrefix, new byte[0])
+                );
+                List<PasswordEntry> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                for (PasswordEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                    batch.add(entry);
+                    if (batch.size() == IMPORT_BATCH_SIZE) {
+                        sink.accept(batch);
+                        batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                    }
+                }
+                if (!batch.isEmpty()) sink.accept(batch);
+            }
+
+            return count;
+        } finally {
+            Files.deleteIfExists(spool);
+            if (sourceKey != targetKey) sourceKey.destroy();
+        }
+    }
+
+    // Auxiliary methods
+
+    private PasswordEntry reencrypt(
+        PasswordEntry entry, VaultKey sourceKey, char[] sourcePassword, VaultKey targetKey
+    ) throws GeneralSecurityException {
+        byte[] encryptedPassword = entry.getEncryptedPassword();
+        char[] plain;
+
+        if (this.cryptoService.isKeyEncrypted(encryptedPassword)) {
+            plain = this.cryptoService.decrypt(encryptedPassword, sourceKey);
+        } else {
+            // Legacy entries are encrypted with the source master password and their own salt
+            if (sourcePassword == null) {
+                throw new GeneralSecurityException(
+                    "Entry " + entry.getServiceName() + " uses a legacy encryption, the archive master password is required"
+                );
+            }
+            plain = this.cryptoService.decrypt(encryptedPassword, sourcePassword);
+        }
+
+        try {
+            return new PasswordEntry(
+                entry.getServiceName(), this.cryptoService.encrypt(plain, targetKey),
+                entry.getCreatedAt(), entry.getUpdatedAt(), entry.getLastAccessedAt()
+            );
+        } finally {
+            Arrays.fill(plain, '\0');
+        }
+    }
+
+    private static boolean sameKey(VaultKey a, VaultKey b) {
+        if (a == b) return true;
+
+        byte[] first = a.getEncoded();
+        byte[] second = b.getEncoded();
+        try {
+            return MessageDigest.isEqual(first, second);
+        } finally {
+            Arrays.fill(first, (byte) 0);
+            Arrays.fill(second, (byte) 0);
+        }
+    }
+
+    private static byte[] encodeHeader(VaultHeader header, byte[] archiveSalt, byte[] noncePrefix) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] vaultSalt = header.getSalt();
+
+        out.write(MAGIC);
+        out.writeInt(VERSION);
+        out.writeShort(vaultSalt.length);
+        out.write(vaultSalt);
+        out.writeInt(header.getIterations());
+        out.write(archiveSalt);
+        out.write(noncePrefix);
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeChunk(DataOutputStream out, ChunkCipher chunks, byte[] plain, boolean isFinal) throws IOException, GeneralSecurityException {
+        byte[] cipherText = chunks.encrypt(plain, isFinal);
+        Arrays.fill(plain, (byte) 0);
+
+        out.writeByte(isFinal ? 1 : 0);
+        out.writeInt(cipherText.length);
+        out.write(cipherText);
+    }
+
+    private static void writeRecord(DataOutputStream out, PasswordEntry entry) throws IOException {
+        byte[] name = entry.getServiceName().getBytes(StandardCharsets.UTF_8);
+        byte[] encryptedPassword = entry.getEncryptedPassword();
+
+        out.writeShort(name.length);
+        out.write(name);
+        out.writeLong(entry.getCreatedAt().getTime());
+        out.writeLong(entry.getUpdatedAt().getTime());
+        out.writeLong(entry.getLastAccessedAt().getTime());
+        out.writeInt(encryptedPassword.length);
+        out.write(encryptedPassword);
+    }
+
+    private static PasswordEntry readRecord(DataInputStream in) throws IOException {
+        byte[] name = new byte[in.readUnsignedShort()];
+        in.readFully(name);
+
+        Date createdAt = new Date(in.readLong());
+        Date updatedAt = new Date(in.readLong());
+        Date lastAccessedAt = new Date(in.readLong());
+        byte[] encryptedPassword = new byte[in.readInt()];
+        in.readFully(encryptedPassword);
+
+        return new PasswordEntry(
+            new String(name, StandardCharsets.UTF_8), encryptedPassword, createdAt, updatedAt, lastAccessedAt
+        );
+    }
+
+    /**
+     * Packs entry records into chunks of about {@link #CHUNK_SIZE} and encrypts them in order.
+     */
+    private static class ChunkWriter {
+        private final ChunkCipher chunks;
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream chunk;
+        private final DataOutputStream records;
+        private long count;
+
+        ChunkWriter(ChunkCipher chunks, OutputStream out) {
+            this.chunks = chunks;
+            this.out = new DataOutputStream(out);
+            this.chunk = new ByteArrayOutputStream(CHUNK_SIZE + 1024);
+            this.records = new DataOutputStream(this.chunk);
+        }
+
+        void write(PasswordEntry entry) throws IOException, GeneralSecurityException {
+            writeRecord(this.records, entry);
+            this.count++;
+
+            if (this.chunk.size() >= CHUNK_SIZE) {
+                writeChunk(this.out, this.chunks, this.chunk.toByteArray(), false);
+                this.chunk.reset();
+            }
+        }
+
+        void finish() throws IOException, GeneralSecurityException {
+            // The final chunk is always written, even when empty, to detect truncation
+            writeChunk(this.out, this.chunks, this.chunk.toByteArray(), true);
+            this.out.flush();
+        }
+    }
+
+    /**
+     * Decrypts chunks written by a {@link ChunkWriter} one at a time and reads their records.
+     */
+    private static class ChunkReader {
+        private final ChunkCipher chunks;
+        private final DataInputStream in;
+        private DataInputStream records;
+        private boolean isFinal;
+
+        ChunkReader(DataInputStream in, ChunkCipher chunks) {
+            this.chunks = chunks;
+            this.in = in;
+        }
+
+        /**
+         * @return The next entry, or null once the final chunk has been read.
+         */
+        PasswordEntry next() throws IOException, GeneralSecurityException {
+            while (this.records == null || this.records.available() == 0) {
+                if (this.isFinal) return null;
+                this.records = new DataInputStream(new ByteArrayInputStream(this.readChunk()));
+            }
+            return readRecord(this.records);
+        }
+
+        private byte[] readChunk() throws IOException, GeneralSecurityException {
+            byte[] cipherText;
+            try {
+                this.isFinal = this.in.readUnsignedByte() == 1;
+                int length = this.in.readInt();
+                if (length < 0 || length > MAX_CHUNK_LENGTH) {
+                    throw new IOException("Invalid archive chunk length: " + length);
+                }
+
+                cipherText = new byte[length];
+                this.in.readFully(cipherText);
+            } catch (EOFException e) {
+                throw new IOException("Vault archive is truncated", e);
+            }
+
+            return this.chunks.decrypt(cipherText, this.isFinal);
+        }
+    }
+
+    /**
+     * Encrypts and decrypts consecutive archive chunks, deriving each nonce from the chunk index.
+     */
+    private static class ChunkCipher {
+        private final SecretKeySpec key;
+        private final byte[] noncePrefix;
+        private final byte[] associatedData;
+        private final Cipher cipher;
+        private int index;
+
+        ChunkCipher(VaultKey key, byte[] noncePrefix, byte[] associatedData) throws GeneralSecurityException {
+            this.key = new SecretKeySpec(key.bytes(), "AES");
+            this.noncePrefix = noncePrefix;
+            this.associatedData = associatedData;
+            this.cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
+            this.index = 0;
+        }
+
+        byte[] encrypt(byte[] plain, boolean isFinal) throws GeneralSecurityException {
+            this.cipher.init(Cipher.ENCRYPT_MODE, this.key, this.nextNonce(isFinal));
+            this.cipher.updateAAD(this.associatedData);
+            return this.cipher.doFinal(plain);
+        }
+
+        byte[] decrypt(byte[] cipherText, boolean isFinal) throws GeneralSecurityException {
+            this.cipher.init(Cipher.DECRYPT_MODE, this.key, this.nextNonce(isFinal));
+            this.cipher.updateAAD(this.associatedData);
+            return this.cipher.doFinal(cipherText);
+        }
+
+        private GCMParameterSpec nextNonce(boolean isFinal) {
+            ByteBuffer nonce = ByteBuffer.allocate(NONCE_PREFIX_LENGTH + Integer.BYTES + 1);
+            nonce.put(this.noncePrefix);
+            nonce.putInt(this.index++);
+            nonce.put((byte) (isFinal ? 1 : 0));
+            return new GCMParameterSpec(GCM_TAG_LENGTH, nonce.array());
+        }
+    }
+
+    /**
+     * Copies every byte read from the source, used to capture the raw archive header.
+     */
+    private static class TeeInputStream extends InputStream {
+        private final InputStream source;
+        private final OutputStream copy;
+
+        TeeInputStream(InputStream source, OutputStream copy) {
+            this.source = source;
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = this.source.read();
+            if (b >= 0) this.copy.write(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = this.source.read(buffer, offset, length);
+            if (read > 0) this.copy.write(buffer, offset, read);
+            return read;
+        }
+    }
+}
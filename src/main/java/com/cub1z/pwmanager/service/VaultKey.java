@@ -0,0 +1,59 @@
+package com.cub1z.pwmanager.service;
+
+import java.util.Arrays;
+
+import javax.security.auth.Destroyable;
+
+/**
+ * Holds the vault key derived from the master password for the lifetime of an unlocked session.
+ * The key material is wiped when the key is destroyed or closed.
+ */
+public final class VaultKey implements Destroyable, AutoCloseable {
+    private final byte[] keyBytes;
+    private volatile boolean destroyed;
+
+    /**
+     * Creates a vault key that takes ownership of the given key material.
+     *
+     * @param keyBytes The raw key material. The array is wiped when this key is destroyed.
+     */
+    public VaultKey(byte[] keyBytes) {
+        if (keyBytes == null || keyBytes.length == 0) {
+            throw new IllegalArgumentException("Key material cannot be null or empty");
+        }
+
+        this.keyBytes = keyBytes;
+        this.destroyed = false;
+    }
+
+    /**
+     * Returns a copy of the key material.
+     *
+     * @return A copy of the raw key bytes.
+     * @throws IllegalStateException If the key has been destroyed.
+     */
+    public byte[] getEncoded() {
+        return Arrays.copyOf(bytes(), keyBytes.length);
+    }
+
+    byte[] bytes() {
+        if (this.destroyed) throw new IllegalStateException("Vault key has been destroyed");
+        return this.keyBytes;
+    }
+
+    @Override
+    public void destroy() {
+        Arrays.fill(this.keyBytes, (byte) 0);
+        this.destroyed = true;
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return this.destroyed;
+    }
+
+    @Override
+    public void close() {
+        this.destroy();
+    }
+}
@@ -7,6 +7,34 @@ public class ConsoleBox {
     public static final String ANSI_YELLOW = "\u001B[33m";
 
     public static void printBox(String title, String[] lines, int width) {
+        printTop(title, width);
+
+        for (String line : lines) {
+            // Add left padding of 1 space, then pad right
+            String padded = " " + line;
+            padded += " ".repeat(Math.max(0, width - 2 - padded.length()));
+            System.out.println("║" + padded + "║");
+        }
+
+        printBottom(width);
+    }
+
+    /**
+     * Prints a box with a single line holding a secret. The characters are printed from
+     * the array as they are, so the secret never becomes a String.
+     */
+    public static void printSecretBox(String title, String prefix, char[] secret, int width) {
+        printTop(title, width);
+
+        String padded = " " + prefix;
+        System.out.print("║" + padded);
+        System.out.print(secret);
+        System.out.println(" ".repeat(Math.max(0, width - 2 - padded.length() - secret.length)) + "║");
+
+        printBottom(width);
+    }
+
+    private static void printTop(String title, int width) {
         String horizontal = "═".repeat(width - 2);
         System.out.println("╔" + horizontal + "╗");
 
@@ -17,15 +45,10 @@ public class ConsoleBox {
         System.out.println("║" + titleLine + "║");
 
         System.out.println("╠" + horizontal + "╣");
+    }
 
-        for (String line : lines) {
-            // Add left padding of 1 space, then pad right
-            String padded = " " + line;
-            padded += " ".repeat(Math.max(0, width - 2 - padded.length()));
-            System.out.println("║" + padded + "║");
-        }
-
-        System.out.println("╚" + horizontal + "╝");
+    private static void printBottom(int width) {
+        System.out.println("╚" + "═".repeat(width - 2) + "╝");
         System.out.println();
     }
 
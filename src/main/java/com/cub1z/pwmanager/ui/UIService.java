@@ -1,11 +1,17 @@
 package com.cub1z.pwmanager.ui;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
+import com.cub1z.pwmanager.events.ScreenClearEvent;
+import com.cub1z.pwmanager.metrics.Metrics;
+import com.cub1z.pwmanager.metrics.Timer;
 import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.service.SecretBuffer;
 
 public class UIService {
     private static final int SCREEN_WIDTH = 80;
@@ -25,11 +31,14 @@ public class UIService {
         "[2] (?) Get Password         - Retrieve a stored password",
         "[3] (+) Add New Password     - Store a new password for a service",
         "[4] (-) Delete Password      - Remove a stored password",
-        "[5] (x) Exit                 - Close the application"
+        "[5] (/) Search               - Find a service by part of its name",
+        "[6] (x) Exit                 - Close the application"
     };
 
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private static final Timer CLEAR_SCREEN_TIMER = Metrics.timer("ui.clearScreen");
+
     private static Scanner fallbackScanner = new Scanner(System.in);
 
     public static void showLogo(boolean centered) {
@@ -54,6 +63,7 @@ public class UIService {
             MAIN_MENU[2],
             MAIN_MENU[3],
             MAIN_MENU[4],
+            MAIN_MENU[5],
             "",
             "(*) Last access: " + lastAccess,
             "(/) Stored passwords: " + storedPasswords,
@@ -62,27 +72,67 @@ public class UIService {
         ConsoleBox.printBox(APP_NAME, infoLines, SCREEN_WIDTH);
     }
 
-    public static void showPasswordList(List<PasswordEntry> entries) {
+    /**
+     * Displays one page of stored entries. The box always has room for a full page,
+     * so its size does not depend on the size of the vault.
+     * 
+     * @param entries the entries of the page
+     * @param firstNumber the position of the first entry in the whole list, starting at 1
+     * @param pageSize the number of entries a full page holds
+     * @param page the zero-based page number
+     * @param pageCount the total number of pages
+     * @param total the total number of stored entries
+     * @param sortLabel the name of the current order
+     */
+    public static void showPasswordPage(
+        List<PasswordEntry> entries, long firstNumber, int pageSize, int page, int pageCount, int total, String sortLabel
+    ) {
         clearScreen();
-        String title = "Stored Passwords (" + entries.size() + ")";
+        String title = "Stored Passwords (" + total + ")";
+        String[] lines = new String[pageSize + 4];
+
+        lines[0] = String.format("%7s%-48s %s", "", "Service", "Last used");
+        for (int i = 0; i < pageSize; i++) {
+            if (i < entries.size()) {
+                PasswordEntry entry = entries.get(i);
+                String lastUsed = entry.getLastAccessedAt() == null ? "-"
+                    : DATE_FORMAT.format(entry.getLastAccessedAt().toInstant().atZone(ZoneId.systemDefault()));
+                lines[i + 1] = String.format("%5d. %s %s", firstNumber + i, ConsoleBox.pad(entry.getServiceName(), 48), lastUsed);
+            } else {
+                lines[i + 1] = i == 0 ? "No passwords stored yet." : "";
+            }
+        }
+
+        lines[pageSize + 1] = "";
+        lines[pageSize + 2] = String.format("Page %d/%d - Sorted by: %s", page + 1, pageCount, sortLabel);
+        lines[pageSize + 3] = "[n] Next  [p] Previous  [j <page>] Jump  [s] Sort  [q] Back";
+        ConsoleBox.printBox(title, lines, SCREEN_WIDTH);
+    }
+
+    public static void showSearchResults(String query, List<String> serviceNames) {
+        clearScreen();
+        String title = String.format("Results for '%s' (%d)", query, serviceNames.size());
         String[] lines;
-        if (entries.isEmpty()) {
-            lines = new String[] { "No passwords stored yet." };
+        if (serviceNames.isEmpty()) {
+            lines = new String[] { "No matching services." };
         } else {
-            lines = new String[entries.size()];
-            for (int i = 0; i < entries.size(); i++) {
-                lines[i] = String.format("%2d. %s", i + 1, entries.get(i).getServiceName());
+            lines = new String[serviceNames.size()];
+            for (int i = 0; i < serviceNames.size(); i++) {
+                lines[i] = String.format("%2d. %s", i + 1, serviceNames.get(i));
             }
         }
         ConsoleBox.printBox(title, lines, SCREEN_WIDTH);
-        promptContinue();
     }
 
-    public static void showPassword(String serviceName, String password) {
+    public static void showPassword(String serviceName, SecretBuffer password) {
         clearScreen();
         String title = String.format("Password for '%s'", serviceName);
-        String[] lines = { String.format(">> %s", password) };
-        ConsoleBox.printBox(title, lines, SCREEN_WIDTH);
+        char[] chars = password.toChars();
+        try {
+            ConsoleBox.printSecretBox(title, ">> ", chars, SCREEN_WIDTH);
+        } finally {
+            Arrays.fill(chars, '\0');
+        }
         promptContinue();
     }
 
@@ -163,6 +213,9 @@ public class UIService {
     }
 
     public static void clearScreen() {
+        long start = System.nanoTime();
+        ScreenClearEvent event = new ScreenClearEvent();
+        event.begin();
         try {
             new ProcessBuilder("cmd", "/c", "mode con: cols=" + SCREEN_WIDTH + " lines=" + SCREEN_HEIGHT)
                 .inheritIO().start().waitFor();
@@ -170,6 +223,9 @@ public class UIService {
         } catch (Exception e) {
             System.out.print("\033[H\033[2J");
             System.out.flush();
+        } finally {
+            event.commit();
+            CLEAR_SCREEN_TIMER.recordSince(start);
         }
     }
 
@@ -0,0 +1,113 @@
+package com.cub1z.pwmanager.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader for RFC 4180 CSV: quoted fields, escaped quotes and line breaks inside quotes.
+ * Only one record is held in memory at a time.
+ */
+public class CsvReader implements Closeable {
+    private final Reader reader;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private long lineNumber;
+
+    public CsvReader(Reader reader) {
+        if (reader == null) throw new IllegalArgumentException("Reader cannot be null");
+        this.reader = reader;
+        this.buffer = new char[8192];
+        this.lineNumber = 1;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return The fields of the record, or null at the end of the input.
+     * @throws IOException If there is an error reading or a quoted field is never closed.
+     */
+    public List<String> readRecord() throws IOException {
+        int c = this.next();
+        if (c < 0) return null;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (c < 0) throw new IOException("Unterminated quoted field at line " + this.lineNumber);
+
+                if (c == '"') {
+                    int following = this.peek();
+                    if (following == '"') {
+                        this.next();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n') this.lineNumber++;
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\r' || c == '\n' || c < 0) {
+                if (c == '\r' && this.peek() == '\n') this.next();
+                if (c >= 0) this.lineNumber++;
+
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+
+            c = this.next();
+        }
+    }
+
+    /**
+     * Returns the line the reader is positioned at, counting line breaks inside quoted fields.
+     *
+     * @return The 1-based line number of the next record.
+     */
+    public long getLineNumber() {
+        return this.lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    // Auxiliary methods
+
+    private int next() throws IOException {
+        if (this.position == this.limit && !this.fill()) return -1;
+        return this.buffer[this.position++];
+    }
+
+    private int peek() throws IOException {
+        if (this.position == this.limit && !this.fill()) return -1;
+        return this.buffer[this.position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = this.reader.read(this.buffer, 0, this.buffer.length);
+        if (read <= 0) return false;
+
+        this.position = 0;
+        this.limit = read;
+        return true;
+    }
+}
@@ -1,18 +1,119 @@
 package com.cub1z.pwmanager.utils;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
 
+import com.cub1z.pwmanager.metrics.Counter;
+import com.cub1z.pwmanager.metrics.Metrics;
+import com.cub1z.pwmanager.metrics.Timer;
+
 public class FileUtils {
-    
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final Timer WRITE_TIMER = Metrics.timer("file.write");
+    private static final Counter WRITE_BYTES = Metrics.counter("file.write.bytes");
+    private static final Timer READ_TIMER = Metrics.timer("file.read");
+    private static final Counter READ_BYTES = Metrics.counter("file.read.bytes");
+    private static final Timer FSYNC_TIMER = Metrics.timer("file.fsync");
+
+    /**
+     * Serializes an object to a file, durably and atomically: the object is written to a
+     * temporary sibling, forced to disk and renamed over the file, so a crash leaves either
+     * the previous or the new content, never a mix.
+     *
+     * @param path The file to write.
+     * @param object The object to serialize.
+     * @throws IOException If there is an error writing the file.
+     */
     public static <T extends Serializable> void writeObjectToFile(Path path, T object) throws IOException {
-        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(path))) {
-            out.writeObject(object);
+        long start = System.nanoTime();
+        Path tempPath = tempPathFor(path);
+
+        try {
+            try (
+                FileChannel channel = openForWrite(tempPath);
+                ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))
+            ) {
+                out.writeObject(object);
+                out.flush();
+                force(channel);
+            }
+            moveAtomically(tempPath, path);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        } finally {
+            WRITE_TIMER.recordSince(start);
+        }
+        WRITE_BYTES.add(Files.size(path));
+    }
+
+    /**
+     * Writes bytes to a file, durably and atomically, like {@link #writeObjectToFile}.
+     *
+     * @param path The file to write.
+     * @param bytes The new content.
+     * @throws IOException If there is an error writing the file.
+     */
+    public static void writeBytesToFile(Path path, byte[] bytes) throws IOException {
+        long start = System.nanoTime();
+        Path tempPath = tempPathFor(path);
+
+        try {
+            try (FileChannel channel = openForWrite(tempPath)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                force(channel);
+            }
+            moveAtomically(tempPath, path);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        } finally {
+            WRITE_TIMER.recordSince(start);
+        }
+        WRITE_BYTES.add(bytes.length);
+    }
+
+    /**
+     * Renames a file that was already forced to disk over another one, and forces the
+     * directory so the rename itself survives a crash.
+     *
+     * @param source The file to move.
+     * @param target The file to replace.
+     * @throws IOException If the file cannot be moved.
+     */
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Forces a directory to disk, making the files created, renamed or deleted in it durable.
+     *
+     * @param directory The directory to force.
+     */
+    public static void forceDirectory(Path directory) {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened or forced on every platform, such as Windows
+        } finally {
+            FSYNC_TIMER.recordSince(start);
         }
     }
 
@@ -21,8 +122,10 @@ public class FileUtils {
             return Optional.empty();
         }
 
+        long start = System.nanoTime();
         try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(path))) {
             Object object = in.readObject();
+            READ_BYTES.add(Files.size(path));
 
             if (!clazz.isInstance(object)) {
                 throw new IOException("Object read from file is not of type " + clazz.getName());
@@ -33,6 +136,24 @@ public class FileUtils {
             throw new IOException("Failed to read object from file: " + path, e);
         } catch (ClassNotFoundException e) {
             throw new IOException("Failed to read object from file: " + path, e);
+        } finally {
+            READ_TIMER.recordSince(start);
         }
     }
-}
\ No newline at end of file
+
+    // Auxiliary methods
+
+    private static Path tempPathFor(Path path) {
+        return path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+    }
+
+    private static FileChannel openForWrite(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void force(FileChannel channel) throws IOException {
+        long start = System.nanoTime();
+        channel.force(true);
+        FSYNC_TIMER.recordSince(start);
+    }
+}
@@ -0,0 +1,267 @@
+package com.cub1z.pwmanager;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.cub1z.pwmanager.config.Constants;
+import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.model.VaultHeader;
+import com.cub1z.pwmanager.repository.PasswordEntryRepository;
+import com.cub1z.pwmanager.service.AESCryptoService;
+import com.cub1z.pwmanager.service.AttachmentService;
+import com.cub1z.pwmanager.service.MasterPasswordService;
+import com.cub1z.pwmanager.service.PasswordEntryService;
+import com.cub1z.pwmanager.service.VaultKey;
+import com.cub1z.pwmanager.utils.FileUtils;
+
+public class PasswordManagerTest {
+    private static final String MASTER_PASSWORD = "SecurePass123!";
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void fastKdf() {
+        System.setProperty(Constants.KDF_TARGET_MILLIS_PROPERTY, "20");
+    }
+
+    @Test
+    void testWrongMasterPasswordIsRejectedAfterUnlock() throws Exception {
+        try (PasswordManager manager = newManager()) {
+            manager.saveMasterPassword(MASTER_PASSWORD);
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+            String password = manager.add("github", MASTER_PASSWORD);
+            assertTrue(manager.isUnlocked());
+
+            assertThrows(RuntimeException.class, () -> manager.get("github", "wrong password"));
+            assertThrows(RuntimeException.class, () -> manager.update("github", "wrong password"));
+            assertThrows(RuntimeException.class, () -> manager.delete("github", "wrong password"));
+            assertEquals(password, manager.get("github", MASTER_PASSWORD));
+
+            // The unlocked session is used when no password is given
+            assertEquals(password, manager.get("github", null));
+            manager.delete("github", MASTER_PASSWORD);
+            assertEquals(0, manager.getSavedPasswordCount());
+        }
+    }
+
+    @Test
+    void testMissingHeaderIsNotRecreatedOverKeyedEntries() throws Exception {
+        Path headerFile = tempDir.resolve("passwords.pwd.hdr");
+        String password;
+
+        try (PasswordManager manager = newManager()) {
+            manager.saveMasterPassword(MASTER_PASSWORD);
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+            password = manager.add("github", null);
+        }
+
+        // A copy of the vault made without its header
+        byte[] header = Files.readAllBytes(headerFile);
+        Files.delete(headerFile);
+        try (PasswordManager manager = newManager()) {
+            assertThrows(IllegalStateException.class, () -> manager.authenticate(MASTER_PASSWORD));
+            assertFalse(manager.isUnlocked());
+        }
+        assertFalse(Files.exists(headerFile));
+
+        Files.write(headerFile, header);
+        try (PasswordManager manager = newManager()) {
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+            assertEquals(password, manager.get("github", null));
+        }
+    }
+
+    @Test
+    void testInterruptedRekeySettlesEveryEntry() throws Exception {
+        Path headerFile = tempDir.resolve("passwords.pwd.hdr");
+        Path logFile = tempDir.resolve("passwords.pwd.log");
+        Map<String, String> passwords = new HashMap<>();
+        VaultHeader previous;
+        byte[] beforeRekey;
+
+        try (PasswordManager manager = newManager()) {
+            manager.saveMasterPassword(MASTER_PASSWORD);
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+            for (int i = 0; i < 20; i++) passwords.put("service" + i, manager.add("service" + i, null));
+
+            previous = readHeader(headerFile);
+            beforeRekey = Files.readAllBytes(logFile);
+            manager.rekeyVault(MASTER_PASSWORD, previous.getIterations() + 1_000);
+        }
+
+        VaultHeader next = readHeader(headerFile);
+        VaultHeader rekeying = new VaultHeader(next.getSalt(), next.getIterations(), previous);
+        byte[] afterRekey = Files.readAllBytes(logFile);
+
+        // A crash halfway through the batch of re-keyed entries: none of them was committed
+        Files.write(logFile, Arrays.copyOf(afterRekey, beforeRekey.length + (afterRekey.length - beforeRekey.length) / 2));
+        FileUtils.writeObjectToFile(headerFile, rekeying);
+        this.assertSettled(passwords, previous.getIterations());
+
+        // A crash after the batch was committed, before the final header was saved
+        Files.write(logFile, afterRekey);
+        FileUtils.writeObjectToFile(headerFile, rekeying);
+        this.assertSettled(passwords, next.getIterations());
+
+        // An entry left under the previous key next to re-keyed ones is moved to the new key
+        Files.write(logFile, afterRekey);
+        FileUtils.writeObjectToFile(headerFile, rekeying);
+        AESCryptoService cryptoService = new AESCryptoService();
+        try (
+            PasswordEntryRepository repository = new PasswordEntryRepository(tempDir.resolve("passwords.pwd"));
+            VaultKey previousKey = cryptoService.deriveVaultKey(MASTER_PASSWORD.toCharArray(), previous)
+        ) {
+            repository.saveEntry(new PasswordEntry("straggler", cryptoService.encrypt("stale".toCharArray(), previousKey)), false);
+        }
+        passwords.put("straggler", "stale");
+        this.assertSettled(passwords, next.getIterations());
+    }
+
+    @Test
+    void testRestoreAcrossAHeaderChange() throws Exception {
+        String github;
+        String bitbucket;
+        int iterations;
+
+        try (PasswordManager manager = newManager()) {
+            manager.saveMasterPassword(MASTER_PASSWORD);
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+            github = manager.add("github", null);
+            iterations = manager.getKdfIterations();
+            long id = manager.takeSnapshot().orElseThrow().id();
+
+            manager.rekeyVault(MASTER_PASSWORD, iterations + 1_000);
+            manager.add("gitlab", null);
+
+            // The snapshot brings back the header its entries were encrypted under
+            assertEquals(1, manager.restoreSnapshot(id, MASTER_PASSWORD));
+            assertEquals(iterations, manager.getKdfIterations());
+            assertEquals(github, manager.get("github", null));
+            assertThrows(IllegalArgumentException.class, () -> manager.get("gitlab", null));
+            bitbucket = manager.add("bitbucket", null);
+        }
+
+        try (PasswordManager manager = newManager()) {
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+            assertEquals(iterations, manager.getKdfIterations());
+            assertEquals(github, manager.get("github", null));
+            assertEquals(bitbucket, manager.get("bitbucket", null));
+        }
+    }
+
+    @Test
+    void testReplacedEntriesDoNotInheritAttachments() throws Exception {
+        Path file = tempDir.resolve("codes.txt");
+        Files.writeString(file, "recovery codes");
+        Path archive = tempDir.resolve("vault.pwa");
+
+        try (PasswordManager manager = newManager()) {
+            manager.saveMasterPassword(MASTER_PASSWORD);
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+            manager.add("github", null);
+            long id = manager.takeSnapshot().orElseThrow().id();
+            manager.exportVault(archive);
+
+            manager.add("gitlab", null);
+            manager.attach("gitlab", "codes.txt", file);
+            manager.attach("github", "codes.txt", file);
+
+            // gitlab is not part of the snapshot, its attachments go with it
+            manager.restoreSnapshot(id, MASTER_PASSWORD);
+            manager.add("gitlab", null);
+            assertEquals(List.of(), manager.getAttachments("gitlab"));
+            assertEquals(1, manager.getAttachments("github").size());
+
+            // The archived github entry replaces the one holding the attachment
+            assertEquals(1, manager.importVault(archive, null, true));
+            assertEquals(List.of(), manager.getAttachments("github"));
+            assertEquals(0, manager.collectAttachmentGarbage());
+        }
+    }
+
+    @Test
+    void testWritesDuringARekeyEndUpUnderTheNewKey() throws Exception {
+        Map<String, String> passwords = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try (PasswordManager manager = newManager()) {
+            manager.saveMasterPassword(MASTER_PASSWORD);
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+            for (int i = 0; i < 10; i++) passwords.put("service" + i, manager.add("service" + i, null));
+            int iterations = manager.getKdfIterations();
+
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < 4; w++) {
+                int writer = w;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        String serviceName = "service" + (i % 10);
+                        passwords.put(serviceName, manager.update(serviceName, null));
+                        passwords.put("writer" + writer + "-" + i, manager.add("writer" + writer + "-" + i, null));
+                    }
+                    return null;
+                }));
+            }
+            manager.rekeyVault(MASTER_PASSWORD, iterations + 1_000);
+            manager.rekeyVault(MASTER_PASSWORD, iterations + 2_000);
+            for (Future<?> writer : writers) writer.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Updates racing on the same names may land in any order, so only new names are compared
+        try (PasswordManager manager = newManager()) {
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+            assertEquals(110, manager.getSavedPasswordCount());
+            for (Map.Entry<String, String> entry : passwords.entrySet()) {
+                String password = manager.get(entry.getKey(), null);
+                if (entry.getKey().startsWith("writer")) assertEquals(entry.getValue(), password);
+            }
+        }
+    }
+
+    // Auxiliary methods
+
+    private void assertSettled(Map<String, String> passwords, int iterations) throws Exception {
+        try (PasswordManager manager = newManager()) {
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+            assertEquals(iterations, manager.getKdfIterations());
+            for (Map.Entry<String, String> entry : passwords.entrySet()) {
+                assertEquals(entry.getValue(), manager.get(entry.getKey(), null), entry.getKey());
+            }
+        }
+
+        VaultHeader settled = readHeader(tempDir.resolve("passwords.pwd.hdr"));
+        assertFalse(settled.isRekeying());
+    }
+
+    private static VaultHeader readHeader(Path headerFile) throws Exception {
+        return FileUtils.readObjectFromFile(headerFile, VaultHeader.class).orElseThrow();
+    }
+
+    private PasswordManager newManager() {
+        AESCryptoService cryptoService = new AESCryptoService();
+        return new PasswordManager(
+            cryptoService,
+            new PasswordEntryService(tempDir.resolve("passwords.pwd")),
+            new MasterPasswordService(tempDir.resolve("master.pwd")),
+            new AttachmentService(cryptoService, tempDir.resolve("attachments"))
+        );
+    }
+}
@@ -0,0 +1,169 @@
+package com.cub1z.pwmanager.agent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.cub1z.pwmanager.PasswordManager;
+import com.cub1z.pwmanager.agent.AgentProtocol.Message;
+import com.cub1z.pwmanager.config.Constants;
+import com.cub1z.pwmanager.service.AESCryptoService;
+import com.cub1z.pwmanager.service.AttachmentService;
+import com.cub1z.pwmanager.service.MasterPasswordService;
+import com.cub1z.pwmanager.service.PasswordEntryService;
+
+public class AgentServerTest {
+    private static final String MASTER_PASSWORD = "SecurePass123!";
+
+    @TempDir
+    Path tempDir;
+
+    private AgentServer agent;
+
+    @BeforeAll
+    static void fastKdf() {
+        System.setProperty(Constants.KDF_TARGET_MILLIS_PROPERTY, "20");
+    }
+
+    @AfterEach
+    void closeAgent() throws IOException {
+        if (this.agent != null) this.agent.close();
+    }
+
+    @Test
+    void testFramesRoundTripAndRejectBadLengths() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AgentProtocol.write(Channels.newChannel(bytes), new Message(AgentProtocol.OP_GET, "github", "ünïcode"));
+        AgentProtocol.write(Channels.newChannel(bytes), new Message(AgentProtocol.STATUS_OK));
+
+        var in = Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(new Message(AgentProtocol.OP_GET, "github", "ünïcode"), AgentProtocol.read(in));
+        assertEquals(new Message(AgentProtocol.STATUS_OK), AgentProtocol.read(in));
+        assertNull(AgentProtocol.read(in));
+
+        byte[] oversized = { 0x7F, 0, 0, 0, 1 };
+        assertThrows(IOException.class, () -> AgentProtocol.read(Channels.newChannel(new ByteArrayInputStream(oversized))));
+        byte[] truncated = { 0, 0, 0, 10, 1, 0 };
+        assertThrows(IOException.class, () -> AgentProtocol.read(Channels.newChannel(new ByteArrayInputStream(truncated))));
+    }
+
+    @Test
+    void testWriteRejectsMessagesAFrameCannotHold() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        List<String> tooMany = Collections.nCopies(AgentProtocol.MAX_FIELD_COUNT + 1, "");
+        assertThrows(IOException.class, () -> AgentProtocol.write(
+            Channels.newChannel(bytes), new Message(AgentProtocol.STATUS_OK, tooMany)
+        ));
+
+        List<String> tooLarge = Collections.nCopies(20, "x".repeat(60_000));
+        assertThrows(IOException.class, () -> AgentProtocol.write(
+            Channels.newChannel(bytes), new Message(AgentProtocol.STATUS_OK, tooLarge)
+        ));
+        assertEquals(0, bytes.size());
+
+        // Modified UTF-8: one byte for ASCII, two for "ç" and the NUL character, three for "€"
+        assertEquals(Short.BYTES + 1 + 1 + 2 + 2 + 3, AgentProtocol.fieldLength("abç\0€"));
+    }
+
+    @Test
+    void testListLargerThanAFrameIsSplit() throws Exception {
+        Path socket = this.startAgent(Duration.ofMinutes(1));
+
+        try (AgentClient client = new AgentClient(socket)) {
+            assertEquals(AgentProtocol.STATUS_OK, client.send(new Message(AgentProtocol.OP_UNLOCK, MASTER_PASSWORD)).code());
+
+            // Twenty names of 60 KB each need two frames
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                String name = (char) ('a' + i) + "x".repeat(60_000);
+                assertEquals(AgentProtocol.STATUS_OK, client.send(new Message(AgentProtocol.OP_ADD, name)).code());
+                names.add(name);
+            }
+
+            Message listed = client.send(new Message(AgentProtocol.OP_LIST));
+            assertEquals(AgentProtocol.STATUS_OK, listed.code());
+            assertEquals(names, listed.fields());
+        }
+    }
+
+    @Test
+    void testClientsUnlockAddAndGetOverTheSocket() throws Exception {
+        Path socket = this.startAgent(Duration.ofMinutes(1));
+
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(socket)));
+        }
+
+        try (AgentClient client = new AgentClient(socket)) {
+            assertEquals(AgentProtocol.STATUS_LOCKED, client.send(new Message(AgentProtocol.OP_GET, "github")).code());
+            assertEquals(AgentProtocol.STATUS_ERROR, client.send(new Message(AgentProtocol.OP_UNLOCK, "wrong")).code());
+            assertEquals(AgentProtocol.STATUS_OK, client.send(new Message(AgentProtocol.OP_UNLOCK, MASTER_PASSWORD)).code());
+
+            Message added = client.send(new Message(AgentProtocol.OP_ADD, "github"));
+            assertEquals(AgentProtocol.STATUS_OK, added.code());
+            assertEquals(added.fields(), client.send(new Message(AgentProtocol.OP_GET, "github")).fields());
+            assertEquals(List.of("github"), client.send(new Message(AgentProtocol.OP_LIST)).fields());
+
+            assertEquals(AgentProtocol.STATUS_OK, client.send(new Message(AgentProtocol.OP_LOCK)).code());
+            assertEquals(AgentProtocol.STATUS_LOCKED, client.send(new Message(AgentProtocol.OP_GET, "github")).code());
+        }
+    }
+
+    @Test
+    void testIdleAgentLocksItself() throws Exception {
+        Path socket = this.startAgent(Duration.ofMillis(200));
+
+        try (AgentClient client = new AgentClient(socket)) {
+            assertEquals(AgentProtocol.STATUS_OK, client.send(new Message(AgentProtocol.OP_UNLOCK, MASTER_PASSWORD)).code());
+            assertTrue(this.agent.isUnlocked());
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (this.agent.isUnlocked() && System.currentTimeMillis() < deadline) Thread.sleep(50);
+
+            assertFalse(this.agent.isUnlocked());
+            assertEquals(AgentProtocol.STATUS_LOCKED, client.send(new Message(AgentProtocol.OP_LIST)).code());
+        }
+    }
+
+    // Auxiliary methods
+
+    private Path startAgent(Duration idleTimeout) throws Exception {
+        AESCryptoService cryptoService = new AESCryptoService();
+        PasswordManager manager = new PasswordManager(
+            cryptoService,
+            new PasswordEntryService(tempDir.resolve("passwords.pwd")),
+            new MasterPasswordService(tempDir.resolve("master.pwd")),
+            new AttachmentService(cryptoService, tempDir.resolve("attachments"))
+        );
+        manager.saveMasterPassword(MASTER_PASSWORD);
+
+        Path socket = tempDir.resolve("agent.sock");
+        this.agent = new AgentServer(manager, socket, idleTimeout);
+        this.agent.bind();
+        Thread.ofPlatform().daemon().start(() -> {
+            try {
+                this.agent.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        return socket;
+    }
+}
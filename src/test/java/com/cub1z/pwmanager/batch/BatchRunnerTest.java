@@ -0,0 +1,151 @@
+package com.cub1z.pwmanager.batch;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import com.cub1z.pwmanager.PasswordManager;
+import com.cub1z.pwmanager.config.Constants;
+import com.cub1z.pwmanager.service.AESCryptoService;
+import com.cub1z.pwmanager.service.AttachmentService;
+import com.cub1z.pwmanager.service.MasterPasswordService;
+import com.cub1z.pwmanager.service.PasswordEntryService;
+
+public class BatchRunnerTest {
+    private static final String MASTER_PASSWORD = "SecurePass123!";
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void fastKdf() {
+        System.setProperty(Constants.KDF_TARGET_MILLIS_PROPERTY, "20");
+    }
+
+    @Test
+    void testCommandsRunInInputOrder() throws Exception {
+        try (PasswordManager manager = newManager()) {
+            manager.saveMasterPassword(MASTER_PASSWORD);
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+
+            StringBuilder input = new StringBuilder("# Comments and blank lines are skipped\n\n");
+            for (int i = 0; i < 50; i++) input.append("add service").append(i).append('\n');
+            input.append("get service7\n").append("delete service7\n").append("get service7\n");
+
+            StringWriter output = new StringWriter();
+            BatchRunner.Summary summary = new BatchRunner(manager, null).run(new StringReader(input.toString()), output);
+
+            List<String> lines = output.toString().lines().toList();
+            assertEquals(53, lines.size());
+            for (int i = 0; i < 50; i++) {
+                assertTrue(lines.get(i).startsWith("{\"line\":" + (i + 3) + ",\"op\":\"add\",\"service\":\"service" + i + "\",\"status\":\"ok\""));
+            }
+
+            // The get sees the add before it, and the last get the delete before it
+            assertTrue(lines.get(50).contains("\"status\":\"ok\""));
+            assertEquals(49, manager.getSavedPasswordCount());
+            assertTrue(lines.get(51).endsWith("\"op\":\"delete\",\"service\":\"service7\",\"status\":\"ok\"}"));
+            assertTrue(lines.get(52).contains("\"status\":\"error\""));
+            assertEquals(new BatchRunner.Summary(52, 1), summary);
+        }
+    }
+
+    @Test
+    void testMalformedLinesAreReportedAndCounted() throws Exception {
+        try (PasswordManager manager = newManager()) {
+            manager.saveMasterPassword(MASTER_PASSWORD);
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+
+            StringWriter output = new StringWriter();
+            BatchRunner.Summary summary = new BatchRunner(manager, null).run(
+                new StringReader("frobnicate github\nget\nADD github\n"), output
+            );
+
+            assertEquals(List.of(
+                "{\"line\":1,\"op\":\"frobnicate\",\"service\":\"github\",\"status\":\"error\",\"error\":\"Unknown command: frobnicate\"}",
+                "{\"line\":2,\"op\":\"get\",\"service\":null,\"status\":\"error\",\"error\":\"Missing service name\"}"
+            ), output.toString().lines().limit(2).toList());
+            assertTrue(output.toString().lines().toList().get(2).contains("\"op\":\"add\",\"service\":\"github\",\"status\":\"ok\""));
+            assertEquals(new BatchRunner.Summary(1, 2), summary);
+        }
+    }
+
+    @Test
+    void testOutputIsEscapedAsJson() throws Exception {
+        try (PasswordManager manager = newManager()) {
+            manager.saveMasterPassword(MASTER_PASSWORD);
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+
+            StringWriter output = new StringWriter();
+            new BatchRunner(manager, null).run(new StringReader("bogus say \"hi\"\\\tthere\u0001\n"), output);
+
+            assertEquals(
+                "{\"line\":1,\"op\":\"bogus\",\"service\":\"say \\\"hi\\\"\\\\\\tthere\\u0001\",\"status\":\"error\",\"error\":\"Unknown command: bogus\"}\n",
+                output.toString()
+            );
+        }
+    }
+
+    @Test
+    void testErrorsIncludeTheirCause() throws Exception {
+        try (PasswordManager manager = newManager()) {
+            manager.saveMasterPassword(MASTER_PASSWORD);
+
+            // The manager wraps the locked vault error in a generic one
+            StringWriter output = new StringWriter();
+            BatchRunner.Summary summary = new BatchRunner(manager, null).run(new StringReader("get github\n"), output);
+
+            assertEquals(new BatchRunner.Summary(0, 1), summary);
+            assertTrue(output.toString().contains("\"error\":\"Error retrieving password entry: Vault is locked"), output.toString());
+        }
+    }
+
+    @Test
+    void testFailingOutputDoesNotHangTheRun() throws Exception {
+        try (PasswordManager manager = newManager()) {
+            manager.saveMasterPassword(MASTER_PASSWORD);
+            assertTrue(manager.authenticate(MASTER_PASSWORD));
+
+            // More results than the queues hold, so the executor would block on a dead writer
+            String input = "bogus github\n".repeat(5_000);
+            Writer broken = new Writer() {
+                @Override
+                public void write(char[] buffer, int offset, int length) throws IOException {
+                    throw new IOException("Disk full");
+                }
+
+                @Override
+                public void flush() {}
+
+                @Override
+                public void close() {}
+            };
+
+            IOException e = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(
+                IOException.class, () -> new BatchRunner(manager, null).run(new StringReader(input), broken)
+            ));
+            assertEquals("Disk full", e.getMessage());
+        }
+    }
+
+    // Auxiliary methods
+
+    private PasswordManager newManager() {
+        AESCryptoService cryptoService = new AESCryptoService();
+        return new PasswordManager(
+            cryptoService,
+            new PasswordEntryService(tempDir.resolve("passwords.pwd")),
+            new MasterPasswordService(tempDir.resolve("master.pwd")),
+            new AttachmentService(cryptoService, tempDir.resolve("attachments"))
+        );
+    }
+}
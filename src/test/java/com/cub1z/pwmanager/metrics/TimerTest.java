@@ -0,0 +1,30 @@
+package com.cub1z.pwmanager.metrics;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimerTest {
+    @Test
+    void testPercentilesAreBucketUpperBounds() {
+        Timer timer = new Timer();
+        for (int i = 0; i < 990; i++) timer.record(1_000);
+        for (int i = 0; i < 10; i++) timer.record(1_000_000);
+
+        Timer.Snapshot snapshot = timer.snapshot();
+        assertEquals(1_000, snapshot.count());
+        assertEquals(1_000_000, snapshot.maxNanos());
+        assertEquals(1_023, snapshot.p50Nanos());
+        assertEquals(1_023, snapshot.p99Nanos());
+        assertEquals(1_000_000, snapshot.p999Nanos());
+        assertEquals(10_990.0, snapshot.meanNanos(), 0.001);
+    }
+
+    @Test
+    void testRegistryReturnsTheSameInstruments() {
+        assertSame(Metrics.counter("test.counter"), Metrics.counter("test.counter"));
+        assertSame(Metrics.timer("test.timer"), Metrics.timer("test.timer"));
+
+        Metrics.counter("test.counter").add(3);
+        assertTrue(Metrics.dump().contains("test.counter"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.cub1z.pwmanager.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+import com.cub1z.pwmanager.utils.FileUtils;
+
+public class AccessStatsStoreTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEveryBatchOfAccessesIsFlushed() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd.stats");
+
+        try (AccessStatsStore store = new AccessStatsStore(file)) {
+            for (int batch = 1; batch <= 3; batch++) {
+                for (int i = 0; i < AccessStatsStore.FLUSH_DIRTY_THRESHOLD; i++) {
+                    store.record("batch" + batch + "-service" + i, 1_000L * batch);
+                }
+
+                // Each batch reaching the threshold is flushed, long before the periodic flush
+                int expected = batch * AccessStatsStore.FLUSH_DIRTY_THRESHOLD;
+                long deadline = System.currentTimeMillis() + 10_000;
+                while (storedCount(file) < expected && System.currentTimeMillis() < deadline) Thread.sleep(10);
+                assertEquals(expected, storedCount(file), "Batch " + batch + " was not flushed");
+            }
+        }
+    }
+
+    @Test
+    void testFailedFlushIsRetriedOnTheNextAccess() throws Exception {
+        Path directory = tempDir.resolve("missing");
+        Path file = directory.resolve("passwords.pwd.stats");
+
+        try (AccessStatsStore store = new AccessStatsStore(file)) {
+            // The directory does not exist yet, so the flush at the threshold fails
+            for (int i = 0; i < AccessStatsStore.FLUSH_DIRTY_THRESHOLD; i++) store.record("service" + i, 1_000L);
+            Thread.sleep(200);
+            assertEquals(0, storedCount(file));
+
+            Files.createDirectories(directory);
+            store.record("github", 2_000L);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (storedCount(file) == 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertEquals(AccessStatsStore.FLUSH_DIRTY_THRESHOLD + 1, storedCount(file));
+        }
+    }
+
+    @Test
+    void testClosedStoreStaysUsable() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd.stats");
+        AccessStatsStore store = new AccessStatsStore(file);
+        store.record("github", 1_000L);
+        store.close();
+        assertEquals(1, storedCount(file));
+
+        // Accesses racing with the close neither fail nor schedule on the stopped flusher
+        for (int i = 0; i < AccessStatsStore.FLUSH_DIRTY_THRESHOLD; i++) store.record("late" + i, 2_000L);
+        store.close();
+
+        try (AccessStatsStore reopened = new AccessStatsStore(file)) {
+            assertEquals(1_000L, reopened.getLastAccessedAt("github"));
+        }
+    }
+
+    // Auxiliary methods
+
+    private static int storedCount(Path file) throws Exception {
+        return FileUtils.readObjectFromFile(file, HashMap.class).map(map -> map.size()).orElse(0);
+    }
+}
@@ -0,0 +1,124 @@
+package com.cub1z.pwmanager.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+
+public class PasswordEntryRepositoryConcurrencyTest {
+    private static final int WRITERS = 8;
+    private static final int ENTRIES_PER_WRITER = 750;
+    private static final int READERS = 4;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testConcurrentWritersLoseNoUpdates() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd");
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger inconsistentSnapshots = new AtomicInteger();
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ENTRIES_PER_WRITER; i++) {
+                        String name = "writer" + writer + "-service" + i;
+                        repository.saveEntry(new PasswordEntry(name, new byte[] { (byte) writer, (byte) i }), false);
+
+                        // Delete every fourth entry again to mix mutation types
+                        if (i % 4 == 3) repository.deleteEntry(name);
+                    }
+                    return null;
+                }));
+            }
+
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; r++) {
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    while (writing.get()) {
+                        // A snapshot must never change while it is being iterated
+                        Map<String, PasswordEntry> snapshot = repository.snapshot();
+                        int size = snapshot.size();
+                        int iterated = 0;
+                        for (PasswordEntry entry : snapshot.values()) {
+                            assertNotNull(entry.getEncryptedPassword());
+                            iterated++;
+                        }
+                        if (iterated != size) inconsistentSnapshots.incrementAndGet();
+
+                        repository.getEntry("writer0-service0");
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> writer : writers) writer.get(60, TimeUnit.SECONDS);
+            writing.set(false);
+            for (Future<?> reader : readers) reader.get(60, TimeUnit.SECONDS);
+
+            int expected = WRITERS * (ENTRIES_PER_WRITER - ENTRIES_PER_WRITER / 4);
+            assertEquals(expected, repository.count());
+            assertEquals(expected, repository.getAllEntries().size());
+            assertEquals(0, inconsistentSnapshots.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (PasswordEntryRepository reloaded = new PasswordEntryRepository(file)) {
+            assertEquals(WRITERS * (ENTRIES_PER_WRITER - ENTRIES_PER_WRITER / 4), reloaded.count());
+        }
+    }
+
+    @Test
+    void testConcurrentInsertsOfSameServiceHaveOneWinner() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd");
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger winners = new AtomicInteger();
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        repository.saveEntry(new PasswordEntry("shared", new byte[] { 1 }), false);
+                        winners.incrementAndGet();
+                    } catch (IllegalArgumentException expected) {
+                        // Another writer got there first
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> writer : writers) writer.get(60, TimeUnit.SECONDS);
+
+            assertEquals(1, winners.get());
+            assertEquals(1, repository.count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
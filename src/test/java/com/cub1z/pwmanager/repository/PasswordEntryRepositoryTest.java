@@ -0,0 +1,364 @@
+package com.cub1z.pwmanager.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.utils.FileUtils;
+
+public class PasswordEntryRepositoryTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMutationsAreReplayedFromLog() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd");
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            repository.saveEntry(new PasswordEntry("github", new byte[] { 1, 2, 3 }), false);
+            repository.saveEntry(new PasswordEntry("gitlab", new byte[] { 4, 5, 6 }), false);
+            repository.saveEntry(new PasswordEntry("github", new byte[] { 7, 8, 9 }), true);
+            repository.deleteEntry("gitlab");
+        }
+
+        try (PasswordEntryRepository reloaded = new PasswordEntryRepository(file)) {
+            assertEquals(1, reloaded.count());
+            assertArrayEquals(new byte[] { 7, 8, 9 }, reloaded.getEntry("github").getEncryptedPassword());
+            assertNull(reloaded.getEntry("gitlab"));
+        }
+    }
+
+    @Test
+    void testMutationsEmitStorageEvents() throws Exception {
+        Path recordingFile = tempDir.resolve("storage.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.cub1z.pwmanager.VaultStorage");
+            recording.start();
+
+            try (PasswordEntryRepository repository = new PasswordEntryRepository(tempDir.resolve("passwords.pwd"))) {
+                repository.saveEntry(new PasswordEntry("github", new byte[] { 1, 2, 3 }), false);
+                repository.saveEntries(List.of(
+                    new PasswordEntry("gitlab", new byte[] { 4 }), new PasswordEntry("bitbucket", new byte[] { 5 })
+                ), false);
+                repository.deleteEntry("gitlab");
+            }
+
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        List<RecordedEvent> mutations = RecordingFile.readAllEvents(recordingFile).stream()
+            .filter(event -> !event.getString("operation").equals("load"))
+            .toList();
+        assertEquals(List.of("save", "save batch", "delete"), mutations.stream().map(event -> event.getString("operation")).toList());
+        assertEquals(List.of(1, 2, 1), mutations.stream().map(event -> event.getInt("entryCount")).toList());
+        assertTrue(mutations.get(2).getLong("bytes") > mutations.get(0).getLong("bytes"), "Events should carry the log size");
+    }
+
+    @Test
+    void testTornLogTailIsDiscarded() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd");
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            repository.saveEntry(new PasswordEntry("github", new byte[] { 1, 2, 3 }), false);
+        }
+
+        // Simulate a crash in the middle of an append
+        Files.write(tempDir.resolve("passwords.pwd.log"), new byte[] { 0, 0, 0, 42, 1 }, StandardOpenOption.APPEND);
+
+        try (PasswordEntryRepository reloaded = new PasswordEntryRepository(file)) {
+            assertEquals(1, reloaded.count());
+            reloaded.saveEntry(new PasswordEntry("gitlab", new byte[] { 4 }), false);
+        }
+
+        try (PasswordEntryRepository reloaded = new PasswordEntryRepository(file)) {
+            assertEquals(2, reloaded.count());
+        }
+    }
+
+    @Test
+    void testDamagedLogBeforeItsTailFailsTheLoad() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd");
+        Path logFile = tempDir.resolve("passwords.pwd.log");
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            repository.saveEntry(new PasswordEntry("github", new byte[] { 1, 2, 3 }), false);
+            repository.saveEntry(new PasswordEntry("gitlab", new byte[] { 4, 5, 6 }), false);
+        }
+
+        // The damaged record is followed by a committed one, which must not be dropped with it
+        byte[] log = Files.readAllBytes(logFile);
+        log[10] ^= 1;
+        Files.write(logFile, log);
+
+        assertThrows(UncheckedIOException.class, () -> new PasswordEntryRepository(file));
+        assertArrayEquals(log, Files.readAllBytes(logFile));
+    }
+
+    @Test
+    void testCompactionRewritesCheckpoint() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd");
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            for (int i = 0; i < 3000; i++) {
+                repository.saveEntry(new PasswordEntry("service" + (i % 500), new byte[] { (byte) i }), true);
+            }
+        }
+
+        assertTrue(Files.exists(file), "Compaction should have written a checkpoint");
+        assertFalse(Files.exists(tempDir.resolve("passwords.pwd.log.old")));
+
+        try (PasswordEntryRepository reloaded = new PasswordEntryRepository(file)) {
+            assertEquals(500, reloaded.count());
+            assertArrayEquals(new byte[] { (byte) 2999 }, reloaded.getEntry("service499").getEncryptedPassword());
+        }
+    }
+
+    @Test
+    void testAccessTimesAreKeptOutOfTheVault() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd");
+        Path logFile = tempDir.resolve("passwords.pwd.log");
+        long accessedAt;
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            repository.saveEntry(new PasswordEntry("github", new byte[] { 1, 2, 3 }), false);
+            long logSize = Files.size(logFile);
+
+            Thread.sleep(5);
+            repository.updateLastAccessedAt("github");
+            accessedAt = repository.getEntry("github").getLastAccessedAt().getTime();
+
+            assertEquals(logSize, Files.size(logFile), "Lookups should not write to the vault");
+        }
+
+        try (PasswordEntryRepository reloaded = new PasswordEntryRepository(file)) {
+            assertEquals(accessedAt, reloaded.getEntry("github").getLastAccessedAt().getTime());
+        }
+    }
+
+    @Test
+    void testAccessesLeaveSnapshotsAndDeletedEntriesAlone() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd");
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            repository.saveEntry(new PasswordEntry("github", new byte[] { 1, 2, 3 }), false);
+            Map<String, PasswordEntry> before = repository.snapshot();
+            Date accessedBefore = before.get("github").getLastAccessedAt();
+
+            Thread.sleep(5);
+            repository.updateLastAccessedAt("github");
+            assertEquals(accessedBefore, before.get("github").getLastAccessedAt());
+            assertTrue(repository.snapshot().get("github").getLastAccessedAt().after(accessedBefore));
+            assertArrayEquals(new byte[] { 1, 2, 3 }, repository.getEntry("github").getEncryptedPassword());
+
+            // An access racing a delete never brings the entry back into the index or the statistics
+            for (int i = 0; i < 200; i++) {
+                repository.saveEntry(new PasswordEntry("gitlab", new byte[] { 4 }), false);
+                Thread reader = Thread.ofPlatform().start(() -> {
+                    try {
+                        repository.updateLastAccessedAt("gitlab");
+                    } catch (IllegalArgumentException | IOException e) {
+                        // Deleted first
+                    }
+                });
+                repository.deleteEntry("gitlab");
+                reader.join();
+
+                assertNull(repository.getEntry("gitlab"));
+                assertEquals(List.of("github"), repository.query(
+                    EntryTimestamp.LAST_ACCESSED_AT, null, null, false, Long.MAX_VALUE
+                ).map(PasswordEntry::getServiceName).toList());
+            }
+        }
+
+        try (AccessStatsStore stats = new AccessStatsStore(tempDir.resolve("passwords.pwd.stats"))) {
+            assertNotNull(stats.getLastAccessedAt("github"));
+            assertNull(stats.getLastAccessedAt("gitlab"));
+        }
+    }
+
+    @Test
+    void testSerializedVaultIsMigratedOnFirstOpen() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd");
+        HashMap<String, PasswordEntry> legacy = new HashMap<>();
+        legacy.put("github", new PasswordEntry("github", new byte[] { 1, 2, 3 }));
+        legacy.put("gitlab", new PasswordEntry("gitlab", new byte[] { 4, 5, 6 }));
+        FileUtils.writeObjectToFile(file, legacy);
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            assertEquals(2, repository.count());
+        }
+
+        assertTrue(VaultFile.isVaultFile(file));
+
+        try (PasswordEntryRepository reloaded = new PasswordEntryRepository(file)) {
+            PasswordEntry entry = reloaded.getEntry("gitlab");
+            assertArrayEquals(new byte[] { 4, 5, 6 }, entry.getEncryptedPassword());
+            assertEquals(legacy.get("gitlab").getCreatedAt(), entry.getCreatedAt());
+        }
+    }
+
+    @Test
+    void testCheckpointEntriesOutliveTheirFile() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd");
+        VaultFile.write(file, List.of(new PasswordEntry("github", new byte[] { 1, 2, 3 })));
+        PasswordEntry loaded = VaultFile.read(file).get("github");
+
+        // Loaded entries hold no reference to the file, so the next checkpoint can replace it
+        Path next = tempDir.resolve("passwords.pwd.tmp");
+        VaultFile.write(next, List.of(new PasswordEntry("github", new byte[] { 4, 5, 6 })));
+        FileUtils.moveAtomically(next, file);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, loaded.getEncryptedPassword());
+
+        // Lazily decoded entries serialize their ciphertext
+        Path serialized = tempDir.resolve("entry.ser");
+        FileUtils.writeObjectToFile(serialized, loaded);
+        PasswordEntry copy = FileUtils.readObjectFromFile(serialized, PasswordEntry.class).orElseThrow();
+        assertArrayEquals(new byte[] { 1, 2, 3 }, copy.getEncryptedPassword());
+        assertEquals(loaded.getCreatedAt(), copy.getCreatedAt());
+    }
+
+    @Test
+    void testQueriesStreamEntriesInTimestampOrder() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd");
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            for (int i = 0; i < 5; i++) {
+                Date date = new Date(1_000L * (i + 1));
+                repository.saveEntry(new PasswordEntry("service" + i, new byte[] { (byte) i }, date, date, date), false);
+            }
+
+            repository.updateLastAccessedAt("service1");
+            repository.deleteEntry("service3");
+
+            assertEquals(List.of("service1", "service4", "service2"), repository
+                .query(EntryTimestamp.LAST_ACCESSED_AT, null, null, true, 3)
+                .map(PasswordEntry::getServiceName).toList());
+
+            // Not accessed before 3s: only the untouched old entries
+            assertEquals(List.of("service0", "service2"), repository
+                .query(EntryTimestamp.LAST_ACCESSED_AT, null, new Date(3_001L), false, Long.MAX_VALUE)
+                .map(PasswordEntry::getServiceName).toList());
+        }
+
+        try (PasswordEntryRepository reloaded = new PasswordEntryRepository(file)) {
+            assertEquals(List.of("service0", "service1"), reloaded
+                .query(EntryTimestamp.CREATED_AT, new Date(0), new Date(2_500L), false, 10)
+                .map(PasswordEntry::getServiceName).toList());
+        }
+    }
+
+    @Test
+    void testPagesFollowTheRequestedOrder() throws Exception {
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(tempDir.resolve("passwords.pwd"))) {
+            for (String name : List.of("delta", "Alpha", "charlie", "Bravo", "echo")) {
+                repository.saveEntry(new PasswordEntry(name, new byte[] { 1 }), false);
+            }
+
+            assertEquals(List.of("Alpha", "Bravo"), names(repository.page(EntrySort.NAME, 0, 2)));
+            assertEquals(List.of("charlie", "delta"), names(repository.page(EntrySort.NAME, 2, 2)));
+            assertEquals(List.of("echo"), names(repository.page(EntrySort.NAME, 4, 2)));
+            assertTrue(repository.page(EntrySort.NAME, 6, 2).isEmpty());
+            assertEquals(2, repository.page(EntrySort.RECENTLY_USED, 0, 2).size());
+        }
+    }
+
+    @Test
+    void testCursorPagesSeekPastThePreviousPage() throws Exception {
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(tempDir.resolve("passwords.pwd"))) {
+            List<String> names = List.of("delta", "Alpha", "charlie", "Bravo", "echo");
+            for (int i = 0; i < names.size(); i++) {
+                Date createdAt = new Date(1_000L * (i + 1));
+                repository.saveEntry(new PasswordEntry(names.get(i), new byte[] { 1 }, createdAt, createdAt, createdAt), false);
+            }
+
+            for (EntrySort sort : EntrySort.values()) {
+                List<String> pagedByCursor = new ArrayList<>();
+                List<PasswordEntry> page = repository.page(sort, (PageCursor) null, 2);
+                while (!page.isEmpty()) {
+                    pagedByCursor.addAll(names(page));
+                    page = repository.page(sort, PageCursor.after(sort, page.get(page.size() - 1)), 2);
+                }
+                assertEquals(names(repository.page(sort, 0, names.size())), pagedByCursor, sort.name());
+            }
+
+            // A cursor stays valid when its entry is deleted
+            PageCursor afterBravo = PageCursor.after(EntrySort.NAME, repository.getEntry("Bravo"));
+            repository.deleteEntry("Bravo");
+            assertEquals(List.of("charlie", "delta"), names(repository.page(EntrySort.NAME, afterBravo, 2)));
+            assertThrows(IllegalArgumentException.class, () -> repository.page(EntrySort.OLDEST_FIRST, afterBravo, 2));
+        }
+    }
+
+    @Test
+    void testReshardedVaultOnlyRewritesMutatedShards() throws Exception {
+        Path file = tempDir.resolve("passwords.pwd");
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            for (int i = 0; i < 50; i++) repository.saveEntry(new PasswordEntry("service" + i, new byte[] { (byte) i }), false);
+            repository.reshard(8);
+            assertEquals(8, repository.getShardCount());
+        }
+
+        assertFalse(VaultFile.isVaultFile(file));
+        Map<Path, Object> before = shardFileKeys();
+        assertEquals(8, before.size());
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            assertEquals(50, repository.count());
+
+            // Enough overwrites of one entry to trigger a compaction
+            for (int i = 0; i < 1100; i++) repository.saveEntry(new PasswordEntry("service7", new byte[] { 7, (byte) i }), true);
+        }
+
+        Map<Path, Object> after = shardFileKeys();
+        assertEquals(before.keySet(), after.keySet());
+        assertEquals(1, before.keySet().stream().filter(shard -> !before.get(shard).equals(after.get(shard))).count());
+
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            assertEquals(50, repository.count());
+            assertArrayEquals(new byte[] { 7, (byte) 1099 }, repository.getEntry("service7").getEncryptedPassword());
+
+            repository.reshard(1);
+        }
+
+        assertTrue(VaultFile.isVaultFile(file));
+        assertTrue(shardFileKeys().isEmpty());
+        try (PasswordEntryRepository repository = new PasswordEntryRepository(file)) {
+            assertEquals(50, repository.count());
+        }
+    }
+
+    private Map<Path, Object> shardFileKeys() throws Exception {
+        Map<Path, Object> keys = new HashMap<>();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            for (Path shard : files.filter(path -> path.getFileName().toString().contains(".shard-")).toList()) {
+                keys.put(shard, Files.readAttributes(shard, BasicFileAttributes.class).fileKey());
+            }
+        }
+        return keys;
+    }
+
+    private static List<String> names(List<PasswordEntry> entries) {
+        return entries.stream().map(PasswordEntry::getServiceName).toList();
+    }
+}
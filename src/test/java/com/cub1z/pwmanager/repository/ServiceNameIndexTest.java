@@ -0,0 +1,41 @@
+package com.cub1z.pwmanager.repository;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+public class ServiceNameIndexTest {
+    private final ServiceNameIndex index = new ServiceNameIndex(List.of(
+        "GitHub", "GitLab", "github (alice)", "Bitbucket", "Google Mail", "My Bank"
+    ));
+
+    @Test
+    void testResultsAreRankedExactPrefixThenSubstring() {
+        assertEquals(List.of("GitHub", "GitLab", "github (alice)"), index.search("git", 10));
+
+        List<String> results = index.search("github", 10);
+        assertEquals("GitHub", results.get(0));
+        assertEquals("github (alice)", results.get(1));
+
+        assertEquals(List.of("Bitbucket"), index.search("BUCK", 10));
+        assertEquals(List.of("Google Mail"), index.search("ma", 10));
+    }
+
+    @Test
+    void testTyposStillMatch() {
+        assertEquals("GitHub", index.search("githbu", 10).get(0));
+        assertEquals("Bitbucket", index.search("bitbukcet", 10).get(0));
+        assertTrue(index.search("zzzz", 10).isEmpty());
+    }
+
+    @Test
+    void testRemovedNamesAreNoLongerFound() {
+        index.remove("GitLab");
+        index.add("GitLab CI");
+
+        assertFalse(index.search("gitlab", 10).contains("GitLab"));
+        assertEquals(List.of("GitLab CI"), index.search("lab", 10));
+        assertEquals(6, index.size());
+    }
+}
@@ -0,0 +1,83 @@
+package com.cub1z.pwmanager.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+
+public class SnapshotStoreTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSnapshotsStoreOnlyChangesAndRestoreAnyPoint() throws Exception {
+        SnapshotStore store = new SnapshotStore(tempDir, 10);
+        Map<String, PasswordEntry> vault = new HashMap<>();
+        for (int i = 0; i < 100; i++) put(vault, "service-" + i, new byte[64]);
+
+        SnapshotStore.Snapshot base = store.take(Map.copyOf(vault), null).orElseThrow();
+        assertEquals(100, base.changed());
+        assertTrue(store.take(Map.copyOf(vault), null).isEmpty());
+
+        put(vault, "service-7", new byte[] { 7 });
+        vault.remove("service-8");
+        SnapshotStore.Snapshot delta = store.take(Map.copyOf(vault), null).orElseThrow();
+        assertEquals(1, delta.changed());
+        assertEquals(1, delta.removed());
+        assertEquals(99, delta.entries());
+        assertTrue(delta.bytes() < base.bytes() / 10);
+
+        Map<String, PasswordEntry> restored = store.restore(base.id()).entries();
+        assertEquals(100, restored.size());
+        assertArrayEquals(new byte[64], restored.get("service-7").getEncryptedPassword());
+
+        restored = new SnapshotStore(tempDir, 10).restore(delta.id()).entries();
+        assertEquals(99, restored.size());
+        assertArrayEquals(new byte[] { 7 }, restored.get("service-7").getEncryptedPassword());
+        assertNull(restored.get("service-8"));
+    }
+
+    @Test
+    void testRetentionFoldsTheOldestSnapshots() throws Exception {
+        SnapshotStore store = new SnapshotStore(tempDir, 2);
+        Map<String, PasswordEntry> vault = new HashMap<>();
+        put(vault, "github", new byte[] { 1 });
+        store.take(Map.copyOf(vault), null);
+        put(vault, "gitlab", new byte[] { 2 });
+        store.take(Map.copyOf(vault), null);
+        put(vault, "github", new byte[] { 3 });
+        store.take(Map.copyOf(vault), null);
+
+        List<SnapshotStore.Snapshot> snapshots = new SnapshotStore(tempDir, 2).list();
+        assertEquals(List.of(2L, 3L), snapshots.stream().map(SnapshotStore.Snapshot::id).toList());
+        assertEquals(2, snapshotFiles());
+
+        Map<String, PasswordEntry> restored = store.restore(2).entries();
+        assertArrayEquals(new byte[] { 1 }, restored.get("github").getEncryptedPassword());
+        assertArrayEquals(new byte[] { 2 }, restored.get("gitlab").getEncryptedPassword());
+        assertArrayEquals(new byte[] { 3 }, store.restore(3).entries().get("github").getEncryptedPassword());
+        assertThrows(IllegalArgumentException.class, () -> store.restore(1));
+    }
+
+    // Auxiliary methods
+
+    private static void put(Map<String, PasswordEntry> vault, String serviceName, byte[] encryptedPassword) {
+        Date now = new Date(1_700_000_000_000L);
+        vault.put(serviceName, new PasswordEntry(serviceName, encryptedPassword, now, now, now));
+    }
+
+    private long snapshotFiles() throws Exception {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(file -> file.toString().endsWith(".snap")).count();
+        }
+    }
+}
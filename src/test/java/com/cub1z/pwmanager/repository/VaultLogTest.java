@@ -0,0 +1,247 @@
+package com.cub1z.pwmanager.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.cub1z.pwmanager.metrics.Metrics;
+import com.cub1z.pwmanager.model.PasswordEntry;
+
+public class VaultLogTest {
+    private static final int WRITERS = 16;
+    private static final int APPENDS_PER_WRITER = 200;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testConcurrentSyncsShareForces() throws Exception {
+        Path path = tempDir.resolve("passwords.pwd.log");
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch appended = new CountDownLatch(WRITERS);
+
+        try (VaultLog log = new VaultLog(path)) {
+            long forcesBefore = Metrics.timer("log.fsync").snapshot().count();
+
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(executor.submit(() -> {
+                    long position = log.appendPut(new PasswordEntry("service" + writer, new byte[] { (byte) writer }));
+
+                    // Every writer syncs once all of them have appended, so one force can cover them all
+                    appended.countDown();
+                    appended.await();
+                    log.sync(position);
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) writer.get(30, TimeUnit.SECONDS);
+
+            long forces = Metrics.timer("log.fsync").snapshot().count() - forcesBefore;
+            assertTrue(forces >= 1 && forces < WRITERS, "Expected the writers to share forces, got " + forces);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, PasswordEntry> entries = new HashMap<>();
+        assertEquals(WRITERS, VaultLog.replay(path, entries));
+    }
+
+    @Test
+    void testRotationDuringSyncsLosesNoAppends() throws Exception {
+        Path path = tempDir.resolve("passwords.pwd.log");
+        Path rotated = tempDir.resolve("passwords.pwd.log.old");
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        try (VaultLog log = new VaultLog(path)) {
+            List<Future<?>> writers = this.startWriters(executor, log);
+
+            Future<Integer> rotator = executor.submit(() -> {
+                int rotations = 0;
+                while (writing.get()) {
+                    log.rotateTo(rotated);
+                    rotations++;
+                }
+                return rotations;
+            });
+
+            for (Future<?> writer : writers) writer.get(60, TimeUnit.SECONDS);
+            writing.set(false);
+            assertTrue(rotator.get(30, TimeUnit.SECONDS) > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Every rotation appended to the same target, so the two files hold every append
+        Map<String, PasswordEntry> entries = new HashMap<>();
+        VaultLog.replay(rotated, entries);
+        VaultLog.replay(path, entries);
+        assertEquals(WRITERS * APPENDS_PER_WRITER, entries.size());
+    }
+
+    @Test
+    void testTruncateDuringSyncsKeepsTheLogReplayable() throws Exception {
+        Path path = tempDir.resolve("passwords.pwd.log");
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        try (VaultLog log = new VaultLog(path)) {
+            List<Future<?>> writers = this.startWriters(executor, log);
+
+            Future<?> truncator = executor.submit(() -> {
+                while (writing.get()) {
+                    log.truncate();
+                    Thread.sleep(1);
+                }
+                return null;
+            });
+
+            for (Future<?> writer : writers) writer.get(60, TimeUnit.SECONDS);
+            writing.set(false);
+            truncator.get(30, TimeUnit.SECONDS);
+
+            // Appends after the last truncation are all there, and none was torn by it
+            log.sync(log.appendPut(new PasswordEntry("last", new byte[] { 1 })));
+            Map<String, PasswordEntry> entries = new HashMap<>();
+            assertEquals(log.getRecordCount(), VaultLog.replay(path, entries));
+            assertTrue(entries.containsKey("last"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testOnlyADamagedLastFrameIsDiscarded() throws Exception {
+        Path path = tempDir.resolve("passwords.pwd.log");
+        try (VaultLog log = new VaultLog(path)) {
+            log.appendPut(new PasswordEntry("github", new byte[] { 1 }));
+            log.appendPut(new PasswordEntry("gitlab", new byte[] { 2 }));
+        }
+        byte[] committed = Files.readAllBytes(path);
+
+        // Zeroes left where a torn append extended the file are a tail, and so is a damaged last frame
+        Files.write(path, new byte[64], StandardOpenOption.APPEND);
+        try (VaultLog log = new VaultLog(path)) {
+            assertEquals(2, log.getRecordCount());
+        }
+        assertArrayEquals(committed, Files.readAllBytes(path));
+
+        byte[] damagedLast = committed.clone();
+        damagedLast[damagedLast.length - 1] ^= 1;
+        Files.write(path, damagedLast);
+        try (VaultLog log = new VaultLog(path)) {
+            assertEquals(1, log.getRecordCount());
+        }
+
+        // A damaged frame followed by a committed one is not a torn append
+        byte[] damagedFirst = committed.clone();
+        damagedFirst[10] ^= 1;
+        Files.write(path, damagedFirst);
+        assertThrows(IOException.class, () -> VaultLog.replay(path, new HashMap<>()));
+        assertThrows(IOException.class, () -> new VaultLog(path));
+        assertArrayEquals(damagedFirst, Files.readAllBytes(path));
+    }
+
+    @Test
+    void testBatchCutShortIsDiscardedAsAWhole() throws Exception {
+        Path path = tempDir.resolve("passwords.pwd.log");
+        long single;
+        try (VaultLog log = new VaultLog(path)) {
+            log.appendPut(new PasswordEntry("github", new byte[] { 1 }));
+            single = log.size();
+            log.appendPuts(List.of(
+                new PasswordEntry("gitlab", new byte[] { 2 }),
+                new PasswordEntry("bitbucket", new byte[] { 3 }),
+                new PasswordEntry("codeberg", new byte[] { 4 })
+            ));
+        }
+
+        Map<String, PasswordEntry> entries = new HashMap<>();
+        assertEquals(4, VaultLog.replay(path, entries));
+
+        // A crash after the first records of the batch, but before its commit record
+        byte[] log = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(log, (int) (single + (log.length - single) * 2 / 3)));
+
+        entries.clear();
+        assertEquals(1, VaultLog.replay(path, entries));
+        assertEquals(Set.of("github"), entries.keySet());
+        try (VaultLog reopened = new VaultLog(path)) {
+            assertEquals(1, reopened.getRecordCount());
+            assertEquals(single, reopened.size());
+        }
+    }
+
+    @Test
+    void testLargeBatchIsWrittenInPieces() throws Exception {
+        Path path = tempDir.resolve("passwords.pwd.log");
+        List<PasswordEntry> batch = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) batch.add(new PasswordEntry("service" + i, new byte[64]));
+        // A record larger than the write buffer
+        batch.add(new PasswordEntry("large", new byte[256 * 1024]));
+
+        try (VaultLog log = new VaultLog(path)) {
+            log.sync(log.appendPuts(batch));
+            assertEquals(batch.size(), log.getRecordCount());
+        }
+
+        Map<String, PasswordEntry> entries = new HashMap<>();
+        assertEquals(batch.size(), VaultLog.replay(path, entries));
+        assertEquals(256 * 1024, entries.get("large").getEncryptedPassword().length);
+    }
+
+    @Test
+    void testRotationCutsATornTargetTail() throws Exception {
+        Path path = tempDir.resolve("passwords.pwd.log");
+        Path rotated = tempDir.resolve("passwords.pwd.log.old");
+
+        try (VaultLog log = new VaultLog(path)) {
+            log.appendPut(new PasswordEntry("github", new byte[] { 1 }));
+            log.rotateTo(rotated);
+
+            // A crash while moving a later log left part of a frame at the end of the target
+            Files.write(rotated, new byte[] { 0, 0, 0, 42, 1 }, StandardOpenOption.APPEND);
+            log.appendPut(new PasswordEntry("gitlab", new byte[] { 2 }));
+            log.rotateTo(rotated);
+        }
+
+        Map<String, PasswordEntry> entries = new HashMap<>();
+        assertEquals(2, VaultLog.replay(rotated, entries));
+        assertEquals(Set.of("github", "gitlab"), entries.keySet());
+    }
+
+    // Auxiliary methods
+
+    private List<Future<?>> startWriters(ExecutorService executor, VaultLog log) {
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < APPENDS_PER_WRITER; i++) {
+                    log.sync(log.appendPut(new PasswordEntry("writer" + writer + "-service" + i, new byte[] { (byte) i })));
+                }
+                return null;
+            }));
+        }
+        return writers;
+    }
+}
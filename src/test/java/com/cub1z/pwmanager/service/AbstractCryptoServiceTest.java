@@ -3,7 +3,14 @@ package com.cub1z.pwmanager.service;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
 import java.util.Arrays;
+import java.util.Random;
+
+import com.cub1z.pwmanager.model.VaultHeader;
 
 public abstract class AbstractCryptoServiceTest {
     protected abstract CryptoService getCryptoService();
@@ -110,4 +117,129 @@ public abstract class AbstractCryptoServiceTest {
         assertFalse(hashed.isEmpty(), "Hashed password should not be empty");
         assertNotEquals(password, hashed, "Hashed password should not match the original");
     }   
-}
\ No newline at end of file
+
+    @Test
+    void testEncryptAndDecryptWithVaultKey() throws Exception {
+        CryptoService service = getCryptoService();
+        VaultHeader header = service.generateVaultHeader();
+
+        char[] plainChars = "P@ssw0rd1234!".toCharArray();
+
+        try (VaultKey key = service.deriveVaultKey("SecurePass123!".toCharArray(), header)) {
+            byte[] encrypted = service.encrypt(plainChars, key);
+            assertTrue(service.isKeyEncrypted(encrypted));
+
+            char[] decrypted = service.decrypt(encrypted, key);
+            assertArrayEquals(plainChars, decrypted);
+
+            // Each entry gets its own subkey and IV
+            assertFalse(Arrays.equals(encrypted, service.encrypt(plainChars, key)));
+        }
+    }
+
+    @Test
+    void testSecretBufferRoundTripsAndIsWipedOnClose() throws Exception {
+        CryptoService service = getCryptoService();
+        VaultHeader header = service.generateVaultHeader();
+        char[] plainChars = "Pässwörd-✓-𝄞".toCharArray();
+
+        try (VaultKey key = service.deriveVaultKey("SecurePass123!".toCharArray(), header)) {
+            byte[] encrypted;
+            try (SecretBuffer plain = SecretBuffer.encode(plainChars)) {
+                encrypted = service.encrypt(plain, key);
+            }
+
+            SecretBuffer decrypted = service.decryptToBuffer(encrypted, key);
+            assertArrayEquals(plainChars, decrypted.toChars());
+            assertArrayEquals(plainChars, service.decrypt(encrypted, key));
+
+            decrypted.close();
+            assertTrue(decrypted.isDestroyed());
+            assertThrows(IllegalStateException.class, decrypted::toChars);
+        }
+    }
+
+    @Test
+    void testStreamRoundTripsAndDetectsTruncation() throws Exception {
+        CryptoService service = getCryptoService();
+        VaultHeader header = service.generateVaultHeader();
+        int segment = 64 * 1024;
+
+        try (VaultKey key = service.deriveVaultKey("SecurePass123!".toCharArray(), header)) {
+            for (int size : new int[] { 0, 1, segment, 3 * segment + 17 }) {
+                byte[] plain = new byte[size];
+                new Random(size).nextBytes(plain);
+
+                ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+                assertEquals(size, service.encrypt(new ByteArrayInputStream(plain), encrypted, key));
+
+                ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+                assertEquals(size, service.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted, key));
+                assertArrayEquals(plain, decrypted.toByteArray());
+            }
+
+            byte[] plain = new byte[2 * segment + 5];
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            service.encrypt(new ByteArrayInputStream(plain), out, key);
+            byte[] encrypted = out.toByteArray();
+
+            // Dropping the last segment leaves a stream that ends on a segment boundary
+            byte[] truncated = Arrays.copyOf(encrypted, encrypted.length - (5 + 16));
+            assertThrows(GeneralSecurityException.class,
+                () -> service.decrypt(new ByteArrayInputStream(truncated), OutputStream.nullOutputStream(), key));
+
+            byte[] tampered = encrypted.clone();
+            tampered[tampered.length / 2] ^= 1;
+            assertThrows(GeneralSecurityException.class,
+                () -> service.decrypt(new ByteArrayInputStream(tampered), OutputStream.nullOutputStream(), key));
+        }
+    }
+
+    @Test
+    void testDecryptWithWrongVaultKeyThrows() throws Exception {
+        CryptoService service = getCryptoService();
+        VaultHeader header = service.generateVaultHeader();
+
+        VaultKey key = service.deriveVaultKey("myCorrectPassword".toCharArray(), header);
+        VaultKey wrongKey = service.deriveVaultKey("incorrectPassword".toCharArray(), header);
+        byte[] encrypted = service.encrypt("ThisIsASecret".toCharArray(), key);
+
+        assertThrows(Exception.class, () -> service.decrypt(encrypted, wrongKey));
+
+        key.destroy();
+        assertThrows(IllegalStateException.class, () -> service.decrypt(encrypted, key));
+    }
+
+    @Test
+    void testCalibratedIterationsAreRecordedInTheHeader() throws Exception {
+        CryptoService service = getCryptoService();
+
+        int iterations = service.calibrateIterations(50);
+        VaultHeader header = service.generateVaultHeader(iterations);
+        assertEquals(iterations, header.getIterations());
+
+        // The key follows the recorded parameters, not a built-in constant
+        VaultHeader cheaper = new VaultHeader(header.getSalt(), iterations / 2);
+        try (
+            VaultKey key = service.deriveVaultKey("SecurePass123!".toCharArray(), header);
+            VaultKey cheaperKey = service.deriveVaultKey("SecurePass123!".toCharArray(), cheaper)
+        ) {
+            byte[] encrypted = service.encrypt("ThisIsASecret".toCharArray(), key);
+            assertArrayEquals("ThisIsASecret".toCharArray(), service.decrypt(encrypted, key));
+            assertThrows(Exception.class, () -> service.decrypt(encrypted, cheaperKey));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> service.calibrateIterations(0));
+    }
+
+    @Test
+    void testPasswordEncryptedDataIsNotKeyEncrypted() throws Exception {
+        CryptoService service = getCryptoService();
+
+        byte[] legacy = service.encrypt("LegacyValue".toCharArray(), "FixedKey".toCharArray());
+        assertFalse(service.isKeyEncrypted(legacy));
+
+        // Per-entry salt ciphertexts remain readable with the password
+        assertArrayEquals("LegacyValue".toCharArray(), service.decrypt(legacy, "FixedKey".toCharArray()));
+    }
+}
@@ -0,0 +1,113 @@
+package com.cub1z.pwmanager.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import com.cub1z.pwmanager.model.Attachment;
+
+public class AttachmentServiceTest {
+    private static final CryptoService CRYPTO = new AESCryptoService();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testIdenticalContentIsStoredOnceAndCollectedWhenUnreferenced() throws Exception {
+        byte[] content = new byte[200_000];
+        new Random(7).nextBytes(content);
+        AttachmentService service = new AttachmentService(CRYPTO, tempDir);
+
+        try (VaultKey key = newKey()) {
+            Attachment first = service.attach("github", "id_ed25519", channel(content), key);
+            Attachment second = service.attach("gitlab", "deploy-key", channel(content), key);
+            assertEquals(first.blobId(), second.blobId());
+            assertEquals(content.length, first.size());
+            assertEquals(1, blobCount());
+
+            assertArrayEquals(content, read(service, "gitlab", "deploy-key", key));
+
+            assertTrue(service.detach("github", "id_ed25519", key));
+            assertEquals(1, blobCount());
+            assertEquals(1, service.detachAll("gitlab", key));
+            assertEquals(0, blobCount());
+            assertEquals(List.of(), service.list("gitlab", key));
+        }
+    }
+
+    @Test
+    void testAttachmentsOfMissingEntriesAreCollected() throws Exception {
+        try (VaultKey key = newKey()) {
+            AttachmentService service = new AttachmentService(CRYPTO, tempDir);
+            service.attach("github", "codes.txt", channel("github codes".getBytes()), key);
+            service.attach("gitlab", "codes.txt", channel("gitlab codes".getBytes()), key);
+            service.attach("aws", "codes.txt", channel("aws codes".getBytes()), key);
+            assertEquals(3, blobCount());
+
+            // Only github still has an entry
+            assertEquals(2, service.collectGarbage(Set.of("github")::contains, key));
+            assertEquals(1, blobCount());
+            assertEquals(1, service.list("github", key).size());
+
+            // The pruned index is persisted
+            AttachmentService reopened = new AttachmentService(CRYPTO, tempDir);
+            assertEquals(List.of(), reopened.list("gitlab", key));
+            assertEquals(List.of(), reopened.list("aws", key));
+            assertEquals(1, reopened.detachAll(List.of("github", "gitlab"), key));
+            assertEquals(0, blobCount());
+        }
+    }
+
+    @Test
+    void testRewrappedStoreOpensWithTheNewKeyOnly() throws Exception {
+        byte[] content = "recovery codes".getBytes();
+
+        try (VaultKey oldKey = newKey(); VaultKey newKey = newKey()) {
+            AttachmentService service = new AttachmentService(CRYPTO, tempDir);
+            service.attach("github", "codes.txt", channel(content), oldKey);
+
+            service.rewrap(oldKey, oldKey, newKey);
+            assertArrayEquals(content, read(new AttachmentService(CRYPTO, tempDir), "github", "codes.txt", oldKey));
+            assertArrayEquals(content, read(new AttachmentService(CRYPTO, tempDir), "github", "codes.txt", newKey));
+
+            service.rewrap(oldKey, newKey);
+            assertArrayEquals(content, read(new AttachmentService(CRYPTO, tempDir), "github", "codes.txt", newKey));
+            assertThrows(GeneralSecurityException.class,
+                () -> new AttachmentService(CRYPTO, tempDir).list("github", oldKey));
+        }
+    }
+
+    // Auxiliary methods
+
+    private static VaultKey newKey() throws Exception {
+        return CRYPTO.deriveVaultKey("SecurePass123!".toCharArray(), CRYPTO.generateVaultHeader());
+    }
+
+    private static ReadableByteChannel channel(byte[] content) {
+        return Channels.newChannel(new ByteArrayInputStream(content));
+    }
+
+    private static byte[] read(AttachmentService service, String serviceName, String name, VaultKey key) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.read(serviceName, name, Channels.newChannel(out), key);
+        return out.toByteArray();
+    }
+
+    private long blobCount() throws Exception {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(file -> file.getFileName().toString().matches("[0-9a-f]{64}")).count();
+        }
+    }
+}
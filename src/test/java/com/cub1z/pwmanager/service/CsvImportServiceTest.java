@@ -0,0 +1,86 @@
+package com.cub1z.pwmanager.service;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+
+public class CsvImportServiceTest {
+    private static final CryptoService CRYPTO = new AESCryptoService();
+
+    @Test
+    void testColumnsAreFoundByNameInAnyOrder() throws Exception {
+        String csv = "\uFEFFPassword,Login_URI,extra,Login_Username\r\n"
+            + "\"p,a\"\"ss\",https://github.com/login,x,alice\r\n"
+            + "\"line\r\nbreak\",https://gitlab.com,y,\r\n";
+        List<PasswordEntry> imported = new ArrayList<>();
+
+        try (VaultKey key = newKey()) {
+            CsvImportService.Report report = new CsvImportService(CRYPTO).importCsv(
+                new StringReader(csv), key, null, null, imported::addAll
+            );
+
+            assertEquals(2, report.imported());
+            assertEquals(List.of(), report.errors());
+
+            Map<String, PasswordEntry> entries = imported.stream()
+                .collect(Collectors.toMap(PasswordEntry::getServiceName, Function.identity()));
+            assertArrayEquals("p,a\"ss".toCharArray(), CRYPTO.decrypt(entries.get("github.com (alice)").getEncryptedPassword(), key));
+            assertArrayEquals("line\r\nbreak".toCharArray(), CRYPTO.decrypt(entries.get("gitlab.com").getEncryptedPassword(), key));
+        }
+    }
+
+    @Test
+    void testMalformedRowsAreReportedWithTheirLineAndSkipped() throws Exception {
+        String csv = "name,username,password\n"
+            + "github,alice,secret1\n"
+            + "\"multi\nline note\",bob,secret2\n"
+            + "gitlab,carol\n"
+            + ",dave,secret3\n"
+            + "github,alice,again\n"
+            + "bitbucket,erin,secret4\n";
+        List<PasswordEntry> imported = new ArrayList<>();
+
+        try (VaultKey key = newKey()) {
+            CsvImportService.Report report = new CsvImportService(CRYPTO).importCsv(
+                new StringReader(csv), key, "bitbucket (erin)"::equals, null, imported::addAll
+            );
+
+            assertEquals(2, report.imported());
+            assertEquals(
+                List.of("github (alice)", "multi\nline note (bob)"),
+                imported.stream().map(PasswordEntry::getServiceName).toList()
+            );
+
+            // Line numbers count the line break inside the quoted name
+            assertEquals(List.of(
+                new CsvImportService.RowError(5, "gitlab (carol)", "Missing password"),
+                new CsvImportService.RowError(6, null, "Missing service name"),
+                new CsvImportService.RowError(7, "github (alice)", "Duplicate service name in file"),
+                new CsvImportService.RowError(8, "bitbucket (erin)", "Service name already exists")
+            ), report.errors());
+        }
+    }
+
+    @Test
+    void testHeaderWithoutPasswordColumnIsRejected() throws Exception {
+        try (VaultKey key = newKey()) {
+            assertThrows(IllegalArgumentException.class, () -> new CsvImportService(CRYPTO).importCsv(
+                new StringReader("name,username\ngithub,alice\n"), key, null, null, batch -> fail("Nothing should be imported")
+            ));
+        }
+    }
+
+    // Auxiliary methods
+
+    private static VaultKey newKey() throws Exception {
+        return CRYPTO.deriveVaultKey("SecurePass123!".toCharArray(), CRYPTO.generateVaultHeader());
+    }
+}
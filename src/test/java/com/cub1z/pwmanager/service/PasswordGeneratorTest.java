@@ -0,0 +1,77 @@
+package com.cub1z.pwmanager.service;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class PasswordGeneratorTest {
+    @Test
+    void testBulkPasswordsFollowThePolicy() {
+        PasswordPolicy policy = PasswordPolicy.of(12, true).withExcluded(PasswordPolicy.AMBIGUOUS_CHARS);
+        PasswordGenerator generator = new PasswordGenerator(policy, new SecureRandom());
+
+        int count = 500;
+        char[] buffer = new char[count * policy.length() + 3];
+        generator.generate(buffer, 3, count);
+
+        for (int n = 0; n < count; n++) {
+            String password = new String(buffer, 3 + n * policy.length(), policy.length());
+            for (PasswordPolicy.CharacterClass characterClass : policy.classes()) {
+                assertTrue(password.chars().anyMatch(c -> characterClass.getChars().indexOf(c) >= 0), password);
+            }
+            assertTrue(password.chars().noneMatch(c -> PasswordPolicy.AMBIGUOUS_CHARS.indexOf(c) >= 0), password);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(buffer, 4, count));
+    }
+
+    @Test
+    void testConcurrentCallsDrawIndependentPasswords() throws Exception {
+        PasswordPolicy policy = PasswordPolicy.of(16, true);
+        PasswordGenerator generator = new AESCryptoService().passwordGenerator(policy);
+        int threads = 8;
+        int perThread = 500;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    List<String> passwords = new ArrayList<>(perThread);
+                    for (int i = 0; i < perThread; i++) passwords.add(new String(generator.generate()));
+                    return passwords;
+                }));
+            }
+
+            Set<String> passwords = new HashSet<>();
+            for (Future<List<String>> result : results) passwords.addAll(result.get(60, TimeUnit.SECONDS));
+            assertEquals(threads * perThread, passwords.size(), "Concurrent calls should never share random bytes");
+            for (String password : passwords) {
+                assertEquals(policy.length(), password.length());
+                for (PasswordPolicy.CharacterClass characterClass : policy.classes()) {
+                    assertTrue(password.chars().anyMatch(c -> characterClass.getChars().indexOf(c) >= 0), password);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testPolicyRejectsEmptyClasses() {
+        PasswordPolicy digitsOnly = new PasswordPolicy(8, EnumSet.of(PasswordPolicy.CharacterClass.DIGITS), "0123456789");
+        assertThrows(IllegalArgumentException.class, () -> new PasswordGenerator(digitsOnly, new SecureRandom()));
+        assertThrows(IllegalArgumentException.class, () -> new PasswordPolicy(8, EnumSet.noneOf(PasswordPolicy.CharacterClass.class), ""));
+        assertThrows(IllegalArgumentException.class, () -> PasswordPolicy.defaults().withLength(0));
+    }
+}
@@ -0,0 +1,135 @@
+package com.cub1z.pwmanager.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.cub1z.pwmanager.model.PasswordEntry;
+import com.cub1z.pwmanager.model.VaultHeader;
+
+public class VaultArchiveServiceTest {
+    private static final String SOURCE_PASSWORD = "SourcePass123!";
+    private static final String TARGET_PASSWORD = "TargetPass456!";
+    private static final int ENTRY_COUNT = 3_000;
+
+    private CryptoService cryptoService;
+    private VaultArchiveService archiveService;
+    private VaultHeader sourceHeader;
+    private VaultKey sourceKey;
+
+    @BeforeEach
+    void setUp() throws GeneralSecurityException {
+        this.cryptoService = new AESCryptoService();
+        this.archiveService = new VaultArchiveService(this.cryptoService);
+        this.sourceHeader = this.cryptoService.generateVaultHeader(10_000);
+        this.sourceKey = this.cryptoService.deriveVaultKey(SOURCE_PASSWORD.toCharArray(), this.sourceHeader);
+    }
+
+    @Test
+    void testArchiveRoundTripsIntoAnotherVault() throws Exception {
+        List<PasswordEntry> entries = new ArrayList<>();
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            entries.add(new PasswordEntry("service-" + i, this.cryptoService.encrypt(("secret-" + i).toCharArray(), this.sourceKey)));
+        }
+        // Entries written before vault keys were introduced are encrypted with the master password
+        entries.add(new PasswordEntry("legacy", this.cryptoService.encrypt("legacy-secret".toCharArray(), SOURCE_PASSWORD.toCharArray())));
+        byte[] archive = this.export(entries);
+
+        VaultKey targetKey = this.cryptoService.deriveVaultKey(TARGET_PASSWORD.toCharArray(), this.cryptoService.generateVaultHeader(10_000));
+        List<List<PasswordEntry>> batches = new ArrayList<>();
+        long count = this.archiveService.importEntries(
+            new ByteArrayInputStream(archive), this::resolveSourceKey, SOURCE_PASSWORD.toCharArray(), targetKey, batches::add
+        );
+
+        assertEquals(ENTRY_COUNT + 1, count);
+
+        // The entries are handed over in bounded batches, in archive order
+        assertTrue(batches.size() > 1);
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 1024));
+        List<PasswordEntry> imported = batches.stream().flatMap(List::stream).toList();
+        assertEquals("service-42", imported.get(42).getServiceName());
+        assertEquals(entries.get(42).getCreatedAt(), imported.get(42).getCreatedAt());
+        assertArrayEquals("secret-42".toCharArray(), this.cryptoService.decrypt(imported.get(42).getEncryptedPassword(), targetKey));
+
+        PasswordEntry legacy = imported.get(ENTRY_COUNT);
+        assertTrue(this.cryptoService.isKeyEncrypted(legacy.getEncryptedPassword()));
+        assertArrayEquals("legacy-secret".toCharArray(), this.cryptoService.decrypt(legacy.getEncryptedPassword(), targetKey));
+
+        // Without the source password, legacy entries cannot follow the vault to a new key
+        assertThrows(GeneralSecurityException.class, () -> this.archiveService.importEntries(
+            new ByteArrayInputStream(archive), this::resolveSourceKey, null, targetKey, batch -> fail("Nothing should be imported")
+        ));
+    }
+
+    @Test
+    void testTruncatedArchiveImportsNothing() throws Exception {
+        byte[] archive = this.export(this.entries(ENTRY_COUNT));
+
+        // Cut inside a middle chunk, inside the final chunk and inside the header
+        for (int length : new int[] { archive.length / 2, archive.length - 1, 40 }) {
+            byte[] truncated = Arrays.copyOf(archive, length);
+            assertThrows(IOException.class, () -> this.archiveService.importEntries(
+                new ByteArrayInputStream(truncated), this::resolveSourceKey, null, this.sourceKey, batch -> fail("Nothing should be imported")
+            ));
+        }
+
+        byte[] trailing = Arrays.copyOf(archive, archive.length + 1);
+        assertThrows(IOException.class, () -> this.archiveService.importEntries(
+            new ByteArrayInputStream(trailing), this::resolveSourceKey, null, this.sourceKey, batch -> fail("Nothing should be imported")
+        ));
+    }
+
+    @Test
+    void testTamperedArchiveImportsNothing() throws Exception {
+        byte[] archive = this.export(this.entries(ENTRY_COUNT));
+
+        // The last byte belongs to the tag of the final chunk, after every other chunk decrypted fine
+        byte[] tampered = archive.clone();
+        tampered[tampered.length - 1] ^= 1;
+        assertThrows(GeneralSecurityException.class, () -> this.archiveService.importEntries(
+            new ByteArrayInputStream(tampered), this::resolveSourceKey, null, this.sourceKey, batch -> fail("Nothing should be imported")
+        ));
+
+        // The spool of the authenticated chunks is removed with the failed import
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().startsWith("pwmanager-import")));
+        }
+
+        byte[] wrongKey = this.export(this.entries(1));
+        VaultKey otherKey = this.cryptoService.deriveVaultKey(TARGET_PASSWORD.toCharArray(), this.sourceHeader);
+        assertThrows(GeneralSecurityException.class, () -> this.archiveService.importEntries(
+            new ByteArrayInputStream(wrongKey), header -> otherKey, null, otherKey, batch -> fail("Nothing should be imported")
+        ));
+    }
+
+    // Auxiliary methods
+
+    private List<PasswordEntry> entries(int count) throws GeneralSecurityException {
+        List<PasswordEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new PasswordEntry("service-" + i, this.cryptoService.encrypt(("secret-" + i).toCharArray(), this.sourceKey)));
+        }
+        return entries;
+    }
+
+    private byte[] export(List<PasswordEntry> entries) throws IOException, GeneralSecurityException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.archiveService.exportEntries(entries, this.sourceHeader, this.sourceKey, out);
+        return out.toByteArray();
+    }
+
+    private VaultKey resolveSourceKey(VaultHeader archiveHeader) throws GeneralSecurityException {
+        return this.cryptoService.deriveVaultKey(SOURCE_PASSWORD.toCharArray(), archiveHeader);
+    }
+}
@@ -0,0 +1,52 @@
+package com.cub1z.pwmanager.utils;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+public class CsvReaderTest {
+
+    @Test
+    void testQuotedFieldsKeepCommasQuotesAndLineBreaks() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader(
+            "name,password\n"
+            + "\"Acme, Inc.\",\"say \"\"hi\"\"\"\n"
+            + "\"multi\nline\",\"\"\n"
+            + "plain,last"
+        ));
+
+        assertEquals(List.of("name", "password"), reader.readRecord());
+        assertEquals(2, reader.getLineNumber());
+        assertEquals(List.of("Acme, Inc.", "say \"hi\""), reader.readRecord());
+        assertEquals(List.of("multi\nline", ""), reader.readRecord());
+
+        // The line break inside the quotes counts, so the next record starts on line 5
+        assertEquals(5, reader.getLineNumber());
+        assertEquals(List.of("plain", "last"), reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    void testCrlfLineEndingsAreOneLineBreak() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader("a,b\r\n\"c\r\nd\",e\r\nf,g\r\n"));
+
+        assertEquals(List.of("a", "b"), reader.readRecord());
+        assertEquals(List.of("c\r\nd", "e"), reader.readRecord());
+        assertEquals(4, reader.getLineNumber());
+        assertEquals(List.of("f", "g"), reader.readRecord());
+        assertNull(reader.readRecord());
+        assertEquals(5, reader.getLineNumber());
+    }
+
+    @Test
+    void testUnterminatedQuoteIsAnError() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader("name,password\ngithub,\"open"));
+
+        reader.readRecord();
+        IOException e = assertThrows(IOException.class, reader::readRecord);
+        assertTrue(e.getMessage().contains("line 2"), e.getMessage());
+    }
+}
@@ -0,0 +1,38 @@
+package com.cub1z.pwmanager.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class FileUtilsTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testFailedWriteLeavesThePreviousFileIntact() throws Exception {
+        Path file = tempDir.resolve("master.pwd");
+        HashMap<String, Object> previous = new HashMap<>();
+        previous.put("hash", "previous");
+        FileUtils.writeObjectToFile(file, previous);
+        byte[] written = Files.readAllBytes(file);
+
+        // Serialization fails halfway through, after the temporary file was created
+        HashMap<String, Object> broken = new HashMap<>();
+        broken.put("hash", "next");
+        broken.put("unserializable", new Object());
+        assertThrows(IOException.class, () -> FileUtils.writeObjectToFile(file, broken));
+
+        assertArrayEquals(written, Files.readAllBytes(file));
+        assertEquals(previous, FileUtils.readObjectFromFile(file, HashMap.class).orElseThrow());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(List.of(file), files.toList(), "The temporary file should be removed");
+        }
+    }
+}